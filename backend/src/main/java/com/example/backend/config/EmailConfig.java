@@ -25,9 +25,22 @@ public class EmailConfig {
     @Value("${spring.mail.password}")
     private String mailPassword;
 
+    @Value("${mail.smtp.pool.size:4}")
+    private int poolSize;
+
+    // Idle connections are checked with NOOP before reuse after this long (ms)
+    @Value("${mail.smtp.pool.validate-after:5000}")
+    private long poolValidateAfter;
+
+    @Value("${mail.smtp.pool.max-idle:60000}")
+    private long poolMaxIdle;
+
+    @Value("${mail.smtp.pool.borrow-timeout:30000}")
+    private long poolBorrowTimeout;
+
     @Bean
     public JavaMailSender javaMailSender() {
-        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        JavaMailSenderImpl mailSender = new PooledJavaMailSender(poolSize, poolValidateAfter, poolMaxIdle, poolBorrowTimeout);
         
         mailSender.setHost(mailHost);
         mailSender.setPort(mailPort);
@@ -1,6 +1,12 @@
 package com.example.backend.config;
 
+import com.example.backend.service.DeviceRegistry;
+import com.example.backend.service.SensorDataDecoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.integration.annotation.ServiceActivator;
@@ -19,7 +25,28 @@ public class MqttConfig {
     
     private static final String MQTT_BROKER_URL = "tcp://broker.hivemq.com:1883";
     private static final String MQTT_CLIENT_ID = "auralink-backend-client";
-    private static final String[] MQTT_TOPICS = {"auralink/sensors", "auralink/status"};
+    private static final String MQTT_DEFAULT_OUTBOUND_TOPIC = "auralink/control";
+    private static final String[] MQTT_TOPICS = {"auralink/sensors", "auralink/sensors/bin", "auralink/status"};
+    
+    // Ingest lanes (0 = one per CPU core), queue size per lane and what to do when a lane is full
+    @Value("${mqtt.ingest.lanes:0}")
+    private int ingestLanes;
+    
+    @Value("${mqtt.ingest.queue-capacity:10000}")
+    private int ingestQueueCapacity;
+    
+    @Value("${mqtt.ingest.overflow-policy:BLOCK}")
+    private PartitionedIngestChannel.OverflowPolicy ingestOverflowPolicy;
+    
+    // Lanes are keyed by the deviceId these decode, so the key always matches the handler's
+    @Autowired
+    private SensorDataDecoder sensorDataDecoder;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private DeviceRegistry deviceRegistry;
     
     @Bean
     public MqttPahoClientFactory mqttClientFactory() {
@@ -36,9 +63,18 @@ public class MqttConfig {
         return factory;
     }
     
+    /**
+     * Inbound messages are partitioned by device onto worker lanes so parsing and
+     * broadcasting never run on the Paho callback thread
+     */
     @Bean
-    public MessageChannel mqttInputChannel() {
-        return new DirectChannel();
+    public PartitionedIngestChannel mqttInputChannel() {
+        int lanes = ingestLanes > 0 ? ingestLanes : Runtime.getRuntime().availableProcessors();
+        PartitionedIngestChannel channel = new PartitionedIngestChannel(lanes, ingestQueueCapacity,
+                ingestOverflowPolicy, sensorDataDecoder, objectMapper);
+        // Per-device state is dropped on the lane that writes it
+        deviceRegistry.setEvictionExecutor(channel::execute);
+        return channel;
     }
     
     @Bean
@@ -49,15 +85,20 @@ public class MqttConfig {
                 MQTT_TOPICS);
         
         adapter.setCompletionTimeout(5000);
-        adapter.setConverter(new DefaultPahoMessageConverter());
+        // Deliver raw payload bytes; sensor JSON is decoded by a streaming parser downstream
+        DefaultPahoMessageConverter converter = new DefaultPahoMessageConverter();
+        converter.setPayloadAsBytes(true);
+        adapter.setConverter(converter);
         adapter.setQos(1);
         adapter.setOutputChannel(mqttInputChannel());
         return adapter;
     }
     
     @Bean
-    public MessageChannel mqttOutboundChannel() {
-        return new DirectChannel();
+    public MessageChannel mqttOutboundChannel(MeterRegistry meterRegistry) {
+        DirectChannel channel = new DirectChannel();
+        channel.addInterceptor(new MqttPublishMetricsInterceptor(meterRegistry, MQTT_DEFAULT_OUTBOUND_TOPIC));
+        return channel;
     }
     
     @Bean
@@ -69,7 +110,7 @@ public class MqttConfig {
         
         messageHandler.setAsync(true);
         messageHandler.setDefaultQos(1);
-        messageHandler.setDefaultTopic("auralink/control");
+        messageHandler.setDefaultTopic(MQTT_DEFAULT_OUTBOUND_TOPIC);
         return messageHandler;
     }
 }
@@ -0,0 +1,63 @@
+package com.example.backend.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.integration.mqtt.support.MqttHeaders;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.support.ChannelInterceptor;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Times publishes through the outbound MQTT channel, tagged by topic and outcome.
+ *
+ * The channel is a DirectChannel, so the Paho handler runs between preSend and
+ * afterSendCompletion on the sending thread. With an async handler this measures the
+ * hand-off to the client (including waits for in-flight slots), not the broker ack.
+ * The timers of a topic are registered on its first publish and reused after that.
+ */
+public class MqttPublishMetricsInterceptor implements ChannelInterceptor {
+
+    private final MeterRegistry registry;
+    private final String defaultTopic;
+    private final ThreadLocal<Timer.Sample> sample = new ThreadLocal<>();
+    // Success and failure timer per topic
+    private final ConcurrentHashMap<String, Timer[]> timers = new ConcurrentHashMap<>();
+
+    public MqttPublishMetricsInterceptor(MeterRegistry registry, String defaultTopic) {
+        this.registry = registry;
+        this.defaultTopic = defaultTopic;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        sample.set(Timer.start(registry));
+        return message;
+    }
+
+    @Override
+    public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+        Timer.Sample started = sample.get();
+        if (started == null) {
+            return;
+        }
+        sample.remove();
+        Object topic = message.getHeaders().get(MqttHeaders.TOPIC);
+        Timer[] topicTimers = timers.computeIfAbsent(topic != null ? topic.toString() : defaultTopic, this::register);
+        started.stop(topicTimers[sent && ex == null ? 0 : 1]);
+    }
+
+    private Timer[] register(String topic) {
+        return new Timer[] { timer(topic, "success"), timer(topic, "failure") };
+    }
+
+    private Timer timer(String topic, String outcome) {
+        return Timer.builder("auralink.mqtt.publish")
+                .description("Time to publish a message through the outbound MQTT channel")
+                .tag("topic", topic)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
@@ -0,0 +1,321 @@
+package com.example.backend.config;
+
+import com.example.backend.service.DeviceLivenessTracker;
+import com.example.backend.service.SensorBinaryCodec;
+import com.example.backend.service.SensorDataDecoder;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.integration.channel.AbstractSubscribableChannel;
+import org.springframework.integration.dispatcher.AbstractDispatcher;
+import org.springframework.integration.dispatcher.MessageDispatcher;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Inbound MQTT channel that hands messages off the Paho callback thread to N worker lanes.
+ *
+ * Messages are hash-partitioned by the deviceId of the payload, so every message of a
+ * device is handled by the same lane in arrival order, while different devices are processed
+ * in parallel. Each lane has a bounded queue; when it is full the overflow policy decides
+ * whether the MQTT thread waits (backpressure) or a message is dropped. Other work on a
+ * device's state, such as dropping it on eviction, can be run on the device's lane too.
+ */
+@Slf4j
+public class PartitionedIngestChannel extends AbstractSubscribableChannel implements DisposableBean, MeterBinder {
+
+    public enum OverflowPolicy {
+        /** Block the MQTT callback thread until the lane has room */
+        BLOCK,
+        /** Drop the incoming message */
+        DROP_NEWEST,
+        /** Drop the oldest queued message of the lane to make room */
+        DROP_OLDEST
+    }
+
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 5000;
+    // Same topics the MQTT handler switches on
+    private static final String BINARY_TOPIC = "auralink/sensors/bin";
+    private static final String STATUS_TOPIC = "auralink/status";
+
+    private final SensorDataDecoder sensorDataDecoder;
+    private final JsonFactory jsonFactory;
+    private final LaneDispatcher dispatcher;
+
+    public PartitionedIngestChannel(int lanes, int queueCapacity, OverflowPolicy overflowPolicy,
+                                    SensorDataDecoder sensorDataDecoder, ObjectMapper objectMapper) {
+        this.sensorDataDecoder = sensorDataDecoder;
+        this.jsonFactory = objectMapper.getFactory();
+        this.dispatcher = new LaneDispatcher(lanes, queueCapacity, overflowPolicy, this::partitionKey);
+    }
+
+    /**
+     * Run a task on the lane that handles messages with the given partition key (a deviceId),
+     * before the lane's next message. Runs inline once the channel is shut down.
+     */
+    public void execute(String partitionKey, Runnable task) {
+        dispatcher.execute(partitionKey, task);
+    }
+
+    @Override
+    protected MessageDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    @Override
+    protected void onInit() {
+        super.onInit();
+        dispatcher.start(getComponentName());
+    }
+
+    @Override
+    public void destroy() {
+        dispatcher.shutdown();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (int i = 0; i < dispatcher.lanes.length; i++) {
+            Lane lane = dispatcher.lanes[i];
+            String laneTag = Integer.toString(i);
+            Gauge.builder("auralink.ingest.queue.depth", lane.queue, ArrayBlockingQueue::size)
+                    .description("Messages waiting on an ingest lane")
+                    .tag("lane", laneTag)
+                    .register(registry);
+            FunctionCounter.builder("auralink.ingest.processed", lane.processed, AtomicLong::get)
+                    .description("Messages handled by an ingest lane")
+                    .tag("lane", laneTag)
+                    .register(registry);
+            FunctionCounter.builder("auralink.ingest.dropped", lane.dropped, AtomicLong::get)
+                    .description("Messages dropped by the overflow policy of an ingest lane")
+                    .tag("lane", laneTag)
+                    .register(registry);
+        }
+    }
+
+    /**
+     * Queue depth, throughput and drop counters per lane
+     */
+    public Map<String, Object> getStats() {
+        return dispatcher.stats();
+    }
+
+    /**
+     * Partition key of a message: the deviceId that the handler will decode from it, falling
+     * back to the topic when there is none. It must be derived exactly as the handler derives
+     * it, otherwise one device's readings could land on two lanes. This runs on the single MQTT
+     * callback thread, so JSON payloads are only read up to their deviceId field; the lane does
+     * the full decode.
+     */
+    String partitionKey(Message<?> message) {
+        Object topic = message.getHeaders().get("mqtt_receivedTopic");
+        byte[] payload = message.getPayload() instanceof byte[] bytes
+                ? bytes
+                : message.getPayload().toString().getBytes(StandardCharsets.UTF_8);
+        String deviceId;
+        try {
+            if (BINARY_TOPIC.equals(topic)) {
+                deviceId = SensorBinaryCodec.deviceId(payload);
+            } else if (STATUS_TOPIC.equals(topic)) {
+                deviceId = DeviceLivenessTracker.deviceId(jsonFactory, payload);
+            } else {
+                deviceId = sensorDataDecoder.deviceId(payload);
+            }
+        } catch (IOException | RuntimeException e) {
+            // The handler will reject the payload too, so any lane will do
+            deviceId = null;
+        }
+        if (deviceId != null) {
+            return deviceId;
+        }
+        return topic != null ? topic.toString() : "";
+    }
+
+    private static final class LaneDispatcher extends AbstractDispatcher {
+
+        private final Lane[] lanes;
+        private final OverflowPolicy overflowPolicy;
+        private final Function<Message<?>, String> partitionKey;
+        private volatile boolean running = true;
+
+        LaneDispatcher(int laneCount, int queueCapacity, OverflowPolicy overflowPolicy,
+                       Function<Message<?>, String> partitionKey) {
+            this.overflowPolicy = overflowPolicy;
+            this.partitionKey = partitionKey;
+            this.lanes = new Lane[laneCount];
+            for (int i = 0; i < laneCount; i++) {
+                lanes[i] = new Lane(queueCapacity);
+            }
+        }
+
+        void start(String name) {
+            for (int i = 0; i < lanes.length; i++) {
+                Lane lane = lanes[i];
+                lane.worker = new Thread(() -> drain(lane), name + "-lane-" + i);
+                lane.worker.setDaemon(true);
+                lane.worker.start();
+            }
+        }
+
+        @Override
+        public boolean dispatch(Message<?> message) {
+            if (!running) {
+                return false;
+            }
+            Lane lane = lane(partitionKey.apply(message));
+            boolean queued = switch (overflowPolicy) {
+                case BLOCK -> lane.putBlocking(message);
+                case DROP_NEWEST -> lane.queue.offer(message);
+                case DROP_OLDEST -> lane.offerEvictingOldest(message);
+            };
+            if (!queued) {
+                lane.dropped.incrementAndGet();
+                log.debug("Ingest lane full, dropped message from {}", message.getHeaders().get("mqtt_receivedTopic"));
+            }
+            return true;
+        }
+
+        void execute(String key, Runnable task) {
+            if (!running) {
+                task.run();
+                return;
+            }
+            lane(key).tasks.add(task);
+        }
+
+        private Lane lane(String key) {
+            return lanes[Math.floorMod(key.hashCode(), lanes.length)];
+        }
+
+        private void drain(Lane lane) {
+            while (running || !lane.queue.isEmpty()) {
+                try {
+                    runTasks(lane);
+                    Message<?> message = lane.queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (message == null) {
+                        continue;
+                    }
+                    for (MessageHandler handler : getHandlers()) {
+                        handler.handleMessage(message);
+                        break;
+                    }
+                    lane.processed.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    log.error("Error handling ingested MQTT message", e);
+                }
+            }
+            runTasks(lane);
+        }
+
+        private static void runTasks(Lane lane) {
+            Runnable task;
+            while ((task = lane.tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    log.error("Error running ingest lane task", e);
+                }
+            }
+        }
+
+        void shutdown() {
+            running = false;
+            for (Lane lane : lanes) {
+                if (lane.worker == null) {
+                    continue;
+                }
+                try {
+                    lane.worker.join(SHUTDOWN_TIMEOUT_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (lane.worker.isAlive()) {
+                    lane.worker.interrupt();
+                }
+            }
+        }
+
+        Map<String, Object> stats() {
+            List<Map<String, Object>> laneStats = new ArrayList<>();
+            long totalDepth = 0;
+            long totalDropped = 0;
+            long totalProcessed = 0;
+            for (Lane lane : lanes) {
+                Map<String, Object> stats = new LinkedHashMap<>();
+                stats.put("queueDepth", lane.queue.size());
+                stats.put("processed", lane.processed.get());
+                stats.put("dropped", lane.dropped.get());
+                laneStats.add(stats);
+                totalDepth += lane.queue.size();
+                totalDropped += lane.dropped.get();
+                totalProcessed += lane.processed.get();
+            }
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("lanes", lanes.length);
+            stats.put("queueCapacity", lanes[0].capacity);
+            stats.put("overflowPolicy", overflowPolicy.name());
+            stats.put("queueDepth", totalDepth);
+            stats.put("processed", totalProcessed);
+            stats.put("dropped", totalDropped);
+            stats.put("laneStats", laneStats);
+            return stats;
+        }
+    }
+
+    private static final class Lane {
+        private final int capacity;
+        private final ArrayBlockingQueue<Message<?>> queue;
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong dropped = new AtomicLong();
+        // Never dropped, unlike messages
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private Thread worker;
+
+        Lane(int capacity) {
+            this.capacity = capacity;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        boolean putBlocking(Message<?> message) {
+            try {
+                queue.put(message);
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+
+        // Only the dispatching MQTT thread adds to a lane, so one retry after evicting is enough
+        boolean offerEvictingOldest(Message<?> message) {
+            if (queue.offer(message)) {
+                return true;
+            }
+            if (queue.poll() != null) {
+                dropped.incrementAndGet();
+            }
+            return queue.offer(message);
+        }
+    }
+}
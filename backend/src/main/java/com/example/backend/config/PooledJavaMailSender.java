@@ -0,0 +1,177 @@
+package com.example.backend.config;
+
+import jakarta.mail.Address;
+import jakarta.mail.AuthenticationFailedException;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JavaMailSenderImpl that keeps its SMTP connections open between sends.
+ *
+ * The stock sender connects, authenticates and negotiates STARTTLS for every send call, and
+ * issues a NOOP before every message of a batch. Here up to pool-size authenticated transports
+ * are kept; a send borrows one, pushes all of its messages over it and hands it back. A
+ * connection is only checked with NOOP when it has been idle for longer than validate-after,
+ * and closed once it has been idle for max-idle, so each message normally costs just its own
+ * MAIL/RCPT/DATA exchange.
+ */
+@Slf4j
+public class PooledJavaMailSender extends JavaMailSenderImpl implements DisposableBean {
+
+    private final Semaphore permits;
+    private final BlockingDeque<PooledTransport> idle = new LinkedBlockingDeque<>();
+    private final long validateAfterMillis;
+    private final long maxIdleMillis;
+    private final long borrowTimeoutMillis;
+    private final AtomicLong opened = new AtomicLong();
+    private volatile boolean closed;
+
+    public PooledJavaMailSender(int poolSize, long validateAfterMillis, long maxIdleMillis, long borrowTimeoutMillis) {
+        this.permits = new Semaphore(Math.max(1, poolSize));
+        this.validateAfterMillis = validateAfterMillis;
+        this.maxIdleMillis = maxIdleMillis;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+    }
+
+    @Override
+    protected void doSend(MimeMessage[] mimeMessages, Object[] originalMessages) throws MailException {
+        Map<Object, Exception> failedMessages = new LinkedHashMap<>();
+        Transport transport = borrow();
+        try {
+            for (int i = 0; i < mimeMessages.length; i++) {
+                Object original = originalMessages != null ? originalMessages[i] : mimeMessages[i];
+                if (transport == null) {
+                    try {
+                        transport = open();
+                    } catch (MessagingException e) {
+                        // Effectively, all remaining messages failed
+                        for (int j = i; j < mimeMessages.length; j++) {
+                            failedMessages.put(originalMessages != null ? originalMessages[j] : mimeMessages[j], e);
+                        }
+                        throw new MailSendException("Mail server connection failed", e, failedMessages);
+                    }
+                }
+                try {
+                    send(transport, mimeMessages[i]);
+                } catch (Exception e) {
+                    failedMessages.put(original, e);
+                    // A rejected message leaves the session usable; a dropped connection does not
+                    if (!transport.isConnected()) {
+                        discard(transport);
+                        transport = null;
+                    }
+                }
+            }
+        } finally {
+            release(transport);
+        }
+        if (!failedMessages.isEmpty()) {
+            throw new MailSendException(failedMessages);
+        }
+    }
+
+    /**
+     * Connections opened since start, for telling how often the pool had to reconnect
+     */
+    public long getOpenedConnections() {
+        return opened.get();
+    }
+
+    @Override
+    public void destroy() {
+        closed = true;
+        PooledTransport pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            discard(pooled.transport());
+        }
+    }
+
+    private Transport borrow() {
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new MailSendException("Timed out waiting for a free SMTP connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MailSendException("Interrupted waiting for a free SMTP connection", e);
+        }
+        // Most recently used first, so surplus connections age out
+        PooledTransport pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            long idleFor = System.currentTimeMillis() - pooled.releasedAt();
+            // SMTPTransport.isConnected() sends a NOOP to check the server still has the session
+            if (idleFor < maxIdleMillis && (idleFor < validateAfterMillis || pooled.transport().isConnected())) {
+                return pooled.transport();
+            }
+            discard(pooled.transport());
+        }
+        try {
+            return open();
+        } catch (AuthenticationFailedException e) {
+            permits.release();
+            throw new MailAuthenticationException(e);
+        } catch (MessagingException e) {
+            permits.release();
+            throw new MailSendException("Mail server connection failed", e);
+        }
+    }
+
+    private void release(Transport transport) {
+        if (transport != null) {
+            if (closed) {
+                discard(transport);
+            } else {
+                idle.addFirst(new PooledTransport(transport, System.currentTimeMillis()));
+            }
+        }
+        permits.release();
+    }
+
+    private Transport open() throws MessagingException {
+        Transport transport = connectTransport();
+        opened.incrementAndGet();
+        log.debug("Opened SMTP connection to {}:{}", getHost(), getPort());
+        return transport;
+    }
+
+    private static void send(Transport transport, MimeMessage mimeMessage) throws MessagingException {
+        if (mimeMessage.getSentDate() == null) {
+            mimeMessage.setSentDate(new Date());
+        }
+        String messageId = mimeMessage.getMessageID();
+        mimeMessage.saveChanges();
+        if (messageId != null) {
+            // Preserve explicitly specified message id...
+            mimeMessage.setHeader("Message-ID", messageId);
+        }
+        Address[] addresses = mimeMessage.getAllRecipients();
+        transport.sendMessage(mimeMessage, addresses != null ? addresses : new Address[0]);
+    }
+
+    private static void discard(Transport transport) {
+        try {
+            transport.close();
+        } catch (Exception e) {
+            log.debug("Failed to close SMTP connection: {}", e.getMessage());
+        }
+    }
+
+    private record PooledTransport(Transport transport, long releasedAt) {
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.backend.controller;
+
+import com.example.backend.model.AlertRule;
+import com.example.backend.service.AlertDispatcher;
+import com.example.backend.service.AlertRuleEngine;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/alerts")
+@CrossOrigin(origins = "*")
+public class AlertController {
+    
+    private final AlertRuleEngine alertRuleEngine;
+    private final AlertDispatcher alertDispatcher;
+    
+    @Autowired
+    public AlertController(AlertRuleEngine alertRuleEngine, AlertDispatcher alertDispatcher) {
+        this.alertRuleEngine = alertRuleEngine;
+        this.alertDispatcher = alertDispatcher;
+    }
+    
+    /**
+     * Alert rules with their effective thresholds, debounce and cooldown
+     * GET /api/alerts/rules
+     */
+    @GetMapping("/rules")
+    public ResponseEntity<List<AlertRule>> getRules() {
+        return ResponseEntity.ok(alertRuleEngine.getRules());
+    }
+    
+    @GetMapping("/rules/{id}")
+    public ResponseEntity<AlertRule> getRule(@PathVariable String id) {
+        AlertRule rule = alertRuleEngine.getRule(id);
+        if (rule != null) {
+            return ResponseEntity.ok(rule);
+        } else {
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
+    /**
+     * Create or replace a rule; it applies from the next reading
+     * PUT /api/alerts/rules/high-co2 {"metric": "co2", "operator": ">", "threshold": 1200, "clearThreshold": 1000}
+     */
+    @PutMapping("/rules/{id}")
+    public ResponseEntity<?> putRule(@PathVariable String id, @RequestBody AlertRule rule) {
+        rule.setId(id);
+        try {
+            return ResponseEntity.ok(alertRuleEngine.putRule(rule));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    @DeleteMapping("/rules/{id}")
+    public ResponseEntity<Void> deleteRule(@PathVariable String id) {
+        if (alertRuleEngine.removeRule(id)) {
+            return ResponseEntity.noContent().build();
+        } else {
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
+    /**
+     * Alert email queue depth, pending digests and drop/rate-limit counters
+     * GET /api/alerts/dispatch
+     */
+    @GetMapping("/dispatch")
+    public ResponseEntity<Map<String, Object>> getDispatchStats() {
+        return ResponseEntity.ok(alertDispatcher.getStats());
+    }
+}
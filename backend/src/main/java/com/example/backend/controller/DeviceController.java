@@ -0,0 +1,41 @@
+package com.example.backend.controller;
+
+import com.example.backend.model.DeviceLiveness;
+import com.example.backend.service.DeviceLivenessTracker;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/devices")
+@CrossOrigin(origins = "*")
+public class DeviceController {
+    
+    private final DeviceLivenessTracker livenessTracker;
+    
+    @Autowired
+    public DeviceController(DeviceLivenessTracker livenessTracker) {
+        this.livenessTracker = livenessTracker;
+    }
+    
+    /**
+     * Online/offline state and last-seen time of every tracked device, offline devices first
+     * GET /api/devices
+     */
+    @GetMapping
+    public ResponseEntity<List<DeviceLiveness>> getDevices() {
+        return ResponseEntity.ok(livenessTracker.getDevices());
+    }
+    
+    @GetMapping("/{deviceId}")
+    public ResponseEntity<DeviceLiveness> getDevice(@PathVariable String deviceId) {
+        DeviceLiveness device = livenessTracker.getDevice(deviceId);
+        if (device != null) {
+            return ResponseEntity.ok(device);
+        } else {
+            return ResponseEntity.notFound().build();
+        }
+    }
+}
@@ -1,15 +1,23 @@
 package com.example.backend.controller;
 
+import com.example.backend.model.BulkEmailRequest;
+import com.example.backend.model.BulkEmailResult;
 import com.example.backend.model.EmailMessage;
 import com.example.backend.model.EmailRequest;
+import com.example.backend.service.BulkEmailService;
 import com.example.backend.service.EmailReceiverService;
 import com.example.backend.service.EmailService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -26,6 +34,16 @@ public class EmailController {
     @Autowired
     private EmailReceiverService emailReceiverService;
 
+    @Autowired
+    private BulkEmailService bulkEmailService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // How long a bulk send may stream results before the response is closed (ms)
+    @Value("${mail.bulk.timeout:600000}")
+    private long bulkTimeout;
+
     /**
      * Send an email
      * POST /api/email/send
@@ -38,6 +56,9 @@ public class EmailController {
             
             if ("SENT".equals(result.getStatus())) {
                 return ResponseEntity.ok(result);
+            } else if ("PENDING".equals(result.getStatus())) {
+                // Queued in the outbox; delivery status follows on /topic/email/status
+                return ResponseEntity.accepted().body(result);
             } else {
                 return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(result);
             }
@@ -47,6 +68,34 @@ public class EmailController {
         }
     }
 
+    /**
+     * Send one templated email to many recipients
+     * POST /api/email/send-bulk
+     * Streams one JSON line per recipient (application/x-ndjson) as each batch completes
+     */
+    @PostMapping("/send-bulk")
+    public ResponseEntity<ResponseBodyEmitter> sendBulkEmail(@RequestBody BulkEmailRequest bulkRequest) {
+        try {
+            bulkEmailService.validate(bulkRequest);
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected bulk email: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+
+        log.info("Sending bulk email to {} recipients", bulkRequest.getRecipients().size());
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(bulkTimeout);
+        Thread.ofVirtual().name("email-bulk").start(() -> {
+            try {
+                bulkEmailService.send(bulkRequest, result -> writeResult(emitter, result));
+                emitter.complete();
+            } catch (Exception e) {
+                log.error("Error sending bulk email: {}", e.getMessage(), e);
+                emitter.completeWithError(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(emitter);
+    }
+
     /**
      * Send a simple text email
      * POST /api/email/send-simple
@@ -383,4 +432,13 @@ public class EmailController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
+
+    private void writeResult(ResponseBodyEmitter emitter, BulkEmailResult result) {
+        try {
+            emitter.send(objectMapper.writeValueAsString(result) + "\n", MediaType.APPLICATION_NDJSON);
+        } catch (IOException | IllegalStateException e) {
+            // The client went away; the remaining emails are still sent
+            log.debug("Could not stream bulk email result: {}", e.getMessage());
+        }
+    }
 }
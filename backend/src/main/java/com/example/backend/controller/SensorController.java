@@ -1,12 +1,34 @@
 package com.example.backend.controller;
 
+import com.example.backend.config.PartitionedIngestChannel;
+import com.example.backend.model.DailySummary;
+import com.example.backend.model.EncodedSensorData;
+import com.example.backend.model.RollupResolution;
+import com.example.backend.model.SensorAggregate;
 import com.example.backend.model.SensorData;
+import com.example.backend.model.SensorMetric;
+import com.example.backend.model.SensorQuantiles;
+import com.example.backend.model.SensorRollup;
 import com.example.backend.service.MqttService;
+import com.example.backend.service.SensorAggregateService;
+import com.example.backend.service.SensorBroadcastService;
+import com.example.backend.service.SensorDailySummaryService;
+import com.example.backend.service.SensorQuantileService;
+import com.example.backend.service.SensorRollupService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/sensors")
@@ -14,31 +36,208 @@ import java.util.List;
 public class SensorController {
     
     private final MqttService mqttService;
+    private final SensorRollupService rollupService;
+    private final PartitionedIngestChannel mqttInputChannel;
+    private final SensorBroadcastService broadcastService;
+    private final SensorDailySummaryService dailySummaryService;
+    private final SensorQuantileService quantileService;
+    private final SensorAggregateService aggregateService;
     
     @Autowired
-    public SensorController(MqttService mqttService) {
+    public SensorController(MqttService mqttService, SensorRollupService rollupService,
+                            PartitionedIngestChannel mqttInputChannel, SensorBroadcastService broadcastService,
+                            SensorDailySummaryService dailySummaryService, SensorQuantileService quantileService,
+                            SensorAggregateService aggregateService) {
         this.mqttService = mqttService;
+        this.rollupService = rollupService;
+        this.mqttInputChannel = mqttInputChannel;
+        this.broadcastService = broadcastService;
+        this.dailySummaryService = dailySummaryService;
+        this.quantileService = quantileService;
+        this.aggregateService = aggregateService;
     }
     
+    /**
+     * Latest reading of every device, written from the JSON encoded at ingest
+     * GET /api/sensors
+     */
     @GetMapping
-    public ResponseEntity<List<SensorData>> getAllLatestSensorData() {
-        List<SensorData> sensorDataList = mqttService.getAllLatestSensorData();
-        return ResponseEntity.ok(sensorDataList);
+    public ResponseEntity<byte[]> getAllLatestSensorData() {
+        List<EncodedSensorData> latest = mqttService.getAllLatestEncodedSensorData();
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(EncodedSensorData.toJsonArray(latest));
+    }
+    
+    /**
+     * Fleet-wide and per-device totals of a day (today by default, still open)
+     * GET /api/sensors/daily-summary?day=2025-01-01
+     */
+    @GetMapping("/daily-summary")
+    public ResponseEntity<DailySummary> getDailySummary(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate day) {
+        DailySummary summary = dailySummaryService.getSummary(day != null ? day : LocalDate.now());
+        if (summary != null) {
+            return ResponseEntity.ok(summary);
+        } else {
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
+    /**
+     * Fleet-wide percentiles over the last window, merged from every device's sketches
+     * GET /api/sensors/quantiles?window=15m&q=0.5,0.95,0.99
+     */
+    @GetMapping("/quantiles")
+    public ResponseEntity<SensorQuantiles> getFleetQuantiles(
+            @RequestParam(defaultValue = "15m") String window,
+            @RequestParam(defaultValue = "0.5,0.95,0.99") double[] q) {
+        return quantiles(null, window, q);
+    }
+    
+    /**
+     * Percentiles of a device over the last window
+     * GET /api/sensors/{deviceId}/quantiles?window=1h&q=0.5,0.99
+     */
+    @GetMapping("/{deviceId}/quantiles")
+    public ResponseEntity<SensorQuantiles> getSensorQuantiles(
+            @PathVariable String deviceId,
+            @RequestParam(defaultValue = "15m") String window,
+            @RequestParam(defaultValue = "0.5,0.95,0.99") double[] q) {
+        return quantiles(deviceId, window, q);
+    }
+    
+    private ResponseEntity<SensorQuantiles> quantiles(String deviceId, String window, double[] q) {
+        try {
+            Duration windowDuration = DurationStyle.detectAndParse(window, ChronoUnit.SECONDS);
+            if (windowDuration.toMillis() <= 0 || q.length == 0) {
+                return ResponseEntity.badRequest().build();
+            }
+            for (double quantile : q) {
+                if (!(quantile >= 0 && quantile <= 1)) {
+                    return ResponseEntity.badRequest().build();
+                }
+            }
+            SensorQuantiles quantiles = deviceId != null
+                    ? quantileService.getQuantiles(deviceId, windowDuration, q)
+                    : quantileService.getFleetQuantiles(windowDuration, q);
+            if (quantiles != null) {
+                return ResponseEntity.ok(quantiles);
+            } else {
+                return ResponseEntity.notFound().build();
+            }
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    /**
+     * Fleet-wide aggregate of a metric over the window ending now, or over the latest reading of
+     * each device without a window; optionally per device or the top k devices
+     * GET /api/sensors/aggregate?metric=co2&window=1h&fn=avg,max,p95
+     * GET /api/sensors/aggregate?metric=temperature&fn=last&top=10
+     * GET /api/sensors/aggregate?metric=humidity&window=15m&fn=avg,p99&groupBy=device
+     */
+    @GetMapping("/aggregate")
+    public ResponseEntity<SensorAggregate> getAggregate(
+            @RequestParam(defaultValue = "temperature") String metric,
+            @RequestParam(required = false) String window,
+            @RequestParam(defaultValue = "avg,min,max") List<String> fn,
+            @RequestParam(required = false) String groupBy,
+            @RequestParam(required = false) Integer top,
+            @RequestParam(required = false) String by,
+            @RequestParam(defaultValue = "desc") String order) {
+        try {
+            Duration windowDuration = window != null ? DurationStyle.detectAndParse(window, ChronoUnit.SECONDS) : null;
+            if ((windowDuration != null && windowDuration.toMillis() <= 0)
+                    || (groupBy != null && !groupBy.equalsIgnoreCase("device"))
+                    || !(order.equalsIgnoreCase("asc") || order.equalsIgnoreCase("desc"))) {
+                return ResponseEntity.badRequest().build();
+            }
+            SensorAggregate aggregate = aggregateService.aggregate(SensorMetric.fromName(metric), windowDuration,
+                    fn, groupBy != null, top, by, order.equalsIgnoreCase("asc"));
+            if (aggregate != null) {
+                return ResponseEntity.ok(aggregate);
+            } else {
+                return ResponseEntity.notFound().build();
+            }
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    /**
+     * Ingest pipeline queue depths and drop counters, plus WebSocket conflation counters
+     * GET /api/sensors/pipeline
+     */
+    @GetMapping("/pipeline")
+    public ResponseEntity<Map<String, Object>> getPipelineStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(mqttInputChannel.getStats());
+        stats.put("broadcast", broadcastService.getStats());
+        return ResponseEntity.ok(stats);
     }
     
     @GetMapping("/{deviceId}")
-    public ResponseEntity<SensorData> getLatestSensorData(@PathVariable String deviceId) {
-        SensorData sensorData = mqttService.getLatestSensorData(deviceId);
+    public ResponseEntity<byte[]> getLatestSensorData(@PathVariable String deviceId) {
+        EncodedSensorData sensorData = mqttService.getLatestEncodedSensorData(deviceId);
         if (sensorData != null) {
-            return ResponseEntity.ok(sensorData);
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(sensorData.json());
         } else {
             return ResponseEntity.notFound().build();
         }
     }
     
+    /**
+     * Device history, newest first
+     * GET /api/sensors/{deviceId}/history?from=2025-01-01T00:00:00&to=...&step=1m&limit=1000&metric=temperature
+     * Without parameters the most recent readings are returned; older compressed history needs from, to, step or limit,
+     * and archived history (past sensor.history.compressed-retention-days) is only read when from is given.
+     */
     @GetMapping("/{deviceId}/history")
-    public ResponseEntity<List<SensorData>> getSensorDataHistory(@PathVariable String deviceId) {
-        List<SensorData> history = mqttService.getSensorDataHistory(deviceId);
-        return ResponseEntity.ok(history);
+    public ResponseEntity<List<SensorData>> getSensorDataHistory(
+            @PathVariable String deviceId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) String step,
+            @RequestParam(defaultValue = "temperature") String metric) {
+        if (from == null && to == null && limit == null && step == null) {
+            List<SensorData> history = mqttService.getSensorDataHistory(deviceId);
+            return ResponseEntity.ok(history);
+        }
+        
+        try {
+            // Plain numbers are seconds; 30s, 5m, 1h and ISO-8601 (PT5M) are also accepted
+            Duration stepDuration = step != null ? DurationStyle.detectAndParse(step, ChronoUnit.SECONDS) : null;
+            if ((limit != null && limit <= 0) || (stepDuration != null && stepDuration.toMillis() <= 0)) {
+                return ResponseEntity.badRequest().build();
+            }
+            List<SensorData> history = mqttService.getSensorDataHistory(
+                    deviceId, from, to, limit, stepDuration, SensorMetric.fromName(metric));
+            return ResponseEntity.ok(history);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    /**
+     * Precomputed min/max/sum/avg/last per metric, newest bucket first
+     * GET /api/sensors/{deviceId}/rollups?resolution=1h&from=2025-01-01T00:00:00&to=...
+     */
+    @GetMapping("/{deviceId}/rollups")
+    public ResponseEntity<List<SensorRollup>> getSensorRollups(
+            @PathVariable String deviceId,
+            @RequestParam(defaultValue = "1m") String resolution,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        try {
+            List<SensorRollup> rollups = rollupService.getRollups(
+                    deviceId, RollupResolution.fromLabel(resolution), from, to);
+            return ResponseEntity.ok(rollups);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 }
@@ -0,0 +1,24 @@
+package com.example.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AlertRule {
+    private String id;
+    private String name; // used as the alert type in notifications, defaults to the id
+    private String metric; // SensorData field name, or airQualityStatus (1 Excellent .. 5 Hazardous)
+    private String operator; // ">" fires above the threshold, "<" below it
+    private double threshold;
+    private Double clearThreshold; // hysteresis: the alert resolves once past this value, defaults from config
+    private Integer debounce; // consecutive readings needed to fire or resolve, defaults from config
+    private Long cooldown; // minimum time between notifications of the rule for one device (ms), defaults from config
+    private String recipient; // email address, defaults from config
+    @Builder.Default
+    private boolean enabled = true;
+}
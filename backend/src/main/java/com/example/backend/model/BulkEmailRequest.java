@@ -0,0 +1,19 @@
+package com.example.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkEmailRequest {
+    private String subject; // Template, {{name}} is replaced by the recipient's "name" variable
+    private String body; // Template, values are HTML-escaped when isHtml
+    private boolean isHtml;
+    private List<BulkEmailRecipient> recipients;
+}
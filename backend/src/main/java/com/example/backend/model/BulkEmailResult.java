@@ -0,0 +1,17 @@
+package com.example.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkEmailResult {
+    private int index; // Position of the recipient in the request
+    private String to;
+    private String status; // SENT, FAILED, QUEUED (handed to the outbox for retry)
+    private String errorMessage;
+}
@@ -0,0 +1,23 @@
+package com.example.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailySummary {
+    private LocalDate day;
+    private String deviceId; // null for the fleet-wide summary
+    private long readings;
+    private long alerts; // alerts triggered by the alert rules
+    private Map<String, MetricSummary> metrics; // keyed by SensorData field name
+    private List<DailySummary> devices; // per-device summaries, on the fleet-wide summary only
+}
@@ -0,0 +1,18 @@
+package com.example.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeviceAggregate {
+    private String deviceId;
+    private long count;
+    private Map<String, Double> values; // keyed by function, e.g. avg, max, p95
+}
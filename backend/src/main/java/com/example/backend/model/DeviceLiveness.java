@@ -0,0 +1,22 @@
+package com.example.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeviceLiveness {
+    private String type; // device_online, device_offline (same envelope as other /topic/status messages)
+    private String deviceId;
+    private boolean online;
+    private LocalDateTime lastSeen;
+    private LocalDateTime since; // time of the last online/offline transition
+    private String message;
+    private long timestamp;
+}
@@ -9,7 +9,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class EmailMessage {
@@ -24,8 +24,9 @@ public class EmailMessage {
     private LocalDateTime sentAt;
     private LocalDateTime receivedAt;
     private List<String> attachmentNames;
-    private String status; // SENT, FAILED, RECEIVED, etc.
+    private String status; // PENDING, RETRYING, SENT, FAILED, RECEIVED, etc.
     private String errorMessage;
+    private int attempts; // Delivery attempts made so far
     private String summary; // AI-generated summary (max 80 chars)
     private String priority; // HIGH, MEDIUM, LOW
     @Builder.Default
@@ -0,0 +1,33 @@
+package com.example.backend.model;
+
+import java.util.List;
+
+/**
+ * A reading together with its JSON encoding, produced once at ingest and written as-is
+ * to WebSocket subscribers and REST clients. The reading must not be modified afterwards.
+ */
+public record EncodedSensorData(SensorData data, byte[] json) {
+
+    /**
+     * The encoded readings joined into a JSON array
+     */
+    public static byte[] toJsonArray(List<EncodedSensorData> readings) {
+        int length = 2 + Math.max(0, readings.size() - 1);
+        for (EncodedSensorData reading : readings) {
+            length += reading.json().length;
+        }
+        byte[] array = new byte[length];
+        int position = 0;
+        array[position++] = '[';
+        for (int i = 0; i < readings.size(); i++) {
+            if (i > 0) {
+                array[position++] = ',';
+            }
+            byte[] json = readings.get(i).json();
+            System.arraycopy(json, 0, array, position, json.length);
+            position += json.length;
+        }
+        array[position] = ']';
+        return array;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MetricQuantiles {
+    private long count;
+    private double min;
+    private double max;
+    private Map<String, Double> quantiles; // e.g. p50, p95, p99; within 1% of the exact value
+}
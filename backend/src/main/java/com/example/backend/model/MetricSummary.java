@@ -0,0 +1,18 @@
+package com.example.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MetricSummary {
+    private double min;
+    private double max;
+    private double sum;
+    private double avg;
+    private double last;
+}
@@ -0,0 +1,45 @@
+package com.example.backend.model;
+
+/**
+ * Bucket sizes maintained by the sensor rollup engine
+ */
+public enum RollupResolution {
+    MINUTE("1m", 60_000L),
+    HOUR("1h", 3_600_000L),
+    DAY("1d", 86_400_000L);
+
+    private final String label;
+    private final long millis;
+
+    RollupResolution(String label, long millis) {
+        this.label = label;
+        this.millis = millis;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    /**
+     * Start of the bucket containing the given (local) epoch millisecond
+     */
+    public long bucketStart(long millis) {
+        return Math.floorDiv(millis, this.millis) * this.millis;
+    }
+
+    /**
+     * Resolve a resolution from its label (1m, 1h, 1d) or enum name, ignoring case
+     */
+    public static RollupResolution fromLabel(String label) {
+        for (RollupResolution resolution : values()) {
+            if (resolution.label.equalsIgnoreCase(label) || resolution.name().equalsIgnoreCase(label)) {
+                return resolution;
+            }
+        }
+        throw new IllegalArgumentException("Unknown rollup resolution: " + label);
+    }
+}
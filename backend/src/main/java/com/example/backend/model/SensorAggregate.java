@@ -0,0 +1,24 @@
+package com.example.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SensorAggregate {
+    private String metric; // SensorData field name
+    private LocalDateTime from; // null when aggregating the latest reading of each device
+    private LocalDateTime to;
+    private int devices; // devices with readings in the window
+    private long count; // readings aggregated
+    private Map<String, Double> values; // fleet-wide, keyed by function, e.g. avg, max, p95
+    private List<DeviceAggregate> groups; // per device when grouped, or the top k; null otherwise
+}
@@ -0,0 +1,25 @@
+package com.example.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SensorAlert {
+    private String type; // alert_fired, alert_resolved
+    private String ruleId;
+    private String ruleName;
+    private String deviceId;
+    private String metric;
+    private double value;
+    private double threshold;
+    private String message;
+    private LocalDateTime receivedAt;
+    private long timestamp;
+}
@@ -0,0 +1,23 @@
+package com.example.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SensorAnomaly {
+    private String deviceId;
+    private String metric; // SensorData field name
+    private String kind; // spike: reading far from the recent level, drift: recent level far from the long-run level
+    private double value; // the reading (spike) or the recent level (drift)
+    private double expected; // the level it was compared against
+    private double stdDev; // long-run noise the deviation is measured in
+    private double score; // deviation in standard deviations, signed
+    private LocalDateTime receivedAt;
+}
@@ -0,0 +1,51 @@
+package com.example.backend.model;
+
+/**
+ * Numeric SensorData fields that can be queried, aggregated and charted
+ */
+public enum SensorMetric {
+    TEMPERATURE("temperature"),
+    HUMIDITY("humidity"),
+    AIR_QUALITY_RAW("airQualityRaw"),
+    CO2("co2"),
+    NH3("nh3"),
+    CH4("ch4"),
+    CO("co");
+
+    private final String fieldName;
+
+    SensorMetric(String fieldName) {
+        this.fieldName = fieldName;
+    }
+
+    /**
+     * Name of the field in the SensorData JSON
+     */
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    public double valueOf(SensorData data) {
+        return switch (this) {
+            case TEMPERATURE -> data.getTemperature();
+            case HUMIDITY -> data.getHumidity();
+            case AIR_QUALITY_RAW -> data.getAirQualityRaw();
+            case CO2 -> data.getCo2();
+            case NH3 -> data.getNh3();
+            case CH4 -> data.getCh4();
+            case CO -> data.getCo();
+        };
+    }
+
+    /**
+     * Resolve a metric from its JSON field name or enum name, ignoring case
+     */
+    public static SensorMetric fromName(String name) {
+        for (SensorMetric metric : values()) {
+            if (metric.fieldName.equalsIgnoreCase(name) || metric.name().equalsIgnoreCase(name)) {
+                return metric;
+            }
+        }
+        throw new IllegalArgumentException("Unknown sensor metric: " + name);
+    }
+}
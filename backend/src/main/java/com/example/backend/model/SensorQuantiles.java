@@ -0,0 +1,21 @@
+package com.example.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SensorQuantiles {
+    private String deviceId; // null for fleet-wide quantiles
+    private LocalDateTime from; // start of the oldest time bucket included
+    private LocalDateTime to;
+    private int devices; // devices merged into the result
+    private Map<String, MetricQuantiles> metrics; // keyed by SensorData field name
+}
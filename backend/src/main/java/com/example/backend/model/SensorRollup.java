@@ -0,0 +1,22 @@
+package com.example.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SensorRollup {
+    private String deviceId; // null for fleet-wide rollups
+    private String resolution; // 1m, 1h, 1d
+    private LocalDateTime bucketStart;
+    private long count;
+    private boolean complete; // false while the bucket is still open
+    private Map<String, MetricSummary> metrics; // keyed by SensorData field name
+}
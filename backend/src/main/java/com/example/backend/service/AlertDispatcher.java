@@ -0,0 +1,311 @@
+package com.example.backend.service;
+
+import com.example.backend.model.EmailMessage;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers alert emails off the caller's thread.
+ *
+ * Alerts go into a bounded queue (dropped when it is full, never blocking the sensor path) and
+ * are picked up by a dispatcher thread that:
+ * <ul>
+ *   <li>sends the first alert of a type and device at once, and coalesces further ones within
+ *   the digest window into a single digest email sent when the window closes</li>
+ *   <li>rate-limits each recipient with a token bucket; a digest that has to wait for a token
+ *   keeps collecting alerts</li>
+ * </ul>
+ * Digests are handed to the email outbox, which delivers them off this thread; the sent and
+ * failed counters follow the outbox's final delivery outcome.
+ */
+@Slf4j
+@Service
+public class AlertDispatcher implements MeterBinder {
+
+    private static final int MAX_DIGEST_MESSAGES = 20;
+    private static final long IDLE_POLL_MILLIS = 1000;
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 5000;
+
+    private final EmailService emailService;
+
+    @Value("${sensor.alerts.dispatch.queue-capacity:1000}")
+    private int queueCapacity;
+
+    // Alerts of the same type and device within this window are sent as one digest (ms)
+    @Value("${sensor.alerts.dispatch.digest-window:300000}")
+    private long digestWindowMillis;
+
+    // Emails a recipient can get in a burst, and the rate the bucket refills at
+    @Value("${sensor.alerts.dispatch.recipient-burst:5}")
+    private int recipientBurst;
+
+    @Value("${sensor.alerts.dispatch.recipient-rate-per-hour:20}")
+    private double recipientRatePerHour;
+
+    private BlockingQueue<PendingAlert> queue;
+    private Thread dispatcherThread;
+    private volatile boolean running;
+
+    // Dispatcher thread state
+    private final Map<DigestKey, Digest> digests = new LinkedHashMap<>();
+    private final Map<DigestKey, Long> lastSent = new HashMap<>();
+    private final Map<String, TokenBucket> buckets = new HashMap<>();
+    private long nextDueAt = Long.MAX_VALUE;
+    private volatile int pendingDigests;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong rateLimited = new AtomicLong();
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    @Autowired
+    public AlertDispatcher(EmailService emailService) {
+        this.emailService = emailService;
+    }
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        dispatcherThread = Thread.ofPlatform().name("alert-dispatcher").daemon().start(this::run);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        dispatcherThread.join(SHUTDOWN_TIMEOUT_MILLIS);
+        if (pendingDigests > 0) {
+            log.warn("{} alert digests not sent at shutdown", pendingDigests);
+        }
+    }
+
+    /**
+     * Queue an alert email without waiting. Returns false if the queue is full and the alert
+     * was dropped.
+     */
+    public boolean dispatch(String recipient, String alertType, String deviceId, String message) {
+        if (queue.offer(new PendingAlert(new DigestKey(recipient, alertType, deviceId), message))) {
+            enqueued.incrementAndGet();
+            return true;
+        }
+        dropped.incrementAndGet();
+        log.warn("Alert queue full, dropped {} alert for {}", alertType, deviceId);
+        return false;
+    }
+
+    /**
+     * Queue depth, pending digests and delivery counters
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("queueDepth", queue.size());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("pendingDigests", pendingDigests);
+        stats.put("enqueued", enqueued.get());
+        stats.put("dropped", dropped.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("rateLimited", rateLimited.get());
+        stats.put("queued", queued.get());
+        stats.put("sent", sent.get());
+        stats.put("failed", failed.get());
+        return stats;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("auralink.alerts.dispatch.queue.depth", this, dispatcher -> dispatcher.queue.size())
+                .description("Alerts waiting for the dispatcher")
+                .register(registry);
+        Gauge.builder("auralink.alerts.dispatch.digests.pending", this, dispatcher -> dispatcher.pendingDigests)
+                .description("Alert digests waiting for their window to close or for a rate limit token")
+                .register(registry);
+        registerOutcome(registry, "enqueued", enqueued);
+        registerOutcome(registry, "dropped", dropped);
+        registerOutcome(registry, "coalesced", coalesced);
+        registerOutcome(registry, "rate_limited", rateLimited);
+        registerOutcome(registry, "queued", queued);
+        registerOutcome(registry, "sent", sent);
+        registerOutcome(registry, "failed", failed);
+    }
+
+    private void registerOutcome(MeterRegistry registry, String outcome, AtomicLong counter) {
+        FunctionCounter.builder("auralink.alerts.dispatch", counter, AtomicLong::get)
+                .description("Alert emails by dispatch outcome")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    private void run() {
+        List<PendingAlert> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                long wait = Math.min(IDLE_POLL_MILLIS, nextDueAt - System.currentTimeMillis());
+                PendingAlert alert = queue.poll(Math.max(1, wait), TimeUnit.MILLISECONDS);
+                long now = System.currentTimeMillis();
+                if (alert != null) {
+                    add(alert, now);
+                    queue.drainTo(batch);
+                    for (PendingAlert pending : batch) {
+                        add(pending, now);
+                    }
+                    batch.clear();
+                }
+                dispatchDue(now);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Alert dispatcher error", e);
+            }
+        }
+    }
+
+    private void add(PendingAlert alert, long now) {
+        Digest digest = digests.get(alert.key);
+        if (digest != null) {
+            digest.add(alert.message);
+            coalesced.incrementAndGet();
+            return;
+        }
+        if (digests.size() >= queueCapacity) {
+            dropped.incrementAndGet();
+            return;
+        }
+        Long sentAt = lastSent.get(alert.key);
+        long dueAt = sentAt != null && now - sentAt < digestWindowMillis ? sentAt + digestWindowMillis : now;
+        digest = new Digest(alert.key, dueAt);
+        digest.add(alert.message);
+        digests.put(alert.key, digest);
+        nextDueAt = Math.min(nextDueAt, dueAt);
+    }
+
+    private void dispatchDue(long now) {
+        if (now < nextDueAt) {
+            return;
+        }
+        long nextDue = Long.MAX_VALUE;
+        Iterator<Digest> iterator = digests.values().iterator();
+        while (iterator.hasNext()) {
+            Digest digest = iterator.next();
+            if (digest.dueAt <= now) {
+                TokenBucket bucket = buckets.computeIfAbsent(digest.key.recipient(), recipient -> new TokenBucket(recipientBurst, now));
+                long tokenAt = bucket.take(now, recipientBurst, recipientRatePerHour / TimeUnit.HOURS.toMillis(1));
+                if (tokenAt <= now) {
+                    iterator.remove();
+                    lastSent.put(digest.key, now);
+                    send(digest);
+                    continue;
+                }
+                digest.dueAt = tokenAt;
+                rateLimited.incrementAndGet();
+            }
+            nextDue = Math.min(nextDue, digest.dueAt);
+        }
+        nextDueAt = nextDue;
+        pendingDigests = digests.size();
+        lastSent.values().removeIf(sentAt -> now - sentAt >= digestWindowMillis);
+    }
+
+    private void send(Digest digest) {
+        String alertType = digest.count == 1 ? digest.key.alertType() : digest.key.alertType() + " (" + digest.count + " alerts)";
+        StringBuilder message = new StringBuilder();
+        for (String part : digest.messages) {
+            if (!message.isEmpty()) {
+                message.append("\n\n");
+            }
+            message.append(part);
+        }
+        if (digest.count > digest.messages.size()) {
+            message.append("\n\n... and ").append(digest.count - digest.messages.size()).append(" more");
+        }
+        try {
+            // The email outbox persists and delivers it; sent/failed are counted once delivery settles
+            emailService.sendSensorAlert(digest.key.recipient(), alertType, message.toString(), this::recordOutcome);
+            queued.incrementAndGet();
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            log.error("Failed to send {} alert to {}", alertType, digest.key.recipient(), e);
+        }
+    }
+
+    private void recordOutcome(EmailMessage result) {
+        if ("FAILED".equals(result.getStatus())) {
+            failed.incrementAndGet();
+        } else {
+            sent.incrementAndGet();
+        }
+    }
+
+    private record DigestKey(String recipient, String alertType, String deviceId) {
+    }
+
+    private record PendingAlert(DigestKey key, String message) {
+    }
+
+    private static final class Digest {
+        private final DigestKey key;
+        private final List<String> messages = new ArrayList<>();
+        private long dueAt;
+        private int count;
+
+        Digest(DigestKey key, long dueAt) {
+            this.key = key;
+            this.dueAt = dueAt;
+        }
+
+        void add(String message) {
+            count++;
+            if (messages.size() < MAX_DIGEST_MESSAGES) {
+                messages.add(message);
+            }
+        }
+    }
+
+    private static final class TokenBucket {
+        private double tokens;
+        private long refilledAt;
+
+        TokenBucket(int capacity, long now) {
+            this.tokens = capacity;
+            this.refilledAt = now;
+        }
+
+        /**
+         * Take a token if one is available and return now, or return when the next one will be
+         */
+        long take(long now, int capacity, double tokensPerMilli) {
+            tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerMilli);
+            refilledAt = now;
+            if (tokens >= 1) {
+                tokens--;
+                return now;
+            }
+            if (tokensPerMilli <= 0) {
+                return Long.MAX_VALUE;
+            }
+            return now + (long) Math.ceil((1 - tokens) / tokensPerMilli);
+        }
+    }
+}
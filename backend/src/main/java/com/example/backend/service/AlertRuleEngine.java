@@ -0,0 +1,409 @@
+package com.example.backend.service;
+
+import com.example.backend.model.AlertRule;
+import com.example.backend.model.SensorAlert;
+import com.example.backend.model.SensorData;
+import com.example.backend.model.SensorMetric;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoublePredicate;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Threshold alert rules evaluated on every ingested reading.
+ *
+ * Rules come from sensor.alerts.rules and can be changed at runtime through /api/alerts/rules.
+ * Each rule is compiled once into a value extractor and fire/clear predicates over primitives,
+ * and every device keeps a small state machine per rule:
+ * <ul>
+ *   <li>debounce: the condition must hold for that many consecutive readings to fire or resolve</li>
+ *   <li>hysteresis: a firing alert resolves at the clear threshold, not the fire threshold</li>
+ *   <li>cooldown: an alert that fires again within the cooldown is not notified again, and
+ *   neither is its resolution</li>
+ * </ul>
+ * Evaluating a reading that changes no alert state allocates nothing; the message is only
+ * formatted when an alert fires, and its email is queued on the AlertDispatcher. Readings of
+ * a device are evaluated on its ingest lane only, so per-device state is single-writer.
+ */
+@Slf4j
+@Service
+public class AlertRuleEngine implements MeterBinder {
+
+    public static final String STOMP_DESTINATION = "/topic/alerts";
+    // Pseudo-metric over the air quality status, ranked by severity
+    public static final String AIR_QUALITY_STATUS = "airQualityStatus";
+    private static final String[] AIR_QUALITY_LEVELS = {null, "Excellent", "Good", "Moderate", "Poor", "Hazardous"};
+
+    private final AlertDispatcher alertDispatcher;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final SensorDailySummaryService dailySummaryService;
+
+    @Value("${sensor.alerts.enabled:true}")
+    private boolean enabled;
+
+    // Rules as id:metric>threshold or id:metric<threshold, comma-separated
+    @Value("${sensor.alerts.rules:}")
+    private String configuredRules;
+
+    @Value("${sensor.alerts.recipient:admin@example.com}")
+    private String defaultRecipient;
+
+    @Value("${sensor.alerts.debounce:3}")
+    private int defaultDebounce;
+
+    @Value("${sensor.alerts.cooldown:900000}")
+    private long defaultCooldownMillis;
+
+    // Default distance between fire and clear thresholds, as a fraction of the threshold
+    @Value("${sensor.alerts.hysteresis:0.02}")
+    private double defaultHysteresis;
+
+    // Compiled rules by id, guarded by this
+    private final Map<String, CompiledRule> compiledRules = new LinkedHashMap<>();
+    // Snapshot read by the ingest lanes, replaced whenever a rule changes
+    private volatile CompiledRule[] rules = new CompiledRule[0];
+    private final ConcurrentHashMap<String, DeviceAlertState> states = new ConcurrentHashMap<>();
+
+    private final LongAdder evaluated = new LongAdder();
+    private final LongAdder fired = new LongAdder();
+    private final LongAdder suppressed = new LongAdder();
+    private final LongAdder resolved = new LongAdder();
+
+    @Autowired
+    public AlertRuleEngine(AlertDispatcher alertDispatcher, SimpMessagingTemplate messagingTemplate,
+                           SensorDailySummaryService dailySummaryService, DeviceRegistry deviceRegistry) {
+        this.alertDispatcher = alertDispatcher;
+        this.messagingTemplate = messagingTemplate;
+        this.dailySummaryService = dailySummaryService;
+        deviceRegistry.addEvictionListener(states::remove);
+    }
+
+    @PostConstruct
+    void loadConfiguredRules() {
+        for (String entry : configuredRules.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int separator = entry.indexOf(':');
+            int operator = Math.max(entry.indexOf('>'), entry.indexOf('<'));
+            if (separator <= 0 || operator < separator) {
+                throw new IllegalArgumentException("Invalid alert rule '" + entry + "', expected id:metric>threshold");
+            }
+            putRule(AlertRule.builder()
+                    .id(entry.substring(0, separator).trim())
+                    .metric(entry.substring(separator + 1, operator).trim())
+                    .operator(String.valueOf(entry.charAt(operator)))
+                    .threshold(Double.parseDouble(entry.substring(operator + 1).trim()))
+                    .build());
+        }
+        log.info("Loaded {} alert rules", rules.length);
+    }
+
+    /**
+     * Evaluate every enabled rule against a reading of a device
+     */
+    public void evaluate(SensorData sensorData) {
+        CompiledRule[] current = rules;
+        if (!enabled || current.length == 0) {
+            return;
+        }
+        evaluated.increment();
+        DeviceAlertState state = states.get(sensorData.getDeviceId());
+        if (state == null) {
+            state = states.computeIfAbsent(sensorData.getDeviceId(), id -> new DeviceAlertState(current));
+        }
+        if (state.rules != current) {
+            state.migrate(current);
+        }
+        for (int i = 0; i < current.length; i++) {
+            CompiledRule rule = current[i];
+            double value = rule.extractor.applyAsDouble(sensorData);
+            boolean firing = state.firing[i];
+            if (firing ? rule.clears.test(value) : rule.fires.test(value)) {
+                if (++state.streak[i] >= rule.debounce) {
+                    state.streak[i] = 0;
+                    state.firing[i] = !firing;
+                    if (firing) {
+                        // Only alerts whose firing was published get a resolution
+                        if (state.notified[i]) {
+                            resolve(rule, sensorData, value);
+                        }
+                        state.notified[i] = false;
+                    } else {
+                        state.notified[i] = fire(rule, sensorData, value, state, i);
+                    }
+                }
+            } else {
+                state.streak[i] = 0;
+            }
+        }
+    }
+
+    public synchronized List<AlertRule> getRules() {
+        List<AlertRule> result = new ArrayList<>(compiledRules.size());
+        for (CompiledRule rule : compiledRules.values()) {
+            result.add(rule.definition);
+        }
+        return result;
+    }
+
+    public synchronized AlertRule getRule(String id) {
+        CompiledRule rule = compiledRules.get(id);
+        return rule != null ? rule.definition : null;
+    }
+
+    /**
+     * Add or replace a rule. Per-device state of the other rules is kept.
+     *
+     * @return the rule with defaults filled in
+     * @throws IllegalArgumentException if the rule is invalid
+     */
+    public synchronized AlertRule putRule(AlertRule rule) {
+        CompiledRule compiled = compile(rule);
+        compiledRules.put(compiled.definition.getId(), compiled);
+        publishRules();
+        return compiled.definition;
+    }
+
+    public synchronized boolean removeRule(String id) {
+        if (compiledRules.remove(id) == null) {
+            return false;
+        }
+        publishRules();
+        return true;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("auralink.alerts.evaluated", evaluated, LongAdder::sum)
+                .description("Readings evaluated against the alert rules")
+                .register(registry);
+        registerOutcome(registry, "fired", fired);
+        registerOutcome(registry, "suppressed", suppressed);
+        registerOutcome(registry, "resolved", resolved);
+        Gauge.builder("auralink.alerts.rules", this, engine -> engine.rules.length)
+                .description("Enabled alert rules")
+                .register(registry);
+    }
+
+    private void registerOutcome(MeterRegistry registry, String outcome, LongAdder counter) {
+        FunctionCounter.builder("auralink.alerts", counter, LongAdder::sum)
+                .description("Alert state transitions; suppressed alerts fired within the cooldown")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    /**
+     * Publish and notify a fired alert, unless it is within the cooldown.
+     * Returns whether alert_fired was published.
+     */
+    private boolean fire(CompiledRule rule, SensorData sensorData, double value, DeviceAlertState state, int index) {
+        long now = System.currentTimeMillis();
+        dailySummaryService.recordAlert(sensorData.getDeviceId());
+        if (state.lastNotified[index] != 0 && now - state.lastNotified[index] < rule.cooldownMillis) {
+            suppressed.increment();
+            return false;
+        }
+        state.lastNotified[index] = now;
+        fired.increment();
+
+        String message = String.format(
+            "%s detected:\n" +
+            "%s: %s (%s %s)\n" +
+            "Device ID: %s\n" +
+            "Time: %s",
+            rule.definition.getName(),
+            rule.definition.getMetric(),
+            formatValue(rule, value),
+            rule.definition.getOperator(),
+            formatValue(rule, rule.definition.getThreshold()),
+            sensorData.getDeviceId(),
+            sensorData.getReceivedAt()
+        );
+        publish("alert_fired", rule, sensorData, value, message, now);
+        log.warn("Alert {} fired for device {}: {}", rule.definition.getId(), sensorData.getDeviceId(), value);
+        alertDispatcher.dispatch(rule.definition.getRecipient(), rule.definition.getName(), sensorData.getDeviceId(), message);
+        return true;
+    }
+
+    private void resolve(CompiledRule rule, SensorData sensorData, double value) {
+        resolved.increment();
+        String message = rule.definition.getName() + " resolved on " + sensorData.getDeviceId();
+        publish("alert_resolved", rule, sensorData, value, message, System.currentTimeMillis());
+        log.info("Alert {} resolved for device {}", rule.definition.getId(), sensorData.getDeviceId());
+    }
+
+    private void publish(String type, CompiledRule rule, SensorData sensorData, double value, String message, long now) {
+        messagingTemplate.convertAndSend(STOMP_DESTINATION, SensorAlert.builder()
+                .type(type)
+                .ruleId(rule.definition.getId())
+                .ruleName(rule.definition.getName())
+                .deviceId(sensorData.getDeviceId())
+                .metric(rule.definition.getMetric())
+                .value(value)
+                .threshold(rule.definition.getThreshold())
+                .message(message)
+                .receivedAt(sensorData.getReceivedAt())
+                .timestamp(now)
+                .build());
+    }
+
+    private void publishRules() {
+        rules = compiledRules.values().stream()
+                .filter(rule -> rule.definition.isEnabled())
+                .toArray(CompiledRule[]::new);
+    }
+
+    private CompiledRule compile(AlertRule rule) {
+        if (rule.getId() == null || rule.getId().isBlank()) {
+            throw new IllegalArgumentException("Alert rule id is required");
+        }
+        boolean above = switch (String.valueOf(rule.getOperator())) {
+            case ">" -> true;
+            case "<" -> false;
+            default -> throw new IllegalArgumentException("Alert rule operator must be > or <, got " + rule.getOperator());
+        };
+        String metricName;
+        ToDoubleFunction<SensorData> extractor;
+        if (AIR_QUALITY_STATUS.equalsIgnoreCase(rule.getMetric())) {
+            metricName = AIR_QUALITY_STATUS;
+            extractor = data -> airQualityLevel(data.getAirQualityStatus());
+        } else {
+            SensorMetric metric = SensorMetric.fromName(String.valueOf(rule.getMetric()));
+            metricName = metric.getFieldName();
+            extractor = metric::valueOf;
+        }
+
+        double threshold = rule.getThreshold();
+        double clearThreshold = rule.getClearThreshold() != null ? rule.getClearThreshold()
+                : above ? threshold - Math.abs(threshold) * defaultHysteresis
+                : threshold + Math.abs(threshold) * defaultHysteresis;
+        if (above ? clearThreshold > threshold : clearThreshold < threshold) {
+            throw new IllegalArgumentException("Alert rule clear threshold " + clearThreshold
+                    + " is on the firing side of " + threshold);
+        }
+        int debounce = rule.getDebounce() != null ? rule.getDebounce() : defaultDebounce;
+        long cooldown = rule.getCooldown() != null ? rule.getCooldown() : defaultCooldownMillis;
+        if (debounce < 1 || cooldown < 0) {
+            throw new IllegalArgumentException("Alert rule debounce must be at least 1 and cooldown not negative");
+        }
+
+        AlertRule definition = AlertRule.builder()
+                .id(rule.getId().trim())
+                .name(rule.getName() != null && !rule.getName().isBlank() ? rule.getName() : displayName(rule.getId().trim()))
+                .metric(metricName)
+                .operator(above ? ">" : "<")
+                .threshold(threshold)
+                .clearThreshold(clearThreshold)
+                .debounce(debounce)
+                .cooldown(cooldown)
+                .recipient(rule.getRecipient() != null && !rule.getRecipient().isBlank() ? rule.getRecipient() : defaultRecipient)
+                .enabled(rule.isEnabled())
+                .build();
+        DoublePredicate fires = above ? value -> value > threshold : value -> value < threshold;
+        DoublePredicate clears = above ? value -> value <= clearThreshold : value -> value >= clearThreshold;
+        return new CompiledRule(definition, extractor, fires, clears, debounce, cooldown);
+    }
+
+    private static String formatValue(CompiledRule rule, double value) {
+        if (AIR_QUALITY_STATUS.equals(rule.definition.getMetric())) {
+            int level = (int) Math.round(value);
+            return level >= 1 && level < AIR_QUALITY_LEVELS.length ? AIR_QUALITY_LEVELS[level] : String.valueOf(value);
+        }
+        return value == Math.rint(value) ? String.valueOf((long) value) : String.format("%.2f", value);
+    }
+
+    // "high-temperature" -> "High Temperature"
+    private static String displayName(String id) {
+        StringBuilder name = new StringBuilder(id.length());
+        boolean wordStart = true;
+        for (char c : id.toCharArray()) {
+            if (c == '-' || c == '_') {
+                name.append(' ');
+                wordStart = true;
+            } else {
+                name.append(wordStart ? Character.toUpperCase(c) : c);
+                wordStart = false;
+            }
+        }
+        return name.toString();
+    }
+
+    // Severity rank of an air quality status, 0 when missing or unknown
+    private static double airQualityLevel(String status) {
+        if (status == null) {
+            return 0;
+        }
+        return switch (status) {
+            case "Excellent" -> 1;
+            case "Good" -> 2;
+            case "Moderate" -> 3;
+            case "Poor" -> 4;
+            case "Hazardous" -> 5;
+            default -> 0;
+        };
+    }
+
+    private record CompiledRule(AlertRule definition, ToDoubleFunction<SensorData> extractor,
+                                DoublePredicate fires, DoublePredicate clears, int debounce, long cooldownMillis) {
+    }
+
+    private static final class DeviceAlertState {
+        private CompiledRule[] rules;
+        private boolean[] firing;
+        // Whether the current firing was published, i.e. not suppressed by the cooldown
+        private boolean[] notified;
+        // Consecutive readings meeting the condition that changes the state
+        private int[] streak;
+        private long[] lastNotified;
+
+        DeviceAlertState(CompiledRule[] rules) {
+            this.rules = rules;
+            this.firing = new boolean[rules.length];
+            this.notified = new boolean[rules.length];
+            this.streak = new int[rules.length];
+            this.lastNotified = new long[rules.length];
+        }
+
+        /**
+         * Re-index the state after the rule set changed, keeping it for unchanged rules
+         */
+        void migrate(CompiledRule[] current) {
+            boolean[] newFiring = new boolean[current.length];
+            boolean[] newNotified = new boolean[current.length];
+            int[] newStreak = new int[current.length];
+            long[] newLastNotified = new long[current.length];
+            for (int i = 0; i < current.length; i++) {
+                for (int previous = 0; previous < rules.length; previous++) {
+                    if (rules[previous] == current[i]) {
+                        newFiring[i] = firing[previous];
+                        newNotified[i] = notified[previous];
+                        newStreak[i] = streak[previous];
+                        newLastNotified[i] = lastNotified[previous];
+                        break;
+                    }
+                }
+            }
+            rules = current;
+            firing = newFiring;
+            notified = newNotified;
+            streak = newStreak;
+            lastNotified = newLastNotified;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.backend.service;
+
+import com.example.backend.model.BulkEmailRecipient;
+import com.example.backend.model.BulkEmailRequest;
+import com.example.backend.model.BulkEmailResult;
+import com.example.backend.model.EmailMessage;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Sends one templated email to many recipients.
+ *
+ * The subject and body templates are compiled once per request. Recipients are cut into
+ * batches; each batch renders its messages into two buffers it reuses for every recipient and
+ * hands them to the mail sender in one call, so the whole batch goes over a single pooled SMTP
+ * connection. At most parallelism batches are in flight at once, each on a virtual thread.
+ *
+ * Batches share the SMTP connection pool with the outbox workers. When a whole batch fails before
+ * any message reaches the server (no free connection within the borrow timeout, or the server
+ * could not be reached) its messages are handed to the outbox, which retries them with backoff,
+ * and are reported as QUEUED instead of FAILED.
+ */
+@Slf4j
+@Service
+public class BulkEmailService {
+
+    private final JavaMailSender mailSender;
+    private final EmailOutbox outbox;
+
+    @Value("${spring.mail.username}")
+    private String fromEmail;
+
+    // Batches sent at the same time; keep at or below mail.smtp.pool.size
+    @Value("${mail.bulk.parallelism:4}")
+    private int parallelism;
+
+    @Value("${mail.bulk.batch-size:50}")
+    private int batchSize;
+
+    @Value("${mail.bulk.max-recipients:10000}")
+    private int maxRecipients;
+
+    public BulkEmailService(JavaMailSender mailSender, EmailOutbox outbox) {
+        this.mailSender = mailSender;
+        this.outbox = outbox;
+    }
+
+    /**
+     * Check a request before anything is sent
+     *
+     * @throws IllegalArgumentException when there are no recipients or too many
+     */
+    public void validate(BulkEmailRequest request) {
+        if (request.getRecipients() == null || request.getRecipients().isEmpty()) {
+            throw new IllegalArgumentException("At least one recipient is required");
+        }
+        if (request.getRecipients().size() > maxRecipients) {
+            throw new IllegalArgumentException("At most " + maxRecipients + " recipients are allowed");
+        }
+    }
+
+    /**
+     * Send to every recipient, passing each recipient's result to the sink as its batch completes.
+     * Blocks until all batches are done; the sink is never called concurrently.
+     *
+     * @return the number of emails sent
+     */
+    public int send(BulkEmailRequest request, Consumer<BulkEmailResult> sink) {
+        validate(request);
+        EmailTemplate subject = EmailTemplate.compile(request.getSubject(), false);
+        EmailTemplate body = EmailTemplate.compile(request.getBody(), request.isHtml());
+        List<BulkEmailRecipient> recipients = request.getRecipients();
+
+        AtomicInteger sent = new AtomicInteger();
+        AtomicInteger queued = new AtomicInteger();
+        Semaphore permits = new Semaphore(Math.max(1, parallelism));
+        int size = Math.max(1, batchSize);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int from = 0; from < recipients.size(); from += size) {
+                int start = from;
+                int end = Math.min(recipients.size(), from + size);
+                permits.acquireUninterruptibly();
+                executor.execute(() -> {
+                    try {
+                        List<BulkEmailResult> results = sendBatch(recipients, start, end, subject, body, request.isHtml());
+                        synchronized (sink) {
+                            for (BulkEmailResult result : results) {
+                                if ("SENT".equals(result.getStatus())) {
+                                    sent.incrementAndGet();
+                                } else if ("QUEUED".equals(result.getStatus())) {
+                                    queued.incrementAndGet();
+                                }
+                                sink.accept(result);
+                            }
+                        }
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        }
+        log.info("Bulk email sent to {} of {} recipients, {} queued for retry", sent.get(), recipients.size(), queued.get());
+        return sent.get();
+    }
+
+    private List<BulkEmailResult> sendBatch(List<BulkEmailRecipient> recipients, int start, int end,
+                                            EmailTemplate subject, EmailTemplate body, boolean isHtml) {
+        BulkEmailResult[] results = new BulkEmailResult[end - start];
+        List<MimeMessage> messages = new ArrayList<>(end - start);
+        List<Integer> slots = new ArrayList<>(end - start);
+        // Rendered subject and body of each message, kept for handing it to the outbox
+        List<String> rendered = new ArrayList<>(2 * (end - start));
+        StringBuilder subjectBuffer = new StringBuilder();
+        StringBuilder bodyBuffer = new StringBuilder();
+
+        for (int i = start; i < end; i++) {
+            BulkEmailRecipient recipient = recipients.get(i);
+            try {
+                MimeMessage message = mailSender.createMimeMessage();
+                MimeMessageHelper helper = new MimeMessageHelper(message, false, "UTF-8");
+                helper.setFrom(fromEmail);
+                helper.setTo(recipient.getTo());
+                String renderedSubject = subject.render(recipient.getVariables(), subjectBuffer);
+                String renderedBody = body.render(recipient.getVariables(), bodyBuffer);
+                helper.setSubject(renderedSubject);
+                helper.setText(renderedBody, isHtml);
+                messages.add(message);
+                rendered.add(renderedSubject);
+                rendered.add(renderedBody);
+                slots.add(i);
+            } catch (MessagingException | RuntimeException e) {
+                results[i - start] = result(i, recipient, e);
+            }
+        }
+
+        if (!messages.isEmpty()) {
+            Map<Object, Exception> failures = Map.of();
+            Exception batchFailure = null;
+            try {
+                mailSender.send(messages.toArray(new MimeMessage[0]));
+            } catch (MailSendException e) {
+                failures = e.getFailedMessages();
+                batchFailure = failures.isEmpty() ? e : null;
+            } catch (MailException e) {
+                batchFailure = e;
+            }
+            for (int m = 0; m < messages.size(); m++) {
+                int i = slots.get(m);
+                if (batchFailure != null && outbox.isEnabled()) {
+                    results[i - start] = requeue(i, recipients.get(i), rendered.get(2 * m), rendered.get(2 * m + 1),
+                            isHtml, batchFailure);
+                    continue;
+                }
+                Exception failure = batchFailure != null ? batchFailure : failures.get(messages.get(m));
+                results[i - start] = result(i, recipients.get(i), failure);
+            }
+        }
+        return List.of(results);
+    }
+
+    private BulkEmailResult requeue(int index, BulkEmailRecipient recipient, String subject, String body,
+                                    boolean isHtml, Exception batchFailure) {
+        EmailMessage message = EmailMessage.builder()
+                .id(UUID.randomUUID().toString())
+                .from(fromEmail)
+                .to(List.of(recipient.getTo()))
+                .subject(subject)
+                .body(body)
+                .isHtml(isHtml)
+                .sentAt(LocalDateTime.now())
+                .build();
+        try {
+            outbox.enqueue(message);
+        } catch (IOException e) {
+            log.warn("Failed to queue bulk email to {}: {}", recipient.getTo(), e.getMessage());
+            return result(index, recipient, batchFailure);
+        }
+        return BulkEmailResult.builder()
+                .index(index)
+                .to(recipient.getTo())
+                .status("QUEUED")
+                .errorMessage(batchFailure.getMessage())
+                .build();
+    }
+
+    private static BulkEmailResult result(int index, BulkEmailRecipient recipient, Exception failure) {
+        return BulkEmailResult.builder()
+                .index(index)
+                .to(recipient.getTo())
+                .status(failure == null ? "SENT" : "FAILED")
+                .errorMessage(failure == null ? null : failure.getMessage())
+                .build();
+    }
+}
@@ -0,0 +1,292 @@
+package com.example.backend.service;
+
+import com.example.backend.model.DeviceLiveness;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Online/offline state of devices, fed by heartbeats from the sensor and status topics.
+ *
+ * Deadlines live in a hashed timing wheel advanced by one scheduled tick, so there is no
+ * task per device. A heartbeat only stores the time it was seen; the wheel entry is checked
+ * lazily when its slot comes round and moved to the slot of the new deadline if the device
+ * was heard from in the meantime. Transitions are published to /topic/status.
+ */
+@Service
+public class DeviceLivenessTracker implements MeterBinder {
+
+    private static final int WHEEL_SIZE = 512;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final Set<String> OFFLINE_STATUSES = Set.of("offline", "disconnected", "lost");
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final JsonFactory jsonFactory;
+    private final DeviceRegistry deviceRegistry;
+
+    // A device is offline after this long without a heartbeat (ms)
+    @Value("${sensor.liveness.timeout:15000}")
+    private long timeoutMillis;
+
+    @Value("${sensor.liveness.tick:500}")
+    private long tickMillis;
+
+    private final ConcurrentHashMap<String, DeviceState> devices = new ConcurrentHashMap<>();
+    // Devices that came online since the last tick, put on the wheel by the tick
+    private final ConcurrentLinkedQueue<DeviceState> newlyOnline = new ConcurrentLinkedQueue<>();
+
+    // Wheel state, only touched by the tick
+    private final List<ArrayDeque<DeviceState>> wheel = new ArrayList<>(WHEEL_SIZE);
+    private final long startMillis = System.currentTimeMillis();
+    private long currentTick;
+
+    @Autowired
+    public DeviceLivenessTracker(SimpMessagingTemplate messagingTemplate, ObjectMapper objectMapper,
+                                 DeviceRegistry deviceRegistry) {
+        this.messagingTemplate = messagingTemplate;
+        this.jsonFactory = objectMapper.getFactory();
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel.add(new ArrayDeque<>());
+        }
+        this.deviceRegistry = deviceRegistry;
+        deviceRegistry.addEvictionListener(this::removeDevice);
+    }
+
+    /**
+     * Record that a device was heard from
+     */
+    public void heartbeat(String deviceId) {
+        long now = System.currentTimeMillis();
+        DeviceState state = devices.get(deviceId);
+        if (state == null) {
+            state = devices.computeIfAbsent(deviceId, DeviceState::new);
+        }
+        state.lastSeen = now;
+        if (!state.online.get() && state.online.compareAndSet(false, true)) {
+            state.since = now;
+            publish(state, now);
+            if (state.scheduled.compareAndSet(false, true)) {
+                newlyOnline.add(state);
+            }
+        }
+    }
+
+    /**
+     * Handle an auralink/status message: {"status": "...", "device" or "deviceId": "..."}.
+     * Offline statuses (e.g. a last-will message) take the device offline at once, any other
+     * status counts as a heartbeat.
+     */
+    public void onStatusMessage(byte[] payload) throws IOException {
+        String[] fields = readStatus(jsonFactory, payload, false);
+        String deviceId = fields[0];
+        if (deviceId == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (fields[1] != null && OFFLINE_STATUSES.contains(fields[1].toLowerCase())) {
+            DeviceState state = devices.get(deviceId);
+            if (state != null && state.online.compareAndSet(true, false)) {
+                state.since = now;
+                publish(state, now);
+            }
+        } else if (deviceRegistry.touch(deviceId, now)) {
+            heartbeat(deviceId);
+        }
+    }
+
+    /**
+     * Device a status message is about: its first string deviceId field, or its first string
+     * device field when there is none. Stops reading at the deviceId field, so it is cheap
+     * enough for picking the ingest lane on the MQTT thread.
+     */
+    public static String deviceId(JsonFactory jsonFactory, byte[] payload) throws IOException {
+        return readStatus(jsonFactory, payload, true)[0];
+    }
+
+    // Top-level deviceId (as defined above) and status strings of a status message
+    private static String[] readStatus(JsonFactory jsonFactory, byte[] payload, boolean deviceIdOnly)
+            throws IOException {
+        String deviceId = null;
+        String device = null;
+        String status = null;
+        try (JsonParser parser = jsonFactory.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Status payload is not a JSON object");
+            }
+            String field;
+            while ((field = parser.nextFieldName()) != null) {
+                if (parser.nextToken() != JsonToken.VALUE_STRING) {
+                    parser.skipChildren();
+                    continue;
+                }
+                switch (field) {
+                    case "deviceId" -> deviceId = deviceId != null ? deviceId : parser.getText();
+                    case "device" -> device = device != null ? device : parser.getText();
+                    case "status" -> status = status != null ? status : parser.getText();
+                    default -> { }
+                }
+                if (deviceId != null && (deviceIdOnly || status != null)) {
+                    break;
+                }
+            }
+        }
+        return new String[] { deviceId != null ? deviceId : device, status };
+    }
+
+    /**
+     * Liveness of every tracked device, offline devices first
+     */
+    public List<DeviceLiveness> getDevices() {
+        List<DeviceLiveness> result = new ArrayList<>(devices.size());
+        for (DeviceState state : devices.values()) {
+            result.add(toLiveness(state, System.currentTimeMillis()));
+        }
+        result.sort(Comparator.comparing(DeviceLiveness::isOnline).thenComparing(DeviceLiveness::getDeviceId));
+        return result;
+    }
+
+    public DeviceLiveness getDevice(String deviceId) {
+        DeviceState state = devices.get(deviceId);
+        return state != null ? toLiveness(state, System.currentTimeMillis()) : null;
+    }
+
+    /**
+     * Advance the wheel to the current time and expire the devices whose deadline passed
+     */
+    @Scheduled(fixedRateString = "${sensor.liveness.tick:500}")
+    public void tick() {
+        long now = System.currentTimeMillis();
+        DeviceState state;
+        while ((state = newlyOnline.poll()) != null) {
+            schedule(state, state.lastSeen + timeoutMillis);
+        }
+        long targetTick = (now - startMillis) / tickMillis;
+        while (currentTick <= targetTick) {
+            ArrayDeque<DeviceState> slot = wheel.get((int) (currentTick & WHEEL_MASK));
+            // Entries re-added to this slot during the pass wait for the next rotation
+            for (int pending = slot.size(); pending > 0; pending--) {
+                DeviceState entry = slot.poll();
+                if (entry.rounds > 0) {
+                    entry.rounds--;
+                    slot.add(entry);
+                } else {
+                    expire(entry, now);
+                }
+            }
+            currentTick++;
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("auralink.devices.online", this, tracker -> tracker.countOnline(true))
+                .description("Devices currently online")
+                .register(registry);
+        Gauge.builder("auralink.devices.offline", this, tracker -> tracker.countOnline(false))
+                .description("Tracked devices currently offline")
+                .register(registry);
+    }
+
+    private void expire(DeviceState state, long now) {
+        if (!state.removed && state.online.get()) {
+            long lastSeen = state.lastSeen;
+            if (now - lastSeen < timeoutMillis) {
+                // Heard from since this deadline was set: move to the new deadline
+                schedule(state, lastSeen + timeoutMillis);
+                return;
+            }
+            if (state.online.compareAndSet(true, false)) {
+                state.since = now;
+                publish(state, now);
+            }
+        }
+        // Offline or removed: leave the wheel, unless a heartbeat brought the device back
+        // before it could see the scheduled flag cleared
+        state.scheduled.set(false);
+        if (!state.removed && state.online.get() && state.scheduled.compareAndSet(false, true)) {
+            schedule(state, state.lastSeen + timeoutMillis);
+        }
+    }
+
+    private void schedule(DeviceState state, long deadlineMillis) {
+        long deadlineTick = Math.max(currentTick + 1, Math.ceilDiv(deadlineMillis - startMillis, tickMillis));
+        state.rounds = (deadlineTick - currentTick - 1) / WHEEL_SIZE;
+        wheel.get((int) (deadlineTick & WHEEL_MASK)).add(state);
+    }
+
+    private void removeDevice(String deviceId) {
+        DeviceState state = devices.remove(deviceId);
+        if (state != null) {
+            state.removed = true;
+        }
+    }
+
+    private int countOnline(boolean online) {
+        int count = 0;
+        for (DeviceState state : devices.values()) {
+            if (state.online.get() == online) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void publish(DeviceState state, long now) {
+        messagingTemplate.convertAndSend("/topic/status", toLiveness(state, now));
+    }
+
+    private DeviceLiveness toLiveness(DeviceState state, long now) {
+        boolean online = state.online.get();
+        return DeviceLiveness.builder()
+                .type(online ? "device_online" : "device_offline")
+                .deviceId(state.deviceId)
+                .online(online)
+                .lastSeen(toLocalDateTime(state.lastSeen))
+                .since(toLocalDateTime(state.since))
+                .message(state.deviceId + (online ? " is online" : " is offline"))
+                .timestamp(now)
+                .build();
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return epochMillis > 0 ? LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault()) : null;
+    }
+
+    private static final class DeviceState {
+        private final String deviceId;
+        private final AtomicBoolean online = new AtomicBoolean();
+        // Set while the device has an entry on the wheel (or is queued for one)
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile long lastSeen;
+        private volatile long since;
+        private volatile boolean removed;
+        // Full wheel rotations left before the entry's deadline; only used by the tick
+        private long rounds;
+
+        DeviceState(String deviceId) {
+            this.deviceId = deviceId;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.backend.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Devices the backend keeps state for, with last-seen tracking.
+ *
+ * Every per-device map (latest value, history, rollups, pending broadcasts, metrics) is
+ * only populated for admitted devices and is cleaned through the eviction listeners when a
+ * device idles past the TTL or is pushed out by the device cap, so heap use stays bounded
+ * however many deviceIds appear.
+ *
+ * Touching a known device is a map lookup and a CAS on its last-seen time. Eviction CASes
+ * the same field to a tombstone, so a reading racing with eviction either keeps the device
+ * or re-admits it as a new entry. The eviction listeners run through the eviction executor,
+ * which hands them to the ingest lane owning the device, so they never race with a reading
+ * writing the same per-device state; they are skipped if a reading re-admitted the device
+ * first. Finding the oldest device to evict under the cap is a linear scan.
+ */
+@Slf4j
+@Service
+public class DeviceRegistry implements MeterBinder {
+
+    public enum CapacityPolicy {
+        /** Ignore readings of new devices while the registry is full */
+        REJECT,
+        /** Evict the least recently seen device to make room */
+        EVICT_OLDEST
+    }
+
+    private static final long EVICTED = Long.MIN_VALUE;
+
+    @Value("${sensor.devices.max:10000}")
+    private int maxDevices;
+
+    // Devices not seen for this long are evicted (ms, 0 keeps them forever)
+    @Value("${sensor.devices.idle-ttl:86400000}")
+    private long idleTtlMillis;
+
+    @Value("${sensor.devices.capacity-policy:EVICT_OLDEST}")
+    private CapacityPolicy capacityPolicy;
+
+    private final ConcurrentHashMap<String, DeviceEntry> devices = new ConcurrentHashMap<>();
+    private final List<Consumer<String>> evictionListeners = new CopyOnWriteArrayList<>();
+    // Runs a device's eviction listeners, given its deviceId; inline until set
+    private volatile BiConsumer<String, Runnable> evictionExecutor = (deviceId, task) -> task.run();
+    private final Object admissionLock = new Object();
+
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong evictedIdle = new AtomicLong();
+    private final AtomicLong evictedCapacity = new AtomicLong();
+
+    /**
+     * Register a callback run with the deviceId of every evicted device
+     */
+    public void addEvictionListener(Consumer<String> listener) {
+        evictionListeners.add(listener);
+    }
+
+    /**
+     * Run the eviction listeners of each device through the given executor, keyed by deviceId,
+     * e.g. on the thread that writes the device's state
+     */
+    public void setEvictionExecutor(BiConsumer<String, Runnable> executor) {
+        this.evictionExecutor = executor;
+    }
+
+    /**
+     * Record that a device was seen at the given time (epoch millis).
+     * Returns false if the device is not admitted and its reading should be dropped.
+     */
+    public boolean touch(String deviceId, long seenAtMillis) {
+        if (deviceId == null || deviceId.isBlank()) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        DeviceEntry entry = devices.get(deviceId);
+        while (entry != null) {
+            long lastSeen = entry.lastSeen.get();
+            if (lastSeen == EVICTED) {
+                break;
+            }
+            if (lastSeen >= seenAtMillis || entry.lastSeen.compareAndSet(lastSeen, seenAtMillis)) {
+                return true;
+            }
+        }
+        return admit(deviceId, seenAtMillis);
+    }
+
+    public boolean isRegistered(String deviceId) {
+        DeviceEntry entry = devices.get(deviceId);
+        return entry != null && entry.lastSeen.get() != EVICTED;
+    }
+
+    public int getDeviceCount() {
+        return devices.size();
+    }
+
+    /**
+     * Last-seen time (epoch millis) of every registered device
+     */
+    public Map<String, Long> getLastSeen() {
+        Map<String, Long> lastSeen = new HashMap<>();
+        devices.forEach((deviceId, entry) -> {
+            long seen = entry.lastSeen.get();
+            if (seen != EVICTED) {
+                lastSeen.put(deviceId, seen);
+            }
+        });
+        return lastSeen;
+    }
+
+    /**
+     * Evict devices idle for longer than the TTL
+     */
+    @Scheduled(fixedDelayString = "${sensor.devices.sweep-interval:60000}")
+    public void evictIdleDevices() {
+        if (idleTtlMillis <= 0) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - idleTtlMillis;
+        List<String> evicted = new ArrayList<>();
+        for (DeviceEntry entry : devices.values()) {
+            long lastSeen = entry.lastSeen.get();
+            if (lastSeen != EVICTED && lastSeen < cutoff && evict(entry, lastSeen)) {
+                evictedIdle.incrementAndGet();
+                evicted.add(entry.deviceId);
+            }
+        }
+        if (!evicted.isEmpty()) {
+            log.info("Evicted {} idle devices", evicted.size());
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("auralink.devices.registered", devices, Map::size)
+                .description("Devices with state held by the backend")
+                .register(registry);
+        FunctionCounter.builder("auralink.devices.admitted", admitted, AtomicLong::get)
+                .description("Devices admitted")
+                .register(registry);
+        FunctionCounter.builder("auralink.devices.rejected", rejected, AtomicLong::get)
+                .description("Readings dropped because their device was not admitted")
+                .register(registry);
+        FunctionCounter.builder("auralink.devices.evicted", evictedIdle, AtomicLong::get)
+                .description("Devices evicted")
+                .tag("reason", "idle")
+                .register(registry);
+        FunctionCounter.builder("auralink.devices.evicted", evictedCapacity, AtomicLong::get)
+                .description("Devices evicted")
+                .tag("reason", "capacity")
+                .register(registry);
+    }
+
+    private boolean admit(String deviceId, long seenAtMillis) {
+        synchronized (admissionLock) {
+            DeviceEntry current = devices.get(deviceId);
+            if (current != null && current.lastSeen.get() != EVICTED) {
+                return touch(deviceId, seenAtMillis);
+            }
+            if (current == null && devices.size() >= maxDevices && !makeRoom()) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            devices.put(deviceId, new DeviceEntry(deviceId, seenAtMillis));
+            admitted.incrementAndGet();
+            return true;
+        }
+    }
+
+    // Called under the admission lock when the registry is full
+    private boolean makeRoom() {
+        if (capacityPolicy == CapacityPolicy.REJECT) {
+            return false;
+        }
+        while (devices.size() >= maxDevices) {
+            DeviceEntry oldest = null;
+            long oldestSeen = Long.MAX_VALUE;
+            for (DeviceEntry entry : devices.values()) {
+                long lastSeen = entry.lastSeen.get();
+                if (lastSeen != EVICTED && lastSeen < oldestSeen) {
+                    oldest = entry;
+                    oldestSeen = lastSeen;
+                }
+            }
+            if (oldest == null) {
+                return false;
+            }
+            if (evict(oldest, oldestSeen)) {
+                evictedCapacity.incrementAndGet();
+                log.debug("Device cap of {} reached, evicted least recently seen device {}", maxDevices, oldest.deviceId);
+            }
+        }
+        return true;
+    }
+
+    private boolean evict(DeviceEntry entry, long observedLastSeen) {
+        if (!entry.lastSeen.compareAndSet(observedLastSeen, EVICTED)) {
+            // Seen again in the meantime
+            return false;
+        }
+        devices.remove(entry.deviceId, entry);
+        evictionExecutor.accept(entry.deviceId, () -> notifyEvicted(entry.deviceId));
+        return true;
+    }
+
+    private void notifyEvicted(String deviceId) {
+        if (isRegistered(deviceId)) {
+            // Re-admitted before the listeners ran; its state is in use again
+            return;
+        }
+        for (Consumer<String> listener : evictionListeners) {
+            try {
+                listener.accept(deviceId);
+            } catch (Exception e) {
+                log.error("Device eviction listener failed for {}", deviceId, e);
+            }
+        }
+    }
+
+    private static final class DeviceEntry {
+        private final String deviceId;
+        private final AtomicLong lastSeen;
+
+        DeviceEntry(String deviceId, long lastSeen) {
+            this.deviceId = deviceId;
+            this.lastSeen = new AtomicLong(lastSeen);
+        }
+    }
+}
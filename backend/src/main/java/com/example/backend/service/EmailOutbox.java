@@ -0,0 +1,399 @@
+package com.example.backend.service;
+
+import com.example.backend.model.EmailMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailParseException;
+import org.springframework.mail.MailPreparationException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Delivers emails off the request thread.
+ *
+ * Each queued message is written to its own file in the outbox directory before the caller
+ * gets it back as PENDING, so it survives a restart. Virtual-thread workers take due messages
+ * off a delay queue and send them in batches over one SMTP connection; a failed send is retried
+ * with exponential backoff, and a message that runs out of attempts (or can never be sent, e.g.
+ * a malformed address or a permanent 5xx rejection by the server) is moved to the dead-letter
+ * directory. Every status change is pushed to
+ * /topic/email/status.
+ */
+@Slf4j
+@Service
+public class EmailOutbox {
+
+    static final String STOMP_DESTINATION = "/topic/email/status";
+    private static final String FILE_SUFFIX = ".json";
+    private static final String DEAD_LETTER_DIR = "dead";
+    // SMTP reply a message starts with when the server rejects it for good
+    private static final Pattern PERMANENT_REPLY = Pattern.compile("5\\d\\d[ -]");
+
+    private final JavaMailSender mailSender;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final ObjectMapper objectMapper;
+    private final DelayQueue<Envelope> queue = new DelayQueue<>();
+    private final List<Thread> workerThreads = new ArrayList<>();
+    private final Map<String, Consumer<EmailMessage>> outcomeListeners = new ConcurrentHashMap<>();
+
+    @Value("${spring.mail.username}")
+    private String fromEmail;
+
+    @Value("${mail.outbox.enabled:true}")
+    private boolean enabled;
+
+    @Value("${mail.outbox.dir:data/outbox}")
+    private String directory;
+
+    @Value("${mail.outbox.workers:4}")
+    private int workers;
+
+    // Due messages sent together over one pooled SMTP connection
+    @Value("${mail.outbox.batch-size:20}")
+    private int batchSize;
+
+    @Value("${mail.outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    // First retry delay, doubled on every further failure up to max-backoff (ms)
+    @Value("${mail.outbox.initial-backoff:5000}")
+    private long initialBackoffMillis;
+
+    @Value("${mail.outbox.max-backoff:600000}")
+    private long maxBackoffMillis;
+
+    private volatile boolean running;
+
+    public EmailOutbox(JavaMailSender mailSender, SimpMessagingTemplate messagingTemplate, ObjectMapper objectMapper) {
+        this.mailSender = mailSender;
+        this.messagingTemplate = messagingTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Files.createDirectories(Paths.get(directory, DEAD_LETTER_DIR));
+            int recovered = recover();
+            if (recovered > 0) {
+                log.info("Recovered {} queued emails from {}", recovered, directory);
+            }
+        } catch (IOException e) {
+            log.error("Failed to open email outbox {}, sending synchronously: {}", directory, e.getMessage(), e);
+            enabled = false;
+            return;
+        }
+        running = true;
+        for (int i = 0; i < Math.max(1, workers); i++) {
+            workerThreads.add(Thread.ofVirtual().name("email-outbox-" + i).start(this::work));
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        workerThreads.forEach(Thread::interrupt);
+        for (Thread thread : workerThreads) {
+            try {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        workerThreads.clear();
+        // Anything still queued stays on disk for the next start
+        queue.clear();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Persist a message and queue it for delivery
+     *
+     * @throws IOException when the message could not be written to the outbox
+     */
+    public EmailMessage enqueue(EmailMessage message) throws IOException {
+        return enqueue(message, null);
+    }
+
+    /**
+     * Persist a message and queue it for delivery; onOutcome gets the message once it is SENT or
+     * dead-lettered as FAILED. The callback is only held in memory, so it is not called for
+     * messages recovered after a restart.
+     *
+     * @throws IOException when the message could not be written to the outbox
+     */
+    public EmailMessage enqueue(EmailMessage message, Consumer<EmailMessage> onOutcome) throws IOException {
+        if (onOutcome != null) {
+            outcomeListeners.put(message.getId(), onOutcome);
+        }
+        message.setStatus("PENDING");
+        Envelope envelope = new Envelope(message, System.currentTimeMillis());
+        try {
+            write(envelope);
+        } catch (IOException e) {
+            outcomeListeners.remove(message.getId());
+            throw e;
+        }
+        queue.add(envelope);
+        publish(message);
+        return message;
+    }
+
+    /**
+     * Send a message on the calling thread
+     */
+    public void deliver(EmailMessage message) throws MessagingException {
+        mailSender.send(prepare(message));
+    }
+
+    /**
+     * Number of messages waiting for delivery or a retry
+     */
+    public int pending() {
+        return queue.size();
+    }
+
+    private MimeMessage prepare(EmailMessage message) throws MessagingException {
+        MimeMessage mimeMessage = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(mimeMessage, true, "UTF-8");
+
+        helper.setFrom(message.getFrom() != null ? message.getFrom() : fromEmail);
+        helper.setTo(message.getTo().toArray(new String[0]));
+
+        if (message.getCc() != null && !message.getCc().isEmpty()) {
+            helper.setCc(message.getCc().toArray(new String[0]));
+        }
+
+        if (message.getBcc() != null && !message.getBcc().isEmpty()) {
+            helper.setBcc(message.getBcc().toArray(new String[0]));
+        }
+
+        helper.setSubject(message.getSubject());
+        helper.setText(message.getBody(), message.isHtml());
+        return mimeMessage;
+    }
+
+    private void work() {
+        List<Envelope> batch = new ArrayList<>();
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            // Whatever else is already due goes out over the same connection
+            queue.drainTo(batch, Math.max(0, batchSize - 1));
+            process(batch);
+            batch.clear();
+        }
+    }
+
+    private void process(List<Envelope> batch) {
+        Map<MimeMessage, EmailMessage> prepared = new LinkedHashMap<>();
+        for (Envelope envelope : batch) {
+            EmailMessage message = envelope.message();
+            message.setAttempts(message.getAttempts() + 1);
+            try {
+                prepared.put(prepare(message), message);
+            } catch (MessagingException | RuntimeException e) {
+                // The message itself is broken, retrying will not help
+                deadLetter(message, e);
+                publish(message);
+            }
+        }
+        if (prepared.isEmpty()) {
+            return;
+        }
+
+        Map<Object, Exception> failures = Map.of();
+        MailException batchFailure = null;
+        try {
+            mailSender.send(prepared.keySet().toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            failures = e.getFailedMessages();
+            batchFailure = failures.isEmpty() ? e : null;
+        } catch (MailException e) {
+            batchFailure = e;
+        }
+
+        for (Map.Entry<MimeMessage, EmailMessage> entry : prepared.entrySet()) {
+            EmailMessage message = entry.getValue();
+            Exception failure = batchFailure != null ? batchFailure : failures.get(entry.getKey());
+            if (failure == null) {
+                message.setStatus("SENT");
+                message.setErrorMessage(null);
+                delete(message);
+                log.info("Email sent successfully to: {}", message.getTo());
+            } else if (failure instanceof MailParseException || failure instanceof MailPreparationException
+                    || (batchFailure == null && isPermanent(failure)) || message.getAttempts() >= maxAttempts) {
+                deadLetter(message, failure);
+            } else {
+                retry(message, failure);
+            }
+            publish(message);
+        }
+    }
+
+    /**
+     * Whether a failure of a single message will repeat on every retry: the server rejected
+     * all of its recipients, or answered with a 5xx reply
+     */
+    static boolean isPermanent(Exception failure) {
+        Throwable cause = failure;
+        // MessagingException chains nested exceptions through getCause
+        for (int depth = 0; cause != null && depth < 8; depth++, cause = cause.getCause()) {
+            if (cause instanceof SendFailedException sendFailed
+                    && sendFailed.getInvalidAddresses() != null && sendFailed.getInvalidAddresses().length > 0
+                    && (sendFailed.getValidUnsentAddresses() == null || sendFailed.getValidUnsentAddresses().length == 0)) {
+                return true;
+            }
+            if (cause.getMessage() != null && PERMANENT_REPLY.matcher(cause.getMessage()).lookingAt()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void retry(EmailMessage message, Exception cause) {
+        long delay = backoff(message.getAttempts());
+        message.setStatus("RETRYING");
+        message.setErrorMessage(cause.getMessage());
+        Envelope envelope = new Envelope(message, System.currentTimeMillis() + delay);
+        try {
+            write(envelope);
+        } catch (IOException e) {
+            log.warn("Failed to update queued email {} on disk: {}", message.getId(), e.getMessage());
+        }
+        queue.add(envelope);
+        log.warn("Email to {} failed (attempt {}), retrying in {} ms: {}",
+                message.getTo(), message.getAttempts(), delay, cause.getMessage());
+    }
+
+    private void deadLetter(EmailMessage message, Exception cause) {
+        message.setStatus("FAILED");
+        message.setErrorMessage(cause.getMessage());
+        try {
+            write(new Envelope(message, Long.MAX_VALUE));
+            Files.move(file(message.getId()), Paths.get(directory, DEAD_LETTER_DIR, message.getId() + FILE_SUFFIX),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("Failed to move email {} to the dead-letter directory: {}", message.getId(), e.getMessage());
+        }
+        log.error("Failed to send email to {} after {} attempts: {}", message.getTo(), message.getAttempts(), cause.getMessage());
+    }
+
+    // Exponential backoff with +/-20% jitter so retries after an outage don't all land at once
+    long backoff(int attempts) {
+        long delay = initialBackoffMillis << Math.min(attempts - 1, 30);
+        if (delay <= 0 || delay > maxBackoffMillis) {
+            delay = maxBackoffMillis;
+        }
+        return (long) (delay * ThreadLocalRandom.current().nextDouble(0.8, 1.2));
+    }
+
+    private int recover() throws IOException {
+        int recovered = 0;
+        try (Stream<Path> files = Files.list(Paths.get(directory))) {
+            for (Path path : files.filter(path -> path.getFileName().toString().endsWith(FILE_SUFFIX)).toList()) {
+                try {
+                    queue.add(objectMapper.readValue(path.toFile(), Envelope.class));
+                    recovered++;
+                } catch (IOException e) {
+                    log.warn("Skipping unreadable queued email {}: {}", path, e.getMessage());
+                }
+            }
+        }
+        return recovered;
+    }
+
+    private void write(Envelope envelope) throws IOException {
+        // Written next to the target and renamed, so a crash never leaves half a message behind
+        Path target = file(envelope.message().getId());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        objectMapper.writeValue(temp.toFile(), envelope);
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void delete(EmailMessage message) {
+        try {
+            Files.deleteIfExists(file(message.getId()));
+        } catch (IOException e) {
+            log.warn("Failed to remove sent email {} from the outbox: {}", message.getId(), e.getMessage());
+        }
+    }
+
+    private Path file(String id) {
+        return Paths.get(directory, id + FILE_SUFFIX);
+    }
+
+    private void publish(EmailMessage message) {
+        // A copy, since workers keep updating the queued message while the broker serializes it
+        EmailMessage status = message.toBuilder().build();
+        try {
+            messagingTemplate.convertAndSend(STOMP_DESTINATION, status);
+        } catch (Exception e) {
+            log.debug("Failed to publish email status: {}", e.getMessage());
+        }
+        if ("SENT".equals(status.getStatus()) || "FAILED".equals(status.getStatus())) {
+            Consumer<EmailMessage> onOutcome = outcomeListeners.remove(status.getId());
+            if (onOutcome != null) {
+                try {
+                    onOutcome.accept(status);
+                } catch (RuntimeException e) {
+                    log.warn("Email outcome listener failed: {}", e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * A queued message and the time it is next due for delivery
+     */
+    record Envelope(EmailMessage message, long dueAt) implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueAt, ((Envelope) other).dueAt);
+        }
+    }
+}
@@ -3,35 +3,50 @@ package com.example.backend.service;
 import com.example.backend.model.EmailMessage;
 import com.example.backend.model.EmailRequest;
 import jakarta.mail.MessagingException;
-import jakarta.mail.internet.MimeMessage;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.mail.MailException;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
 public class EmailService {
 
     @Autowired
-    private JavaMailSender mailSender;
+    private EmailOutbox outbox;
 
     @Value("${spring.mail.username}")
     private String fromEmail;
 
-    private final List<EmailMessage> sentEmails = new ArrayList<>();
+    @Value("${mail.sent-history.capacity:1000}")
+    private int sentHistoryCapacity;
+
+    // Appended to by request threads and the alert sender threads, oldest first; guarded by itself
+    private final ArrayDeque<EmailMessage> sentEmails = new ArrayDeque<>();
 
     /**
-     * Send an email based on the provided EmailRequest
+     * Send an email based on the provided EmailRequest.
+     * With the outbox enabled the message is queued and returned as PENDING; delivery
+     * progress is pushed to /topic/email/status.
      */
     public EmailMessage sendEmail(EmailRequest emailRequest) {
+        return sendEmail(emailRequest, null);
+    }
+
+    /**
+     * Send an email, calling onOutcome once it is finally SENT or FAILED (at once when
+     * sending synchronously, after delivery or dead-lettering when queued in the outbox)
+     */
+    public EmailMessage sendEmail(EmailRequest emailRequest, Consumer<EmailMessage> onOutcome) {
         EmailMessage emailMessage = EmailMessage.builder()
                 .id(UUID.randomUUID().toString())
                 .from(fromEmail)
@@ -45,39 +60,48 @@ public class EmailService {
                 .status("PENDING")
                 .build();
 
-        try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
-
-            helper.setFrom(fromEmail);
-            helper.setTo(emailRequest.getTo().toArray(new String[0]));
-            
-            if (emailRequest.getCc() != null && !emailRequest.getCc().isEmpty()) {
-                helper.setCc(emailRequest.getCc().toArray(new String[0]));
+        if (outbox.isEnabled()) {
+            try {
+                outbox.enqueue(emailMessage, onOutcome);
+                remember(emailMessage);
+                return emailMessage;
+            } catch (IOException e) {
+                log.warn("Failed to queue email, sending synchronously: {}", e.getMessage());
             }
-            
-            if (emailRequest.getBcc() != null && !emailRequest.getBcc().isEmpty()) {
-                helper.setBcc(emailRequest.getBcc().toArray(new String[0]));
-            }
-            
-            helper.setSubject(emailRequest.getSubject());
-            helper.setText(emailRequest.getBody(), emailRequest.isHtml());
+        }
 
-            mailSender.send(message);
-            
+        try {
+            outbox.deliver(emailMessage);
+            emailMessage.setAttempts(1);
             emailMessage.setStatus("SENT");
             log.info("Email sent successfully to: {}", emailRequest.getTo());
             
-        } catch (MessagingException e) {
+        } catch (MessagingException | MailException e) {
+            emailMessage.setAttempts(1);
             emailMessage.setStatus("FAILED");
             emailMessage.setErrorMessage(e.getMessage());
             log.error("Failed to send email: {}", e.getMessage(), e);
         }
 
-        sentEmails.add(emailMessage);
+        remember(emailMessage);
+        if (onOutcome != null) {
+            onOutcome.accept(emailMessage);
+        }
         return emailMessage;
     }
 
+    /**
+     * Keep the message in the sent history, dropping the oldest once it holds sentHistoryCapacity
+     */
+    private void remember(EmailMessage emailMessage) {
+        synchronized (sentEmails) {
+            while (sentEmails.size() >= Math.max(1, sentHistoryCapacity)) {
+                sentEmails.pollFirst();
+            }
+            sentEmails.addLast(emailMessage);
+        }
+    }
+
     /**
      * Send a simple text email
      */
@@ -95,23 +119,34 @@ public class EmailService {
      * Send an HTML email
      */
     public EmailMessage sendHtmlEmail(String to, String subject, String htmlBody) {
+        return sendHtmlEmail(to, subject, htmlBody, null);
+    }
+
+    private EmailMessage sendHtmlEmail(String to, String subject, String htmlBody, Consumer<EmailMessage> onOutcome) {
         EmailRequest request = EmailRequest.builder()
                 .to(List.of(to))
                 .subject(subject)
                 .body(htmlBody)
                 .isHtml(true)
                 .build();
-        return sendEmail(request);
+        return sendEmail(request, onOutcome);
     }
 
     /**
      * Send sensor alert email
      */
     public EmailMessage sendSensorAlert(String to, String alertType, String message) {
+        return sendSensorAlert(to, alertType, message, null);
+    }
+
+    /**
+     * Send sensor alert email, reporting its final outcome to onOutcome
+     */
+    public EmailMessage sendSensorAlert(String to, String alertType, String message, Consumer<EmailMessage> onOutcome) {
         String subject = "AuraLink - Sensor Alert: " + alertType;
         String htmlBody = buildAlertEmailHtml(alertType, message);
         
-        return sendHtmlEmail(to, subject, htmlBody);
+        return sendHtmlEmail(to, subject, htmlBody, onOutcome);
     }
 
     /**
@@ -157,30 +192,38 @@ public class EmailService {
      * Get all sent emails
      */
     public List<EmailMessage> getSentEmails() {
-        return new ArrayList<>(sentEmails);
+        synchronized (sentEmails) {
+            return new ArrayList<>(sentEmails);
+        }
     }
 
     /**
      * Get sent email by ID
      */
     public EmailMessage getSentEmailById(String id) {
-        return sentEmails.stream()
-                .filter(email -> email.getId().equals(id))
-                .findFirst()
-                .orElse(null);
+        synchronized (sentEmails) {
+            return sentEmails.stream()
+                    .filter(email -> email.getId().equals(id))
+                    .findFirst()
+                    .orElse(null);
+        }
     }
 
     /**
      * Delete a sent email by ID
      */
     public boolean deleteSentEmail(String id) {
-        return sentEmails.removeIf(email -> email.getId().equals(id));
+        synchronized (sentEmails) {
+            return sentEmails.removeIf(email -> email.getId().equals(id));
+        }
     }
 
     /**
      * Clear sent emails history
      */
     public void clearSentEmails() {
-        sentEmails.clear();
+        synchronized (sentEmails) {
+            sentEmails.clear();
+        }
     }
 }
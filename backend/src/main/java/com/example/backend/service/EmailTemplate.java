@@ -0,0 +1,64 @@
+package com.example.backend.service;
+
+import org.springframework.web.util.HtmlUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A subject or body with {{name}} placeholders, split into literal text and variable names
+ * once so that rendering per recipient is only appends into a caller-owned buffer.
+ * Unknown variables render as empty; text with an unclosed {{ is kept as it is.
+ */
+final class EmailTemplate {
+
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+
+    // literals.length == variables.length + 1; output is literal, variable, literal, ...
+    private final String[] literals;
+    private final String[] variables;
+    private final boolean escapeHtml;
+
+    private EmailTemplate(String[] literals, String[] variables, boolean escapeHtml) {
+        this.literals = literals;
+        this.variables = variables;
+        this.escapeHtml = escapeHtml;
+    }
+
+    static EmailTemplate compile(String template, boolean escapeHtml) {
+        List<String> literals = new ArrayList<>();
+        List<String> variables = new ArrayList<>();
+        String text = template != null ? template : "";
+        int position = 0;
+        while (true) {
+            int open = text.indexOf(OPEN, position);
+            int close = open < 0 ? -1 : text.indexOf(CLOSE, open + OPEN.length());
+            if (close < 0) {
+                literals.add(text.substring(position));
+                break;
+            }
+            literals.add(text.substring(position, open));
+            variables.add(text.substring(open + OPEN.length(), close).trim());
+            position = close + CLOSE.length();
+        }
+        return new EmailTemplate(literals.toArray(new String[0]), variables.toArray(new String[0]), escapeHtml);
+    }
+
+    /**
+     * Render into the given buffer, which is cleared first, and return it as a string
+     */
+    String render(Map<String, String> values, StringBuilder buffer) {
+        buffer.setLength(0);
+        buffer.append(literals[0]);
+        for (int i = 0; i < variables.length; i++) {
+            String value = values != null ? values.get(variables[i]) : null;
+            if (value != null) {
+                buffer.append(escapeHtml ? HtmlUtils.htmlEscape(value) : value);
+            }
+            buffer.append(literals[i + 1]);
+        }
+        return buffer.toString();
+    }
+}
@@ -1,10 +1,19 @@
 package com.example.backend.service;
 
+import com.example.backend.model.EncodedSensorData;
 import com.example.backend.model.SensorData;
+import com.example.backend.model.SensorMetric;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.integration.annotation.ServiceActivator;
 import org.springframework.messaging.Message;
@@ -13,27 +22,124 @@ import org.springframework.messaging.MessagingException;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Service
-public class MqttService {
+public class MqttService implements MeterBinder {
     private static final Logger logger = LoggerFactory.getLogger(MqttService.class);
-    private final ObjectMapper objectMapper;
+    private final SensorDataDecoder sensorDataDecoder;
+    private final SensorBinaryCodec sensorBinaryCodec;
     private final SimpMessagingTemplate messagingTemplate;
+    private final SensorBroadcastService broadcastService;
+    private final SensorRollupService rollupService;
+    private final SensorQuantileService quantileService;
+    private final SensorJournal journal;
+    private final ObjectWriter sensorDataWriter;
+    private final SensorMetrics metrics;
+    private final DeviceRegistry deviceRegistry;
+    private final DeviceLivenessTracker livenessTracker;
+    private final SensorAnomalyDetector anomalyDetector;
+    private final AlertRuleEngine alertRuleEngine;
+    private final SensorHistoryArchive historyArchive;
     
-    // In-memory storage for latest sensor data by device ID
-    private final ConcurrentHashMap<String, SensorData> latestSensorData = new ConcurrentHashMap<>();
-    // History of sensor data (limited to 100 entries per device)
-    private final ConcurrentHashMap<String, List<SensorData>> sensorDataHistory = new ConcurrentHashMap<>();
-    private static final int MAX_HISTORY_SIZE = 100;
+    // In-memory storage for latest sensor data by device ID, with its JSON encoding
+    private final ConcurrentHashMap<String, EncodedSensorData> latestSensorData = new ConcurrentHashMap<>();
+    // History of sensor data (columnar ring buffer of recent readings and compressed older chunks per device)
+    private final ConcurrentHashMap<String, SensorHistoryStore> sensorDataHistory = new ConcurrentHashMap<>();
+    
+    @Value("${sensor.history.capacity:100}")
+    private int defaultHistoryCapacity;
+    
+    // Readings per compressed chunk of older history
+    @Value("${sensor.history.chunk-size:120}")
+    private int historyChunkSize;
+    
+    // Days compressed history is kept in memory before moving to the on-disk archive
+    @Value("${sensor.history.compressed-retention-days:1}")
+    private int compressedRetentionDays;
+    
+    // Per-device capacity overrides, e.g. "ESP32_Lobby:500,ESP32_Lab:1000"
+    private final Map<String, Integer> historyCapacityOverrides = new HashMap<>();
     
     @Autowired
-    public MqttService(ObjectMapper objectMapper, SimpMessagingTemplate messagingTemplate) {
-        this.objectMapper = objectMapper;
+    public MqttService(SensorDataDecoder sensorDataDecoder, SensorBinaryCodec sensorBinaryCodec,
+                       SimpMessagingTemplate messagingTemplate, SensorBroadcastService broadcastService,
+                       SensorRollupService rollupService, SensorQuantileService quantileService,
+                       SensorJournal journal, ObjectMapper objectMapper,
+                       SensorMetrics metrics, DeviceRegistry deviceRegistry,
+                       DeviceLivenessTracker livenessTracker, SensorAnomalyDetector anomalyDetector,
+                       AlertRuleEngine alertRuleEngine, SensorHistoryArchive historyArchive) {
+        this.sensorDataDecoder = sensorDataDecoder;
+        this.sensorBinaryCodec = sensorBinaryCodec;
         this.messagingTemplate = messagingTemplate;
+        this.broadcastService = broadcastService;
+        this.rollupService = rollupService;
+        this.quantileService = quantileService;
+        this.journal = journal;
+        this.sensorDataWriter = objectMapper.writerFor(SensorData.class);
+        this.metrics = metrics;
+        this.deviceRegistry = deviceRegistry;
+        this.livenessTracker = livenessTracker;
+        this.anomalyDetector = anomalyDetector;
+        this.alertRuleEngine = alertRuleEngine;
+        this.historyArchive = historyArchive;
+        deviceRegistry.addEvictionListener(this::removeDevice);
+    }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("auralink.sensor.devices.active", latestSensorData, Map::size)
+            .description("Devices with a latest reading")
+            .register(registry);
+        Gauge.builder("auralink.sensor.history.readings", this, MqttService::totalHistorySize)
+            .description("Readings retained in all device histories")
+            .register(registry);
+    }
+    
+    /**
+     * Rebuild latest values, history and rollups from the journal before MQTT delivery starts
+     */
+    @PostConstruct
+    void restoreFromJournal() {
+        // Only the newest reading of a device becomes its latest value, so that one alone is encoded
+        Map<String, SensorData> latest = new HashMap<>();
+        journal.replay(sensorData -> {
+            long receivedAt = sensorData.getReceivedAt() != null
+                    ? SensorColumnStore.toEpochMillis(sensorData.getReceivedAt())
+                    : System.currentTimeMillis();
+            if (deviceRegistry.touch(sensorData.getDeviceId(), receivedAt)) {
+                recordSensorData(sensorData);
+                latest.put(sensorData.getDeviceId(), sensorData);
+            }
+        });
+        latest.forEach((deviceId, sensorData) -> {
+            // Devices evicted by the device cap during replay keep no state
+            if (deviceRegistry.isRegistered(deviceId)) {
+                latestSensorData.put(deviceId, new EncodedSensorData(sensorData, encode(sensorData)));
+            }
+        });
+    }
+    
+    @Value("${sensor.history.device-capacity:}")
+    void setHistoryCapacityOverrides(String overrides) {
+        for (String entry : overrides.split(",")) {
+            int separator = entry.lastIndexOf(':');
+            if (separator > 0) {
+                historyCapacityOverrides.put(entry.substring(0, separator).trim(),
+                        Integer.parseInt(entry.substring(separator + 1).trim()));
+            }
+        }
     }
     
     @Bean
@@ -42,52 +148,222 @@ public class MqttService {
         return new MessageHandler() {
             @Override
             public void handleMessage(Message<?> message) throws MessagingException {
+                long started = System.nanoTime();
                 String topic = (String) message.getHeaders().get("mqtt_receivedTopic");
-                String payload = (String) message.getPayload();
+                byte[] payload = (byte[]) message.getPayload();
+                SensorMetrics.TopicMeters topicMeters = metrics.topic(topic);
+                topicMeters.messages().increment();
                 
-                logger.info("Received message from topic [{}]: {}", topic, payload);
+                if (logger.isTraceEnabled()) {
+                    logger.trace("Received message from topic [{}]: {}", topic, new String(payload, StandardCharsets.UTF_8));
+                }
                 
                 try {
                     if ("auralink/sensors".equals(topic)) {
-                        SensorData sensorData = objectMapper.readValue(payload, SensorData.class);
-                        sensorData.setReceivedAt(LocalDateTime.now());
-                        
-                        // Store latest data
-                        latestSensorData.put(sensorData.getDeviceId(), sensorData);
-                        
-                        // Update history
-                        sensorDataHistory.computeIfAbsent(sensorData.getDeviceId(), k -> new ArrayList<>())
-                            .add(0, sensorData);  // Add to the beginning of the list (newest first)
-                        
-                        // Trim history if needed
-                        List<SensorData> history = sensorDataHistory.get(sensorData.getDeviceId());
-                        if (history.size() > MAX_HISTORY_SIZE) {
-                            history.subList(MAX_HISTORY_SIZE, history.size()).clear();
-                        }
-                        
-                        // Broadcast to WebSocket subscribers
-                        messagingTemplate.convertAndSend("/topic/sensors", sensorData);
-                        logger.info("Sent sensor data to WebSocket clients: {}", sensorData);
+                        ingestSensorData(sensorDataDecoder.decode(payload));
+                    } else if ("auralink/sensors/bin".equals(topic)) {
+                        // Compact binary frames from devices that opt out of JSON
+                        ingestSensorData(sensorBinaryCodec.decode(payload));
                     } else if ("auralink/status".equals(topic)) {
-                        // Handle status messages if needed
-                        messagingTemplate.convertAndSend("/topic/status", payload);
+                        // Forward as-is, then count it as a heartbeat (or an explicit offline)
+                        messagingTemplate.convertAndSend("/topic/status", new String(payload, StandardCharsets.UTF_8));
+                        livenessTracker.onStatusMessage(payload);
                     }
+                } catch (IOException e) {
+                    topicMeters.parseFailures().increment();
+                    logger.warn("Could not decode message from topic [{}]: {}", topic, e.getMessage());
                 } catch (Exception e) {
                     logger.error("Error processing MQTT message", e);
+                } finally {
+                    topicMeters.recordHandled(started, message.getHeaders().getTimestamp());
                 }
             }
         };
     }
     
+    private void ingestSensorData(SensorData sensorData) {
+        if (!deviceRegistry.touch(sensorData.getDeviceId(), System.currentTimeMillis())) {
+            logger.debug("Dropped reading of unadmitted device [{}]", sensorData.getDeviceId());
+            return;
+        }
+        livenessTracker.heartbeat(sensorData.getDeviceId());
+        sensorData.setReceivedAt(LocalDateTime.now());
+        
+        // Persist first so the reading survives a restart
+        journal.append(sensorData);
+        EncodedSensorData encoded = storeSensorData(sensorData);
+        // Replayed readings are history, so only live ones are checked for anomalies and alerts
+        anomalyDetector.process(sensorData);
+        alertRuleEngine.evaluate(sensorData);
+        
+        // Broadcast to WebSocket subscribers on the next conflation tick
+        broadcastService.offer(encoded);
+    }
+    
+    /**
+     * Update latest value, history, rollups and sketches for a live reading
+     */
+    private EncodedSensorData storeSensorData(SensorData sensorData) {
+        recordSensorData(sensorData);
+        
+        // Store latest data, encoded once for every WebSocket and REST consumer
+        EncodedSensorData encoded = new EncodedSensorData(sensorData, encode(sensorData));
+        latestSensorData.put(sensorData.getDeviceId(), encoded);
+        return encoded;
+    }
+    
+    /**
+     * Update history, rollups and sketches for a reading (live or replayed).
+     * Readings of one device always arrive on the same ingest lane, which keeps each
+     * history store single-writer.
+     */
+    private void recordSensorData(SensorData sensorData) {
+        // Update 1m/1h/1d aggregates and percentile sketches
+        rollupService.record(sensorData);
+        quantileService.record(sensorData);
+        
+        // Update history (oldest reading is overwritten once the buffer is full)
+        sensorDataHistory.computeIfAbsent(sensorData.getDeviceId(), k -> createHistoryStore(k))
+            .append(sensorData);
+    }
+    
+    /**
+     * Drop all state of a device evicted from the registry
+     */
+    private void removeDevice(String deviceId) {
+        latestSensorData.remove(deviceId);
+        SensorHistoryStore history = sensorDataHistory.remove(deviceId);
+        if (history != null) {
+            // History, including the open chunk, stays queryable from the archive
+            history.archiveAll();
+        }
+        metrics.removeDevice(deviceId);
+    }
+    
+    private byte[] encode(SensorData sensorData) {
+        try {
+            return sensorDataWriter.writeValueAsBytes(sensorData);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
     public SensorData getLatestSensorData(String deviceId) {
-        return latestSensorData.get(deviceId);
+        EncodedSensorData encoded = latestSensorData.get(deviceId);
+        return encoded != null ? encoded.data() : null;
     }
     
     public List<SensorData> getAllLatestSensorData() {
+        List<SensorData> latest = new ArrayList<>(latestSensorData.size());
+        for (EncodedSensorData encoded : latestSensorData.values()) {
+            latest.add(encoded.data());
+        }
+        return latest;
+    }
+    
+    public EncodedSensorData getLatestEncodedSensorData(String deviceId) {
+        return latestSensorData.get(deviceId);
+    }
+    
+    public List<EncodedSensorData> getAllLatestEncodedSensorData() {
         return new ArrayList<>(latestSensorData.values());
     }
     
+    /**
+     * Snapshot of the device's most recent history, newest first; older compressed
+     * history is served by the range query
+     */
     public List<SensorData> getSensorDataHistory(String deviceId) {
-        return sensorDataHistory.getOrDefault(deviceId, new ArrayList<>());
+        SensorHistoryStore history = sensorDataHistory.get(deviceId);
+        return history != null ? history.snapshot() : new ArrayList<>();
+    }
+    
+    /**
+     * Device history within [from, to] (either bound optional), newest first, merging the
+     * in-memory history with the on-disk archive. The archive is only read when from is given,
+     * so an open-ended query never decodes a device's whole archive.
+     * A step keeps the min and max of the metric per bucket, a limit caps the number of
+     * points using LTTB downsampling on the metric.
+     */
+    public List<SensorData> getSensorDataHistory(String deviceId, LocalDateTime from, LocalDateTime to,
+                                                 Integer limit, Duration step, SensorMetric metric) {
+        long fromMillis = from != null ? SensorColumnStore.toEpochMillis(from) : Long.MIN_VALUE;
+        long toMillis = to != null ? SensorColumnStore.toEpochMillis(to) : Long.MAX_VALUE;
+        
+        SensorHistoryStore history = sensorDataHistory.get(deviceId);
+        SensorColumnStore.Slice slice = history != null ? history.slice(fromMillis, toMillis, metric) : null;
+        // Archived readings end where the in-memory history begins; read after the slice, so a
+        // chunk archived in between is taken from one side only
+        long memoryStart = history != null ? history.oldestReceivedAt() : Long.MAX_VALUE;
+        if (slice != null && slice.size() > 0) {
+            memoryStart = Math.min(memoryStart, slice.times()[0]);
+        }
+        SensorHistoryArchive.Slice archived = from != null
+                ? historyArchive.slice(deviceId, fromMillis, Math.min(toMillis, memoryStart - 1), metric)
+                : SensorHistoryArchive.Slice.EMPTY;
+        if (slice == null && archived.size() == 0) {
+            return new ArrayList<>();
+        }
+        
+        long[] times = archived.times();
+        double[] values = archived.values();
+        if (slice != null) {
+            times = concat(times, slice.times());
+            values = concat(values, slice.values());
+        }
+        int[] points = SensorHistoryDownsampler.downsample(times, values,
+                step != null ? step.toMillis() : 0,
+                limit != null ? limit : 0);
+        
+        int archivedPoints = 0;
+        while (archivedPoints < points.length && points[archivedPoints] < archived.size()) {
+            archivedPoints++;
+        }
+        List<SensorData> result = new ArrayList<>(points.length);
+        if (slice != null) {
+            long[] seqs = new long[points.length - archivedPoints];
+            for (int i = 0; i < seqs.length; i++) {
+                seqs[i] = slice.firstSeq() + points[archivedPoints + i] - archived.size();
+            }
+            result.addAll(history.readings(seqs));
+        }
+        result.addAll(archived.readings(Arrays.copyOf(points, archivedPoints)));
+        return result;
+    }
+    
+    private static long[] concat(long[] first, long[] second) {
+        long[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+    
+    private static double[] concat(double[] first, double[] second) {
+        double[] result = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, result, first.length, second.length);
+        return result;
+    }
+    
+    /**
+     * In-memory history of every device, for fleet-wide queries
+     */
+    Collection<SensorHistoryStore> historyStores() {
+        return sensorDataHistory.values();
+    }
+    
+    private SensorHistoryStore createHistoryStore(String deviceId) {
+        SensorHistoryStore store = new SensorHistoryStore(deviceId,
+                historyCapacityOverrides.getOrDefault(deviceId, defaultHistoryCapacity),
+                historyChunkSize, Duration.ofDays(compressedRetentionDays).toMillis(),
+                historyArchive.isEnabled() ? historyArchive::archive : null);
+        metrics.registerHistory(deviceId, store);
+        return store;
+    }
+    
+    private double totalHistorySize() {
+        long total = 0;
+        for (SensorHistoryStore store : sensorDataHistory.values()) {
+            total += store.size();
+        }
+        return total;
     }
 }
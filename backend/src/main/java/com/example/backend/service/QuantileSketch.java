@@ -0,0 +1,183 @@
+package com.example.backend.service;
+
+import java.util.Arrays;
+
+/**
+ * Mergeable quantile sketch with relative-error guarantees (DDSketch).
+ *
+ * Values are counted in logarithmic buckets: bucket i holds values in (gamma^(i-1), gamma^i],
+ * with gamma = (1 + a) / (1 - a), so every quantile is returned within a relative error a of
+ * the true value. Negative values are mirrored into a second store, and values close to zero
+ * are counted separately. All sketches share the same gamma, so merging is adding bucket
+ * counts. A sensor metric within a time bucket only touches a handful of adjacent buckets, and
+ * the stores grow to that range only.
+ */
+final class QuantileSketch {
+
+    static final double RELATIVE_ACCURACY = 0.01;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    // Smaller magnitudes count as zero
+    private static final double MIN_MAGNITUDE = 1e-6;
+    // Store width limit; beyond it the lowest-magnitude buckets are collapsed together
+    private static final int MAX_BUCKETS = 2048;
+
+    private final BucketStore positive = new BucketStore();
+    private final BucketStore negative = new BucketStore();
+    private long zeroCount;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        if (value > MIN_MAGNITUDE) {
+            positive.add(index(value), 1);
+        } else if (value < -MIN_MAGNITUDE) {
+            negative.add(index(-value), 1);
+        } else {
+            zeroCount++;
+        }
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    void merge(QuantileSketch other) {
+        if (other.count == 0) {
+            return;
+        }
+        positive.merge(other.positive);
+        negative.merge(other.negative);
+        zeroCount += other.zeroCount;
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    void clear() {
+        positive.clear();
+        negative.clear();
+        zeroCount = 0;
+        count = 0;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    double getMin() {
+        return min;
+    }
+
+    double getMax() {
+        return max;
+    }
+
+    /**
+     * Value at quantile q (0..1), NaN when empty
+     */
+    double quantile(double q) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (q * (count - 1));
+        double value;
+        if (rank < negative.total) {
+            // Most negative first: highest index of the mirrored store
+            value = -bucketValue(negative.indexAtReverseRank(rank));
+        } else if (rank < negative.total + zeroCount) {
+            value = 0;
+        } else {
+            value = bucketValue(positive.indexAtRank(rank - negative.total - zeroCount));
+        }
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static int index(double magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / LOG_GAMMA);
+    }
+
+    // Estimate with relative error RELATIVE_ACCURACY for every value of the bucket
+    private static double bucketValue(int index) {
+        return 2 * Math.pow(GAMMA, index) / (GAMMA + 1);
+    }
+
+    /**
+     * Counts of a contiguous index range, grown on demand
+     */
+    private static final class BucketStore {
+        private long[] counts = new long[0];
+        private int offset;
+        private long total;
+
+        void add(int index, long n) {
+            if (counts.length == 0) {
+                counts = new long[8];
+                offset = index - 4;
+            } else if (index < offset || index >= offset + counts.length) {
+                grow(Math.min(index, offset), Math.max(index, offset + counts.length - 1));
+            }
+            // Collapsed away below the window: fold into the lowest bucket kept
+            counts[Math.max(0, index - offset)] += n;
+            total += n;
+        }
+
+        void merge(BucketStore other) {
+            for (int i = 0; i < other.counts.length; i++) {
+                if (other.counts[i] != 0) {
+                    add(other.offset + i, other.counts[i]);
+                }
+            }
+        }
+
+        void clear() {
+            Arrays.fill(counts, 0);
+            total = 0;
+        }
+
+        int indexAtRank(long rank) {
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen > rank) {
+                    return offset + i;
+                }
+            }
+            return offset + counts.length - 1;
+        }
+
+        int indexAtReverseRank(long rank) {
+            long seen = 0;
+            for (int i = counts.length - 1; i >= 0; i--) {
+                seen += counts[i];
+                if (seen > rank) {
+                    return offset + i;
+                }
+            }
+            return offset;
+        }
+
+        private void grow(int lowIndex, int highIndex) {
+            // Leave some slack so a slowly moving value does not regrow the array every bucket
+            int newLow = lowIndex - 8;
+            int newHigh = highIndex + 8;
+            if (newHigh - newLow + 1 > MAX_BUCKETS) {
+                newLow = newHigh - MAX_BUCKETS + 1;
+            }
+            long[] grown = new long[newHigh - newLow + 1];
+            for (int i = 0; i < counts.length; i++) {
+                int target = Math.max(0, offset + i - newLow);
+                if (target < grown.length) {
+                    grown[target] += counts[i];
+                }
+            }
+            counts = grown;
+            offset = newLow;
+        }
+    }
+}
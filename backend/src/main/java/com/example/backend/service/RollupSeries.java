@@ -0,0 +1,254 @@
+package com.example.backend.service;
+
+import com.example.backend.model.MetricSummary;
+import com.example.backend.model.RollupResolution;
+import com.example.backend.model.SensorData;
+import com.example.backend.model.SensorMetric;
+import com.example.backend.model.SensorRollup;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Running min/max/sum/count/last of every metric of one device at one resolution.
+ *
+ * Readings fold into the open bucket in O(1) without allocating. Sums are Kahan-compensated,
+ * so long buckets (a day of 1 Hz readings) do not lose precision in their mean. When a reading falls into a
+ * later bucket the open one is closed into a ring of compact columns (float min/max/last,
+ * double sum) and, once the ring holds capacity buckets, the oldest one is overwritten. The ring
+ * starts small and doubles as buckets close, so a device that has only just started reporting
+ * does not hold a full retention's worth of empty buckets. Each bucket
+ * also keeps the receive time of its last reading, so merged rollups take last from the
+ * device that reported most recently.
+ *
+ * Times are local epoch milliseconds (a LocalDateTime read as if it were UTC) so that hour
+ * and day buckets line up with the local clock.
+ */
+class RollupSeries {
+
+    private static final SensorMetric[] METRICS = SensorMetric.values();
+    private static final int METRIC_COUNT = METRICS.length;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final String deviceId;
+    private final RollupResolution resolution;
+    private final int capacity;
+
+    // Closed buckets, indexed [bucket] and [bucket * METRIC_COUNT + metric]; grown up to capacity
+    private long[] starts;
+    private long[] counts;
+    private float[] mins;
+    private float[] maxs;
+    private double[] sums;
+    private float[] lasts;
+    private long[] lastAts;
+    private long closedCount;
+
+    // Open bucket
+    private long openStart = Long.MIN_VALUE;
+    private long openCount;
+    private final float[] openMin = new float[METRIC_COUNT];
+    private final float[] openMax = new float[METRIC_COUNT];
+    private final double[] openSum = new double[METRIC_COUNT];
+    // Kahan compensation: low-order bits lost from openSum
+    private final double[] openCompensation = new double[METRIC_COUNT];
+    private final float[] openLast = new float[METRIC_COUNT];
+    private long openLastAt;
+
+    RollupSeries(String deviceId, RollupResolution resolution, int capacity) {
+        this.deviceId = deviceId;
+        this.resolution = resolution;
+        this.capacity = capacity;
+        int buckets = Math.min(capacity, INITIAL_CAPACITY);
+        this.starts = new long[buckets];
+        this.counts = new long[buckets];
+        this.mins = new float[buckets * METRIC_COUNT];
+        this.maxs = new float[buckets * METRIC_COUNT];
+        this.sums = new double[buckets * METRIC_COUNT];
+        this.lasts = new float[buckets * METRIC_COUNT];
+        this.lastAts = new long[buckets];
+    }
+
+    synchronized void add(long localMillis, SensorData data) {
+        long start = resolution.bucketStart(localMillis);
+        // A reading from an earlier bucket (clock stepped back) folds into the open one
+        if (start > openStart) {
+            if (openCount > 0) {
+                close();
+            }
+            openStart = start;
+            openCount = 0;
+        }
+
+        for (int m = 0; m < METRIC_COUNT; m++) {
+            float value = (float) METRICS[m].valueOf(data);
+            if (openCount == 0) {
+                openMin[m] = value;
+                openMax[m] = value;
+                openSum[m] = value;
+                openCompensation[m] = 0;
+            } else {
+                openMin[m] = Math.min(openMin[m], value);
+                openMax[m] = Math.max(openMax[m], value);
+                double corrected = value - openCompensation[m];
+                double sum = openSum[m] + corrected;
+                openCompensation[m] = (sum - openSum[m]) - corrected;
+                openSum[m] = sum;
+            }
+            openLast[m] = value;
+        }
+        openLastAt = localMillis;
+        openCount++;
+    }
+
+    /**
+     * Buckets starting within [fromLocal, toLocal], newest first, including the open bucket
+     */
+    synchronized List<SensorRollup> query(long fromLocal, long toLocal) {
+        List<SensorRollup> result = new ArrayList<>();
+        if (openCount > 0 && openStart >= fromLocal && openStart <= toLocal) {
+            result.add(toRollup(deviceId, resolution, openStart, openCount, false,
+                    openMin, openMax, openSum, openLast, 0));
+        }
+        long oldest = Math.max(0, closedCount - starts.length);
+        for (long seq = closedCount - 1; seq >= oldest; seq--) {
+            int bucket = (int) (seq % starts.length);
+            if (starts[bucket] < fromLocal) {
+                break;
+            }
+            if (starts[bucket] <= toLocal) {
+                result.add(toRollup(deviceId, resolution, starts[bucket], counts[bucket], true,
+                        mins, maxs, sums, lasts, bucket * METRIC_COUNT));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Fold the bucket starting at the given local time into the accumulator, if present.
+     * Used to merge device buckets into fleet-wide rollups.
+     */
+    synchronized void mergeInto(long bucketLocal, RollupAccumulator accumulator) {
+        if (openCount > 0 && openStart == bucketLocal) {
+            accumulator.merge(openCount, false, openMin, openMax, openSum, openLast, openLastAt, 0);
+            return;
+        }
+        long oldest = Math.max(0, closedCount - starts.length);
+        for (long seq = closedCount - 1; seq >= oldest; seq--) {
+            int bucket = (int) (seq % starts.length);
+            if (starts[bucket] == bucketLocal) {
+                accumulator.merge(counts[bucket], true, mins, maxs, sums, lasts, lastAts[bucket],
+                        bucket * METRIC_COUNT);
+                return;
+            }
+            if (starts[bucket] < bucketLocal) {
+                return;
+            }
+        }
+    }
+
+    private void close() {
+        if (closedCount == starts.length && starts.length < capacity) {
+            grow();
+        }
+        int bucket = (int) (closedCount % starts.length);
+        starts[bucket] = openStart;
+        counts[bucket] = openCount;
+        int offset = bucket * METRIC_COUNT;
+        System.arraycopy(openMin, 0, mins, offset, METRIC_COUNT);
+        System.arraycopy(openMax, 0, maxs, offset, METRIC_COUNT);
+        System.arraycopy(openSum, 0, sums, offset, METRIC_COUNT);
+        System.arraycopy(openLast, 0, lasts, offset, METRIC_COUNT);
+        lastAts[bucket] = openLastAt;
+        closedCount++;
+    }
+
+    // Only called while the ring is full and has not wrapped, so bucket seq stays at index seq
+    private void grow() {
+        int buckets = (int) Math.min(capacity, 2L * starts.length);
+        starts = Arrays.copyOf(starts, buckets);
+        counts = Arrays.copyOf(counts, buckets);
+        mins = Arrays.copyOf(mins, buckets * METRIC_COUNT);
+        maxs = Arrays.copyOf(maxs, buckets * METRIC_COUNT);
+        sums = Arrays.copyOf(sums, buckets * METRIC_COUNT);
+        lasts = Arrays.copyOf(lasts, buckets * METRIC_COUNT);
+        lastAts = Arrays.copyOf(lastAts, buckets);
+    }
+
+    private static SensorRollup toRollup(String deviceId, RollupResolution resolution, long start,
+                                         long count, boolean complete,
+                                         float[] min, float[] max, double[] sum, float[] last, int offset) {
+        Map<String, MetricSummary> metrics = new LinkedHashMap<>();
+        for (int m = 0; m < METRIC_COUNT; m++) {
+            metrics.put(METRICS[m].getFieldName(), MetricSummary.builder()
+                    .min(min[offset + m])
+                    .max(max[offset + m])
+                    .sum(sum[offset + m])
+                    .avg(sum[offset + m] / count)
+                    .last(last[offset + m])
+                    .build());
+        }
+        return SensorRollup.builder()
+                .deviceId(deviceId)
+                .resolution(resolution.getLabel())
+                .bucketStart(fromLocalMillis(start))
+                .count(count)
+                .complete(complete)
+                .metrics(metrics)
+                .build();
+    }
+
+    static long toLocalMillis(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1000 + dateTime.getNano() / 1_000_000;
+    }
+
+    static LocalDateTime fromLocalMillis(long localMillis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(localMillis, 1000),
+                Math.floorMod(localMillis, 1000) * 1_000_000, ZoneOffset.UTC);
+    }
+
+    /**
+     * Merges buckets of several devices into one fleet-wide rollup
+     */
+    static class RollupAccumulator {
+        private long count;
+        private boolean complete = true;
+        private final float[] min = new float[METRIC_COUNT];
+        private final float[] max = new float[METRIC_COUNT];
+        private final double[] sum = new double[METRIC_COUNT];
+        private final float[] last = new float[METRIC_COUNT];
+        private long lastAt = Long.MIN_VALUE;
+
+        void merge(long bucketCount, boolean bucketComplete, float[] bucketMin, float[] bucketMax,
+                   double[] bucketSum, float[] bucketLast, long bucketLastAt, int offset) {
+            // Whichever bucket got the latest reading supplies last, whatever the merge order
+            boolean latest = count == 0 || bucketLastAt > lastAt;
+            for (int m = 0; m < METRIC_COUNT; m++) {
+                min[m] = count == 0 ? bucketMin[offset + m] : Math.min(min[m], bucketMin[offset + m]);
+                max[m] = count == 0 ? bucketMax[offset + m] : Math.max(max[m], bucketMax[offset + m]);
+                sum[m] += bucketSum[offset + m];
+                if (latest) {
+                    last[m] = bucketLast[offset + m];
+                }
+            }
+            if (latest) {
+                lastAt = bucketLastAt;
+            }
+            count += bucketCount;
+            complete &= bucketComplete;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        SensorRollup toRollup(RollupResolution resolution, long bucketLocal) {
+            return RollupSeries.toRollup(null, resolution, bucketLocal, count, complete, min, max, sum, last, 0);
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package com.example.backend.service;
+
+import com.example.backend.model.DeviceAggregate;
+import com.example.backend.model.SensorAggregate;
+import com.example.backend.model.SensorData;
+import com.example.backend.model.SensorMetric;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.Serial;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Fleet-wide aggregate queries, e.g. the average CO2 of all devices over the last hour or the
+ * ten hottest devices right now.
+ *
+ * A query runs on a fork/join pool that splits the devices into ranges. Each leaf task reads a
+ * metric from its devices' in-memory history (or latest readings) and folds it into one
+ * accumulator per device; results are merged into the fleet-wide totals on the way up.
+ * Grouping by device keeps every device's accumulator, while top-k keeps only the best k in a
+ * bounded heap per task, so joining two tasks costs O(k). Percentiles come from mergeable
+ * QuantileSketches and are within 1% of the exact value.
+ */
+@Service
+public class SensorAggregateService {
+
+    private static final Pattern PERCENTILE = Pattern.compile("p(\\d{1,2}(\\.\\d+)?|100)");
+
+    // Worker threads; 0 = one per CPU core
+    @Value("${sensor.aggregate.parallelism:0}")
+    private int parallelism;
+
+    // Devices a task aggregates itself instead of splitting further
+    @Value("${sensor.aggregate.leaf-devices:64}")
+    private int leafDevices;
+
+    private final MqttService mqttService;
+    private ForkJoinPool pool;
+
+    @Autowired
+    public SensorAggregateService(MqttService mqttService) {
+        this.mqttService = mqttService;
+    }
+
+    @PostConstruct
+    public void start() {
+        pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    public void stop() {
+        pool.shutdown();
+    }
+
+    /**
+     * Aggregate a metric over the window ending now, or over the latest reading of every device
+     * when no window is given. Functions are count, sum, avg, min, max, last and percentiles
+     * such as p95.
+     *
+     * @param top       keep only the k devices ranking first by the {@code by} function, or null
+     * @param by        function devices are ranked by, the first function if null
+     * @param ascending rank lowest first instead of highest first
+     * @return the aggregate, or null if no device has readings in the window
+     * @throws IllegalArgumentException for an unknown function or a non-positive top
+     */
+    public SensorAggregate aggregate(SensorMetric metric, Duration window, List<String> functions,
+                                     boolean groupByDevice, Integer top, String by, boolean ascending) {
+        Query query = new Query(functions, groupByDevice, top, by, ascending);
+        if (window == null) {
+            SensorData[] latest = mqttService.getAllLatestSensorData().toArray(SensorData[]::new);
+            Partial result = pool.invoke(new AggregateTask<>(latest, 0, latest.length, Math.max(1, leafDevices), query,
+                    SensorData::getDeviceId,
+                    (data, accumulator) -> accumulator.add(metric.valueOf(data),
+                            SensorColumnStore.toEpochMillis(data.getReceivedAt()))));
+            return toAggregate(metric, query, null, null, result);
+        }
+
+        LocalDateTime to = LocalDateTime.now();
+        LocalDateTime from = to.minus(window);
+        long fromMillis = SensorColumnStore.toEpochMillis(from);
+        long toMillis = SensorColumnStore.toEpochMillis(to);
+        SensorHistoryStore[] stores = mqttService.historyStores().toArray(SensorHistoryStore[]::new);
+        Partial result = pool.invoke(new AggregateTask<>(stores, 0, stores.length, Math.max(1, leafDevices), query,
+                SensorHistoryStore::getDeviceId,
+                (store, accumulator) -> {
+                    SensorColumnStore.Slice slice = store.slice(fromMillis, toMillis, metric);
+                    for (int i = 0; i < slice.size(); i++) {
+                        accumulator.add(slice.values()[i], slice.times()[i]);
+                    }
+                }));
+        return toAggregate(metric, query, from, to, result);
+    }
+
+    private SensorAggregate toAggregate(SensorMetric metric, Query query, LocalDateTime from,
+                                        LocalDateTime to, Partial result) {
+        if (result.devices == 0) {
+            return null;
+        }
+        List<DeviceAggregate> groups = null;
+        if (query.top > 0 || query.groupByDevice) {
+            List<Group> selected = new ArrayList<>(query.top > 0 ? result.topK : result.groups);
+            selected.sort(query.top > 0 ? query.ranking : Comparator.comparing(Group::deviceId));
+            groups = new ArrayList<>(selected.size());
+            for (Group group : selected) {
+                groups.add(DeviceAggregate.builder()
+                        .deviceId(group.deviceId())
+                        .count(group.accumulator().count)
+                        .values(query.values(group.accumulator()))
+                        .build());
+            }
+        }
+        return SensorAggregate.builder()
+                .metric(metric.getFieldName())
+                .from(from)
+                .to(to)
+                .devices(result.devices)
+                .count(result.fleet.count)
+                .values(query.values(result.fleet))
+                .groups(groups)
+                .build();
+    }
+
+    /**
+     * Parsed aggregate functions and grouping of a query
+     */
+    private static final class Query {
+        private final String[] functions;
+        // Percentile of each function (0..1), NaN for the others
+        private final double[] quantiles;
+        private final boolean groupByDevice;
+        private final int top;
+        private final int byIndex;
+        private final double byQuantile;
+        private final boolean needsSketch;
+        // Best first
+        private final Comparator<Group> ranking;
+
+        Query(List<String> functions, boolean groupByDevice, Integer top, String by, boolean ascending) {
+            if (functions.isEmpty()) {
+                throw new IllegalArgumentException("No aggregate function");
+            }
+            if (top != null && top <= 0) {
+                throw new IllegalArgumentException("Top must be positive: " + top);
+            }
+            this.functions = new String[functions.size()];
+            this.quantiles = new double[functions.size()];
+            boolean percentiles = false;
+            for (int i = 0; i < this.functions.length; i++) {
+                this.functions[i] = functions.get(i).trim().toLowerCase(Locale.ROOT);
+                this.quantiles[i] = parse(this.functions[i]);
+                percentiles |= !Double.isNaN(quantiles[i]);
+            }
+            this.groupByDevice = groupByDevice;
+            this.top = top != null ? top : 0;
+
+            String byFunction = by != null ? by.trim().toLowerCase(Locale.ROOT) : this.functions[0];
+            this.byQuantile = parse(byFunction);
+            this.byIndex = indexOf(byFunction);
+            this.needsSketch = percentiles || !Double.isNaN(byQuantile);
+            Comparator<Group> byKey = Comparator.comparingDouble(Group::key);
+            this.ranking = (ascending ? byKey : byKey.reversed()).thenComparing(Group::deviceId);
+        }
+
+        Accumulator newAccumulator() {
+            return new Accumulator(needsSketch);
+        }
+
+        double rankingKey(Accumulator accumulator) {
+            return Double.isNaN(byQuantile) ? accumulator.value(byIndex) : accumulator.sketch.quantile(byQuantile);
+        }
+
+        Map<String, Double> values(Accumulator accumulator) {
+            Map<String, Double> values = new LinkedHashMap<>();
+            for (int i = 0; i < functions.length; i++) {
+                values.put(functions[i], Double.isNaN(quantiles[i])
+                        ? accumulator.value(indexOf(functions[i]))
+                        : accumulator.sketch.quantile(quantiles[i]));
+            }
+            return values;
+        }
+
+        // Percentile as a quantile, NaN for the other functions
+        private static double parse(String function) {
+            Matcher matcher = PERCENTILE.matcher(function);
+            if (matcher.matches()) {
+                return Double.parseDouble(matcher.group(1)) / 100;
+            }
+            indexOf(function);
+            return Double.NaN;
+        }
+
+        private static int indexOf(String function) {
+            return switch (function) {
+                case "count" -> Accumulator.COUNT;
+                case "sum" -> Accumulator.SUM;
+                case "avg" -> Accumulator.AVG;
+                case "min" -> Accumulator.MIN;
+                case "max" -> Accumulator.MAX;
+                case "last" -> Accumulator.LAST;
+                default -> {
+                    if (PERCENTILE.matcher(function).matches()) {
+                        yield -1;
+                    }
+                    throw new IllegalArgumentException("Unknown aggregate function: " + function);
+                }
+            };
+        }
+    }
+
+    /**
+     * Running count, sum, min, max and last value, plus a sketch when percentiles are needed
+     */
+    private static final class Accumulator {
+        static final int COUNT = 0;
+        static final int SUM = 1;
+        static final int AVG = 2;
+        static final int MIN = 3;
+        static final int MAX = 4;
+        static final int LAST = 5;
+
+        private final QuantileSketch sketch;
+        private long count;
+        private double sum;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+        private double last = Double.NaN;
+        private long lastMillis = Long.MIN_VALUE;
+
+        Accumulator(boolean withSketch) {
+            this.sketch = withSketch ? new QuantileSketch() : null;
+        }
+
+        void add(double value, long receivedAt) {
+            count++;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            if (receivedAt >= lastMillis) {
+                last = value;
+                lastMillis = receivedAt;
+            }
+            if (sketch != null) {
+                sketch.add(value);
+            }
+        }
+
+        void merge(Accumulator other) {
+            count += other.count;
+            sum += other.sum;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            if (other.count > 0 && other.lastMillis >= lastMillis) {
+                last = other.last;
+                lastMillis = other.lastMillis;
+            }
+            if (sketch != null) {
+                sketch.merge(other.sketch);
+            }
+        }
+
+        double value(int function) {
+            return switch (function) {
+                case COUNT -> count;
+                case SUM -> sum;
+                case AVG -> count > 0 ? sum / count : Double.NaN;
+                case MIN -> count > 0 ? min : Double.NaN;
+                case MAX -> count > 0 ? max : Double.NaN;
+                case LAST -> last;
+                default -> throw new IllegalArgumentException("Unknown aggregate function: " + function);
+            };
+        }
+    }
+
+    private record Group(String deviceId, Accumulator accumulator, double key) {
+    }
+
+    /**
+     * Result of a range of devices: fleet totals plus all groups or the top k
+     */
+    private static final class Partial {
+        private final Query query;
+        private final Accumulator fleet;
+        private final List<Group> groups;
+        // Worst of the kept groups at the head
+        private final PriorityQueue<Group> topK;
+        private int devices;
+
+        Partial(Query query) {
+            this.query = query;
+            this.fleet = query.newAccumulator();
+            this.groups = query.top == 0 && query.groupByDevice ? new ArrayList<>() : null;
+            this.topK = query.top > 0 ? new PriorityQueue<>(query.top + 1, query.ranking.reversed()) : null;
+        }
+
+        void add(Group group) {
+            fleet.merge(group.accumulator());
+            devices++;
+            if (groups != null) {
+                groups.add(group);
+            } else if (topK != null) {
+                offer(group);
+            }
+        }
+
+        void merge(Partial other) {
+            fleet.merge(other.fleet);
+            devices += other.devices;
+            if (groups != null) {
+                groups.addAll(other.groups);
+            } else if (topK != null) {
+                for (Group group : other.topK) {
+                    offer(group);
+                }
+            }
+        }
+
+        private void offer(Group group) {
+            if (topK.size() < query.top) {
+                topK.add(group);
+            } else if (query.ranking.compare(group, topK.peek()) < 0) {
+                topK.poll();
+                topK.add(group);
+            }
+        }
+    }
+
+    /**
+     * Aggregates the sources in [from, to), splitting the range while it is above the leaf size
+     */
+    private static final class AggregateTask<T> extends RecursiveTask<Partial> {
+        // ForkJoinTask is Serializable, but tasks never leave the pool
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private final transient T[] sources;
+        private final int from;
+        private final int to;
+        private final int leafSize;
+        private final transient Query query;
+        private final transient Function<T, String> deviceId;
+        private final transient BiConsumer<T, Accumulator> reader;
+
+        AggregateTask(T[] sources, int from, int to, int leafSize, Query query,
+                      Function<T, String> deviceId, BiConsumer<T, Accumulator> reader) {
+            this.sources = sources;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+            this.query = query;
+            this.deviceId = deviceId;
+            this.reader = reader;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from <= leafSize) {
+                Partial partial = new Partial(query);
+                for (int i = from; i < to; i++) {
+                    Accumulator accumulator = query.newAccumulator();
+                    reader.accept(sources[i], accumulator);
+                    if (accumulator.count > 0) {
+                        partial.add(new Group(deviceId.apply(sources[i]), accumulator, query.rankingKey(accumulator)));
+                    }
+                }
+                return partial;
+            }
+            int middle = (from + to) >>> 1;
+            AggregateTask<T> left = new AggregateTask<>(sources, from, middle, leafSize, query, deviceId, reader);
+            left.fork();
+            Partial right = new AggregateTask<>(sources, middle, to, leafSize, query, deviceId, reader).compute();
+            Partial result = left.join();
+            result.merge(right);
+            return result;
+        }
+    }
+}
@@ -1,10 +1,17 @@
 package com.example.backend.service;
 
+import com.example.backend.model.DailySummary;
+import com.example.backend.model.MetricSummary;
 import com.example.backend.model.SensorData;
+import com.example.backend.model.SensorMetric;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDate;
+
 /**
  * Example service showing how to integrate email alerts with sensor data
  * This is a demonstration of how to use the email service in your application
@@ -16,204 +23,110 @@ public class SensorAlertService {
     @Autowired
     private EmailService emailService;
 
-    // Configure alert thresholds
-    private static final double HIGH_TEMP_THRESHOLD = 35.0;
-    private static final double LOW_TEMP_THRESHOLD = 10.0;
-    private static final double HIGH_HUMIDITY_THRESHOLD = 80.0;
-    private static final int HIGH_CO2_THRESHOLD = 1000;
-    
-    // Admin email - should be configured in application.properties
-    private static final String ADMIN_EMAIL = "admin@example.com";
+    @Autowired
+    private AlertRuleEngine alertRuleEngine;
+
+    @Autowired
+    private SensorDailySummaryService dailySummaryService;
+
+    @Value("${sensor.report.enabled:true}")
+    private boolean dailyReportEnabled;
+
+    @Value("${sensor.report.recipient:admin@example.com}")
+    private String reportRecipient;
 
     /**
-     * Process sensor data and send alerts if thresholds are exceeded
+     * Process sensor data and send alerts for the configured alert rules.
+     * Live readings are already evaluated on ingest; this is for readings from other sources.
      */
     public void processSensorData(SensorData data) {
-        checkTemperatureAlert(data);
-        checkHumidityAlert(data);
-        checkAirQualityAlert(data);
-        checkMotionAlert(data);
+        alertRuleEngine.evaluate(data);
     }
 
     /**
-     * Check temperature and send alert if threshold exceeded
+     * Send a daily summary report
      */
-    private void checkTemperatureAlert(SensorData data) {
-        if (data.getTemperature() > HIGH_TEMP_THRESHOLD) {
-            String message = String.format(
-                "High temperature detected:\n" +
-                "Temperature: %.2f°C\n" +
-                "Device ID: %s\n" +
-                "Time: %s\n" +
-                "Threshold: %.2f°C",
-                data.getTemperature(),
-                data.getDeviceId(),
-                data.getReceivedAt(),
-                HIGH_TEMP_THRESHOLD
-            );
-            
-            emailService.sendSensorAlert(
-                ADMIN_EMAIL,
-                "High Temperature Alert",
-                message
-            );
-            
-            log.warn("High temperature alert sent: {}°C", data.getTemperature());
-        } else if (data.getTemperature() < LOW_TEMP_THRESHOLD) {
-            String message = String.format(
-                "Low temperature detected:\n" +
-                "Temperature: %.2f°C\n" +
-                "Device ID: %s\n" +
-                "Time: %s\n" +
-                "Threshold: %.2f°C",
-                data.getTemperature(),
-                data.getDeviceId(),
-                data.getReceivedAt(),
-                LOW_TEMP_THRESHOLD
-            );
-            
-            emailService.sendSensorAlert(
-                ADMIN_EMAIL,
-                "Low Temperature Alert",
-                message
-            );
-            
-            log.warn("Low temperature alert sent: {}°C", data.getTemperature());
-        }
+    public void sendDailySummaryReport(String recipientEmail, 
+                                      int totalReadings,
+                                      double avgTemperature,
+                                      double avgHumidity,
+                                      int alertsTriggered) {
+        String subject = "AuraLink Daily Sensor Summary Report";
+        String htmlBody = buildDailySummaryHtml(
+            totalReadings, 
+            avgTemperature, 
+            avgHumidity, 
+            alertsTriggered,
+            ""
+        );
+        
+        emailService.sendHtmlEmail(recipientEmail, subject, htmlBody);
+        log.info("Daily summary report sent to: {}", recipientEmail);
     }
 
     /**
-     * Check humidity and send alert if threshold exceeded
+     * Send yesterday's summary report, shortly after midnight
      */
-    private void checkHumidityAlert(SensorData data) {
-        if (data.getHumidity() > HIGH_HUMIDITY_THRESHOLD) {
-            String message = String.format(
-                "High humidity detected:\n" +
-                "Humidity: %.2f%%\n" +
-                "Device ID: %s\n" +
-                "Time: %s\n" +
-                "Threshold: %.2f%%",
-                data.getHumidity(),
-                data.getDeviceId(),
-                data.getReceivedAt(),
-                HIGH_HUMIDITY_THRESHOLD
-            );
-            
-            emailService.sendSensorAlert(
-                ADMIN_EMAIL,
-                "High Humidity Alert",
-                message
-            );
-            
-            log.warn("High humidity alert sent: {}%", data.getHumidity());
+    @Scheduled(cron = "${sensor.report.daily-cron:0 0 0 * * *}")
+    public void sendDailySummaryReport() {
+        if (dailyReportEnabled) {
+            sendDailySummaryReport(reportRecipient, LocalDate.now().minusDays(1));
         }
     }
 
     /**
-     * Check air quality and send alert if poor
+     * Send the daily summary report for a given day, with a row per device, from the
+     * incrementally maintained daily totals instead of rescanning raw readings
      */
-    private void checkAirQualityAlert(SensorData data) {
-        if ("Poor".equalsIgnoreCase(data.getAirQualityStatus()) || 
-            "Hazardous".equalsIgnoreCase(data.getAirQualityStatus())) {
-            
-            String message = String.format(
-                "Poor air quality detected:\n" +
-                "Status: %s\n" +
-                "CO2: %d ppm\n" +
-                "CO: %d ppm\n" +
-                "NH3: %d ppm\n" +
-                "CH4: %d ppm\n" +
-                "Device ID: %s\n" +
-                "Time: %s",
-                data.getAirQualityStatus(),
-                data.getCo2(),
-                data.getCo(),
-                data.getNh3(),
-                data.getCh4(),
-                data.getDeviceId(),
-                data.getReceivedAt()
-            );
-            
-            emailService.sendSensorAlert(
-                ADMIN_EMAIL,
-                "Air Quality Alert",
-                message
-            );
-            
-            log.warn("Air quality alert sent: {}", data.getAirQualityStatus());
+    public void sendDailySummaryReport(String recipientEmail, LocalDate day) {
+        DailySummary summary = dailySummaryService.getSummary(day);
+        if (summary == null) {
+            log.info("No sensor readings on {}, daily summary report skipped", day);
+            return;
         }
-        
-        // Specific CO2 alert
-        if (data.getCo2() > HIGH_CO2_THRESHOLD) {
-            String message = String.format(
-                "High CO2 levels detected:\n" +
-                "CO2: %d ppm\n" +
-                "Device ID: %s\n" +
-                "Time: %s\n" +
-                "Threshold: %d ppm",
-                data.getCo2(),
-                data.getDeviceId(),
-                data.getReceivedAt(),
-                HIGH_CO2_THRESHOLD
-            );
-            
-            emailService.sendSensorAlert(
-                ADMIN_EMAIL,
-                "High CO2 Alert",
-                message
-            );
-            
-            log.warn("High CO2 alert sent: {} ppm", data.getCo2());
+
+        StringBuilder deviceRows = new StringBuilder();
+        for (DailySummary device : summary.getDevices()) {
+            deviceRows.append(buildDeviceRowHtml(device));
         }
+        String subject = "AuraLink Daily Sensor Summary Report - " + day;
+        String htmlBody = buildDailySummaryHtml(
+            (int) summary.getReadings(),
+            average(summary, SensorMetric.TEMPERATURE),
+            average(summary, SensorMetric.HUMIDITY),
+            (int) summary.getAlerts(),
+            deviceRows.toString()
+        );
+
+        emailService.sendHtmlEmail(recipientEmail, subject, htmlBody);
+        log.info("Daily summary report for {} sent to: {}", day, recipientEmail);
     }
 
-    /**
-     * Check motion detection and send alert
-     */
-    private void checkMotionAlert(SensorData data) {
-        if (data.isMotionDetected()) {
-            String message = String.format(
-                "Motion detected:\n" +
-                "Device ID: %s\n" +
-                "Time: %s\n" +
-                "Light status: %s",
-                data.getDeviceId(),
-                data.getReceivedAt(),
-                data.isLight() ? "ON" : "OFF"
-            );
-            
-            // Only log motion, don't send email for every motion event
-            // Uncomment below to enable motion email alerts
-            /*
-            emailService.sendSensorAlert(
-                ADMIN_EMAIL,
-                "Motion Detected",
-                message
-            );
-            */
-            
-            log.info("Motion detected from device: {}", data.getDeviceId());
-        }
+    private static double average(DailySummary summary, SensorMetric metric) {
+        MetricSummary metricSummary = summary.getMetrics().get(metric.getFieldName());
+        return metricSummary != null ? metricSummary.getAvg() : Double.NaN;
     }
 
     /**
-     * Send a daily summary report
+     * Build an HTML table row of a device's daily totals
      */
-    public void sendDailySummaryReport(String recipientEmail, 
-                                      int totalReadings,
-                                      double avgTemperature,
-                                      double avgHumidity,
-                                      int alertsTriggered) {
-        String subject = "AuraLink Daily Sensor Summary Report";
-        String htmlBody = buildDailySummaryHtml(
-            totalReadings, 
-            avgTemperature, 
-            avgHumidity, 
-            alertsTriggered
+    private String buildDeviceRowHtml(DailySummary device) {
+        MetricSummary temperature = device.getMetrics().get(SensorMetric.TEMPERATURE.getFieldName());
+        MetricSummary humidity = device.getMetrics().get(SensorMetric.HUMIDITY.getFieldName());
+        MetricSummary co2 = device.getMetrics().get(SensorMetric.CO2.getFieldName());
+        if (temperature == null || humidity == null || co2 == null) {
+            return String.format("<tr><td>%s</td><td>0</td><td>-</td><td>-</td><td>-</td><td>%d</td></tr>",
+                device.getDeviceId(), device.getAlerts());
+        }
+        return String.format(
+            "<tr><td>%s</td><td>%d</td><td>%.1f (%.1f - %.1f)</td><td>%.1f (%.1f - %.1f)</td><td>%.0f (%.0f - %.0f)</td><td>%d</td></tr>",
+            device.getDeviceId(),
+            device.getReadings(),
+            temperature.getAvg(), temperature.getMin(), temperature.getMax(),
+            humidity.getAvg(), humidity.getMin(), humidity.getMax(),
+            co2.getAvg(), co2.getMin(), co2.getMax(),
+            device.getAlerts()
         );
-        
-        emailService.sendHtmlEmail(recipientEmail, subject, htmlBody);
-        log.info("Daily summary report sent to: {}", recipientEmail);
     }
 
     /**
@@ -222,7 +135,8 @@ public class SensorAlertService {
     private String buildDailySummaryHtml(int totalReadings,
                                         double avgTemperature,
                                         double avgHumidity,
-                                        int alertsTriggered) {
+                                        int alertsTriggered,
+                                        String deviceRows) {
         return String.format("""
             <!DOCTYPE html>
             <html>
@@ -236,6 +150,8 @@ public class SensorAlertService {
                     .metric-label { font-size: 14px; color: #666; }
                     .metric-value { font-size: 28px; font-weight: bold; color: #2196F3; }
                     .footer { margin-top: 20px; text-align: center; font-size: 12px; color: #888; }
+                    .devices { width: 100%%; margin-top: 20px; border-collapse: collapse; background-color: white; font-size: 13px; }
+                    .devices th, .devices td { padding: 6px; border-bottom: 1px solid #eee; text-align: left; }
                 </style>
             </head>
             <body>
@@ -261,6 +177,7 @@ public class SensorAlertService {
                             <div class="metric-label">Alerts Triggered</div>
                             <div class="metric-value">%d</div>
                         </div>
+                        %s
                     </div>
                     <div class="footer">
                         <p>This is an automated daily report from AuraLink IoT System</p>
@@ -274,6 +191,10 @@ public class SensorAlertService {
             avgTemperature, 
             avgHumidity, 
             alertsTriggered,
+            deviceRows.isEmpty() ? "" : """
+                <table class="devices">
+                    <tr><th>Device</th><th>Readings</th><th>Temperature °C</th><th>Humidity %</th><th>CO2 ppm</th><th>Alerts</th></tr>
+                """ + deviceRows + "</table>",
             java.time.LocalDateTime.now().toString()
         );
     }
@@ -0,0 +1,204 @@
+package com.example.backend.service;
+
+import com.example.backend.model.SensorAnomaly;
+import com.example.backend.model.SensorData;
+import com.example.backend.model.SensorMetric;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.integration.mqtt.support.MqttHeaders;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Online spike and drift detection per device and metric, run inline on the ingest lanes.
+ *
+ * Each metric keeps a fast and a slow EWMA of its level, and a slow EWMA of the variance of
+ * readings around the fast level (the sensor's noise):
+ * <ul>
+ *   <li>spike: the reading is more than z-threshold long-run standard deviations away
+ *   from the recent (fast) level</li>
+ *   <li>drift: the recent level has moved more than drift-threshold long-run standard
+ *   deviations away from the long-run (slow) level, e.g. a CO2 sensor creeping up</li>
+ * </ul>
+ * Readings are clamped to the spike band before they update the averages, so a single
+ * outlier does not inflate the variance. State is three doubles and two alert times per
+ * metric, allocated once per device; a reading that raises nothing allocates nothing.
+ * Devices are handled by one ingest lane each, so their state is single-writer.
+ */
+@Slf4j
+@Service
+public class SensorAnomalyDetector implements MeterBinder {
+
+    public static final String STOMP_DESTINATION = "/topic/anomalies";
+    public static final String MQTT_TOPIC = "auralink/anomalies";
+
+    private static final SensorMetric[] METRICS = SensorMetric.values();
+    private static final int SPIKE = 0;
+    private static final int DRIFT = 1;
+    private static final String[] KINDS = {"spike", "drift"};
+    // Noise floor: quantized sensors can report a constant value for a long time
+    private static final double MIN_STD_DEV = 0.1;
+    private static final double MIN_STD_DEV_RATIO = 0.01;
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final MessageChannel mqttOutboundChannel;
+    private final ObjectMapper objectMapper;
+
+    @Value("${sensor.anomaly.enabled:true}")
+    private boolean enabled;
+
+    @Value("${sensor.anomaly.fast-alpha:0.1}")
+    private double fastAlpha;
+
+    @Value("${sensor.anomaly.slow-alpha:0.005}")
+    private double slowAlpha;
+
+    @Value("${sensor.anomaly.z-threshold:5.0}")
+    private double zThreshold;
+
+    @Value("${sensor.anomaly.drift-threshold:3.0}")
+    private double driftThreshold;
+
+    // Readings per device before anything is reported
+    @Value("${sensor.anomaly.warmup:30}")
+    private int warmup;
+
+    // Minimum time between two anomalies of the same kind for a device metric (ms)
+    @Value("${sensor.anomaly.cooldown:60000}")
+    private long cooldownMillis;
+
+    private final ConcurrentHashMap<String, DetectorState> states = new ConcurrentHashMap<>();
+    private final AtomicLong[] detected = new AtomicLong[METRICS.length * KINDS.length];
+
+    @Autowired
+    public SensorAnomalyDetector(SimpMessagingTemplate messagingTemplate,
+                                 @Qualifier("mqttOutboundChannel") MessageChannel mqttOutboundChannel,
+                                 ObjectMapper objectMapper, DeviceRegistry deviceRegistry) {
+        this.messagingTemplate = messagingTemplate;
+        this.mqttOutboundChannel = mqttOutboundChannel;
+        this.objectMapper = objectMapper;
+        for (int i = 0; i < detected.length; i++) {
+            detected[i] = new AtomicLong();
+        }
+        deviceRegistry.addEvictionListener(states::remove);
+    }
+
+    /**
+     * Update the device's statistics with a reading and publish any anomaly it shows
+     */
+    public void process(SensorData sensorData) {
+        if (!enabled) {
+            return;
+        }
+        DetectorState state = states.get(sensorData.getDeviceId());
+        if (state == null) {
+            state = states.computeIfAbsent(sensorData.getDeviceId(), id -> new DetectorState());
+        }
+        long count = ++state.count;
+        long now = System.currentTimeMillis();
+        // Plain running averages until the EWMAs have seen enough readings to be unbiased
+        double fast = Math.max(fastAlpha, 1.0 / count);
+        double slow = Math.max(slowAlpha, 1.0 / count);
+        for (int m = 0; m < METRICS.length; m++) {
+            double value = METRICS[m].valueOf(sensorData);
+            int base = m * 3;
+            if (count == 1) {
+                state.stats[base] = value;
+                state.stats[base + 1] = value;
+                continue;
+            }
+            double fastMean = state.stats[base];
+            double slowMean = state.stats[base + 1];
+            double slowVar = state.stats[base + 2];
+            double stdDev = Math.max(Math.sqrt(slowVar), Math.max(MIN_STD_DEV, MIN_STD_DEV_RATIO * Math.abs(slowMean)));
+
+            if (count > warmup) {
+                double spikeScore = (value - fastMean) / stdDev;
+                if (Math.abs(spikeScore) > zThreshold) {
+                    report(sensorData, state, m, SPIKE, value, fastMean, stdDev, spikeScore, now);
+                }
+                double driftScore = (fastMean - slowMean) / stdDev;
+                if (Math.abs(driftScore) > driftThreshold) {
+                    report(sensorData, state, m, DRIFT, fastMean, slowMean, stdDev, driftScore, now);
+                }
+            }
+
+            // Clamp outliers to the spike band so they move the averages only so far. The
+            // variance is of the residuals around the recent level: it measures noise, and
+            // does not grow when the level drifts.
+            double bound = zThreshold * stdDev;
+            double clamped = Math.min(fastMean + bound, Math.max(fastMean - bound, value));
+            double residual = clamped - fastMean;
+            state.stats[base] = fastMean + fast * residual;
+            state.stats[base + 1] = slowMean + slow * (clamped - slowMean);
+            state.stats[base + 2] = slowVar + slow * (residual * residual - slowVar);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (int m = 0; m < METRICS.length; m++) {
+            for (int kind = 0; kind < KINDS.length; kind++) {
+                FunctionCounter.builder("auralink.anomalies", detected[m * KINDS.length + kind], AtomicLong::get)
+                        .description("Sensor anomalies detected")
+                        .tag("metric", METRICS[m].getFieldName())
+                        .tag("kind", KINDS[kind])
+                        .register(registry);
+            }
+        }
+    }
+
+    private void report(SensorData sensorData, DetectorState state, int metric, int kind,
+                        double value, double expected, double stdDev, double score, long now) {
+        int slot = metric * KINDS.length + kind;
+        if (now - state.lastReported[slot] < cooldownMillis) {
+            return;
+        }
+        state.lastReported[slot] = now;
+        detected[slot].incrementAndGet();
+
+        SensorAnomaly anomaly = SensorAnomaly.builder()
+                .deviceId(sensorData.getDeviceId())
+                .metric(METRICS[metric].getFieldName())
+                .kind(KINDS[kind])
+                .value(value)
+                .expected(expected)
+                .stdDev(stdDev)
+                .score(score)
+                .receivedAt(sensorData.getReceivedAt())
+                .build();
+        log.info("Sensor anomaly: {} {} on {} (score {})", anomaly.getMetric(), anomaly.getKind(),
+                anomaly.getDeviceId(), String.format("%.1f", score));
+
+        messagingTemplate.convertAndSend(STOMP_DESTINATION, anomaly);
+        try {
+            mqttOutboundChannel.send(
+                    MessageBuilder.withPayload(objectMapper.writeValueAsString(anomaly))
+                            .setHeader(MqttHeaders.TOPIC, MQTT_TOPIC)
+                            .setHeader(MqttHeaders.QOS, 1)
+                            .build()
+            );
+        } catch (Exception e) {
+            log.error("Error publishing sensor anomaly to MQTT", e);
+        }
+    }
+
+    private static final class DetectorState {
+        // Per metric: fast mean, slow mean, slow variance of the residuals
+        private final double[] stats = new double[METRICS.length * 3];
+        // Per metric and kind: last time an anomaly was reported (epoch millis)
+        private final long[] lastReported = new long[METRICS.length * KINDS.length];
+        private long count;
+    }
+}
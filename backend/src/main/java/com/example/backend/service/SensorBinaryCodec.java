@@ -0,0 +1,150 @@
+package com.example.backend.service;
+
+import com.example.backend.model.SensorData;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Fixed-layout binary encoding of SensorData, published on auralink/sensors/bin.
+ *
+ * Version 1 frame, little-endian as written by the ESP32 (26 bytes + deviceId):
+ * <pre>
+ *  0  u8    version (1)
+ *  1  u8    flags: bit 0 light, bit 1 motion detected
+ *  2  u8    airQualityStatus code: 0 none, 1 Excellent, 2 Good, 3 Moderate, 4 Poor, 5 Hazardous
+ *  3  u8    deviceId length in bytes
+ *  4  f32   temperature
+ *  8  f32   humidity
+ * 12  u16   airQualityRaw
+ * 14  u16   co2
+ * 16  u16   nh3
+ * 18  u16   ch4
+ * 20  u16   co
+ * 22  u32   timestamp (device millis)
+ * 26  bytes deviceId (UTF-8)
+ * </pre>
+ * Bytes after the deviceId are ignored, so a later version may append fields that older
+ * backends skip. A change to the existing layout must bump the version byte.
+ */
+@Component
+public class SensorBinaryCodec {
+
+    public static final int VERSION = 1;
+    static final int HEADER_LENGTH = 26;
+
+    private static final int FLAG_LIGHT = 1;
+    private static final int FLAG_MOTION = 1 << 1;
+    private static final int DEVICE_ID_LENGTH_OFFSET = 3;
+
+    // Index is the wire code; 0 means no status
+    private static final String[] STATUS_CODES = {null, "Excellent", "Good", "Moderate", "Poor", "Hazardous"};
+
+    public SensorData decode(byte[] frame) throws IOException {
+        if (frame.length < HEADER_LENGTH) {
+            throw new IOException("Binary sensor frame too short: " + frame.length + " bytes");
+        }
+        int version = frame[0] & 0xFF;
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary sensor frame version " + version);
+        }
+        int deviceIdLength = frame[DEVICE_ID_LENGTH_OFFSET] & 0xFF;
+        if (frame.length < HEADER_LENGTH + deviceIdLength) {
+            throw new IOException("Binary sensor frame truncated in deviceId");
+        }
+        int statusCode = frame[2] & 0xFF;
+        if (statusCode >= STATUS_CODES.length) {
+            throw new IOException("Unknown air quality status code " + statusCode);
+        }
+
+        SensorData sensorData = new SensorData();
+        sensorData.setLight((frame[1] & FLAG_LIGHT) != 0);
+        sensorData.setMotionDetected((frame[1] & FLAG_MOTION) != 0);
+        sensorData.setAirQualityStatus(STATUS_CODES[statusCode]);
+        sensorData.setTemperature(Float.intBitsToFloat(readInt(frame, 4)));
+        sensorData.setHumidity(Float.intBitsToFloat(readInt(frame, 8)));
+        sensorData.setAirQualityRaw(readUnsignedShort(frame, 12));
+        sensorData.setCo2(readUnsignedShort(frame, 14));
+        sensorData.setNh3(readUnsignedShort(frame, 16));
+        sensorData.setCh4(readUnsignedShort(frame, 18));
+        sensorData.setCo(readUnsignedShort(frame, 20));
+        sensorData.setTimestamp(readInt(frame, 22) & 0xFFFFFFFFL);
+        sensorData.setDeviceId(new String(frame, HEADER_LENGTH, deviceIdLength, StandardCharsets.UTF_8));
+        return sensorData;
+    }
+
+    /**
+     * Encode a reading as a version 1 frame. Gas values saturate at 0..65535, the timestamp
+     * keeps its low 32 bits and statuses outside the known set are sent as no status.
+     */
+    public byte[] encode(SensorData sensorData) {
+        byte[] deviceId = sensorData.getDeviceId() != null
+                ? sensorData.getDeviceId().getBytes(StandardCharsets.UTF_8)
+                : new byte[0];
+        if (deviceId.length > 0xFF) {
+            throw new IllegalArgumentException("deviceId longer than 255 bytes");
+        }
+        byte[] frame = new byte[HEADER_LENGTH + deviceId.length];
+        frame[0] = VERSION;
+        frame[1] = (byte) ((sensorData.isLight() ? FLAG_LIGHT : 0) | (sensorData.isMotionDetected() ? FLAG_MOTION : 0));
+        frame[2] = (byte) statusCode(sensorData.getAirQualityStatus());
+        frame[DEVICE_ID_LENGTH_OFFSET] = (byte) deviceId.length;
+        writeInt(frame, 4, Float.floatToIntBits(sensorData.getTemperature()));
+        writeInt(frame, 8, Float.floatToIntBits(sensorData.getHumidity()));
+        writeUnsignedShort(frame, 12, sensorData.getAirQualityRaw());
+        writeUnsignedShort(frame, 14, sensorData.getCo2());
+        writeUnsignedShort(frame, 16, sensorData.getNh3());
+        writeUnsignedShort(frame, 18, sensorData.getCh4());
+        writeUnsignedShort(frame, 20, sensorData.getCo());
+        writeInt(frame, 22, (int) sensorData.getTimestamp());
+        System.arraycopy(deviceId, 0, frame, HEADER_LENGTH, deviceId.length);
+        return frame;
+    }
+
+    /**
+     * deviceId of a frame without decoding the rest, or null if the frame is malformed
+     */
+    public static String deviceId(byte[] frame) {
+        if (frame.length < HEADER_LENGTH || (frame[0] & 0xFF) != VERSION) {
+            return null;
+        }
+        int length = frame[DEVICE_ID_LENGTH_OFFSET] & 0xFF;
+        return frame.length < HEADER_LENGTH + length
+                ? null
+                : new String(frame, HEADER_LENGTH, length, StandardCharsets.UTF_8);
+    }
+
+    private static int statusCode(String status) {
+        for (int code = 1; code < STATUS_CODES.length; code++) {
+            if (STATUS_CODES[code].equals(status)) {
+                return code;
+            }
+        }
+        return 0;
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF)
+                | (bytes[offset + 1] & 0xFF) << 8
+                | (bytes[offset + 2] & 0xFF) << 16
+                | (bytes[offset + 3] & 0xFF) << 24;
+    }
+
+    private static int readUnsignedShort(byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8;
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >>> 8);
+        bytes[offset + 2] = (byte) (value >>> 16);
+        bytes[offset + 3] = (byte) (value >>> 24);
+    }
+
+    private static void writeUnsignedShort(byte[] bytes, int offset, int value) {
+        int saturated = Math.max(0, Math.min(0xFFFF, value));
+        bytes[offset] = (byte) saturated;
+        bytes[offset + 1] = (byte) (saturated >>> 8);
+    }
+}
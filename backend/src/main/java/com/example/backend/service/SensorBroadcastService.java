@@ -0,0 +1,152 @@
+package com.example.backend.service;
+
+import com.example.backend.model.EncodedSensorData;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Conflating WebSocket broadcast of live readings.
+ *
+ * Ingest only records the latest reading of each device; a fixed-rate tick sends what is
+ * pending to /topic/sensors/{deviceId}, and to the fleet-wide /topic/sensors. A reading
+ * replaced before the tick is counted as merged, so dashboards receive at most one update
+ * per device per tick however fast devices publish. Destinations without subscribers are
+ * skipped. Readings carry the JSON encoded at ingest, which is sent as-is without another
+ * round of message conversion. The first reading of a device is announced on
+ * /topic/devices so clients can discover it without the fleet-wide feed.
+ */
+@Service
+public class SensorBroadcastService implements MeterBinder {
+
+    public static final String FLEET_DESTINATION = "/topic/sensors";
+    public static final String DEVICE_DESTINATION_PREFIX = "/topic/sensors/";
+    public static final String DEVICES_DESTINATION = "/topic/devices";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final StompSubscriptionRegistry subscriptions;
+    private final SensorMetrics metrics;
+
+    // Latest unsent reading per device
+    private final ConcurrentHashMap<String, EncodedSensorData> pending = new ConcurrentHashMap<>();
+    private final Set<String> announcedDevices = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong merged = new AtomicLong();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong unsubscribed = new AtomicLong();
+
+    @Autowired
+    public SensorBroadcastService(SimpMessagingTemplate messagingTemplate, StompSubscriptionRegistry subscriptions,
+                                  SensorMetrics metrics, DeviceRegistry deviceRegistry) {
+        this.messagingTemplate = messagingTemplate;
+        this.subscriptions = subscriptions;
+        this.metrics = metrics;
+        deviceRegistry.addEvictionListener(this::removeDevice);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        readingsCounter(registry, "merged", merged);
+        readingsCounter(registry, "published", published);
+        readingsCounter(registry, "unsubscribed", unsubscribed);
+        Gauge.builder("auralink.websocket.pending", pending, Map::size)
+                .description("Devices with a reading waiting for the next broadcast tick")
+                .register(registry);
+        Gauge.builder("auralink.websocket.subscriptions", subscriptions, StompSubscriptionRegistry::getSubscriptionCount)
+                .description("Active STOMP subscriptions")
+                .register(registry);
+    }
+
+    private static void readingsCounter(MeterRegistry registry, String outcome, AtomicLong count) {
+        FunctionCounter.builder("auralink.websocket.readings", count, AtomicLong::get)
+                .description("Live readings by broadcast outcome")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    /**
+     * Queue a reading for the next tick, replacing an unsent one of the same device
+     */
+    public void offer(EncodedSensorData reading) {
+        received.incrementAndGet();
+        String deviceId = reading.data().getDeviceId();
+        if (announcedDevices.add(deviceId)) {
+            messagingTemplate.convertAndSend(DEVICES_DESTINATION, Map.of("deviceId", deviceId));
+        }
+        if (pending.put(deviceId, reading) != null) {
+            merged.incrementAndGet();
+        }
+    }
+
+    private void removeDevice(String deviceId) {
+        pending.remove(deviceId);
+        announcedDevices.remove(deviceId);
+    }
+
+    @Scheduled(fixedRateString = "${websocket.sensors.flush-interval:250}")
+    public void flush() {
+        boolean fleetSubscribed = subscriptions.hasSubscribers(FLEET_DESTINATION);
+        for (String deviceId : pending.keySet()) {
+            EncodedSensorData reading = pending.remove(deviceId);
+            if (reading == null) {
+                continue;
+            }
+            String deviceDestination = DEVICE_DESTINATION_PREFIX + deviceId;
+            boolean deviceSubscribed = subscriptions.hasSubscribers(deviceDestination);
+            if (deviceSubscribed) {
+                sendJson(deviceDestination, reading.json(), metrics.broadcastTimer("device", deviceId));
+            }
+            if (fleetSubscribed) {
+                sendJson(FLEET_DESTINATION, reading.json(), metrics.broadcastTimer("fleet", deviceId));
+            }
+            if (deviceSubscribed || fleetSubscribed) {
+                published.incrementAndGet();
+            } else {
+                unsubscribed.incrementAndGet();
+            }
+        }
+    }
+
+    // Pre-encoded payloads skip the template's message converters
+    private void sendJson(String destination, byte[] json, Timer timer) {
+        long started = System.nanoTime();
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setLeaveMutable(true);
+        messagingTemplate.send(destination, MessageBuilder.createMessage(json, accessor.getMessageHeaders()));
+        timer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Readings received, merged away before a tick, published, skipped for lack of
+     * subscribers, and currently pending
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("received", received.get());
+        stats.put("merged", merged.get());
+        stats.put("published", published.get());
+        stats.put("unsubscribed", unsubscribed.get());
+        stats.put("pending", pending.size());
+        stats.put("subscriptions", subscriptions.getSubscriptionCount());
+        return stats;
+    }
+}
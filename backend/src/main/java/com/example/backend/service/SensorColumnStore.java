@@ -0,0 +1,335 @@
+package com.example.backend.service;
+
+import com.example.backend.model.SensorData;
+import com.example.backend.model.SensorMetric;
+
+import java.lang.invoke.VarHandle;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fixed-capacity columnar ring buffer holding the most recent readings of a single device.
+ *
+ * Every SensorData field lives in its own primitive array (about 45 bytes per reading instead
+ * of a full bean), the device ID is kept once per store and statuses are dictionary-encoded
+ * (statuses that no longer fit the shared dictionary are kept as raw strings).
+ *
+ * Appends are O(1) and must come from a single ingest thread per device. Any number of
+ * reader threads may take snapshots concurrently without locking: the writer announces the
+ * slot it is about to overwrite in {@code claimed} and publishes it in {@code published}
+ * once written, so a reader can tell which of the rows it copied were overwritten mid-copy
+ * and drop them.
+ *
+ * Receive times are kept non-decreasing so the receivedAt column doubles as the time index
+ * for range queries.
+ */
+class SensorColumnStore {
+
+    // Optimistic range reads retried before falling back to trimming overwritten rows
+    private static final int MAX_SLICE_ATTEMPTS = 3;
+
+    private final String deviceId;
+    private final int capacity;
+
+    private final float[] temperature;
+    private final float[] humidity;
+    private final int[] airQualityRaw;
+    private final int[] co2;
+    private final int[] nh3;
+    private final int[] ch4;
+    private final int[] co;
+    private final byte[] airQualityStatus;
+    // Raw status of rows coded SensorStatusDictionary.OVERFLOW_CODE, allocated on first use
+    private String[] overflowStatus;
+    private final long[] lightBits;
+    private final long[] motionBits;
+    private final long[] timestamp;
+    private final long[] receivedAt;
+
+    // Number of readings the writer has started writing
+    private volatile long claimed;
+    // Number of readings fully written and visible to readers
+    private volatile long published;
+    // Receive time of the last appended reading, only touched by the writer
+    private long lastReceivedAt = Long.MIN_VALUE;
+
+    SensorColumnStore(String deviceId, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("History capacity must be positive: " + capacity);
+        }
+        this.deviceId = deviceId;
+        this.capacity = capacity;
+        this.temperature = new float[capacity];
+        this.humidity = new float[capacity];
+        this.airQualityRaw = new int[capacity];
+        this.co2 = new int[capacity];
+        this.nh3 = new int[capacity];
+        this.ch4 = new int[capacity];
+        this.co = new int[capacity];
+        this.airQualityStatus = new byte[capacity];
+        this.lightBits = new long[(capacity + 63) >>> 6];
+        this.motionBits = new long[(capacity + 63) >>> 6];
+        this.timestamp = new long[capacity];
+        this.receivedAt = new long[capacity];
+    }
+
+    /**
+     * Append a reading, overwriting the oldest one once the store is full.
+     * Only one thread may call this for a given store.
+     */
+    void append(SensorData sensorData) {
+        long seq = published;
+        claimed = seq + 1;
+        VarHandle.storeStoreFence();
+
+        int row = (int) (seq % capacity);
+        temperature[row] = sensorData.getTemperature();
+        humidity[row] = sensorData.getHumidity();
+        airQualityRaw[row] = sensorData.getAirQualityRaw();
+        co2[row] = sensorData.getCo2();
+        nh3[row] = sensorData.getNh3();
+        ch4[row] = sensorData.getCh4();
+        co[row] = sensorData.getCo();
+        byte status = SensorStatusDictionary.INSTANCE.encode(sensorData.getAirQualityStatus());
+        airQualityStatus[row] = status;
+        if (status == SensorStatusDictionary.OVERFLOW_CODE) {
+            if (overflowStatus == null) {
+                overflowStatus = new String[capacity];
+            }
+            overflowStatus[row] = sensorData.getAirQualityStatus();
+        }
+        setBit(lightBits, row, sensorData.isLight());
+        setBit(motionBits, row, sensorData.isMotionDetected());
+        timestamp[row] = sensorData.getTimestamp();
+        // Clamp clock steps backwards so receivedAt stays sorted
+        lastReceivedAt = Math.max(lastReceivedAt, toEpochMillis(sensorData.getReceivedAt()));
+        receivedAt[row] = lastReceivedAt;
+
+        published = seq + 1;
+    }
+
+    /**
+     * Consistent copy of the stored readings, newest first.
+     */
+    List<SensorData> snapshot() {
+        long end = published;
+        int count = (int) Math.min(end, capacity);
+        SensorData[] copy = new SensorData[count];
+        for (int i = 0; i < count; i++) {
+            copy[i] = readRow((int) ((end - 1 - i) % capacity));
+        }
+        VarHandle.loadLoadFence();
+
+        // Readings older than (claimed - capacity) may have been overwritten while copying
+        long overwritten = claimed - end;
+        int valid = (int) Math.max(0, Math.min(count, capacity - overwritten));
+
+        List<SensorData> result = new ArrayList<>(valid);
+        for (int i = 0; i < valid; i++) {
+            result.add(copy[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Receive times and values of one metric for the readings received within
+     * [fromMillis, toMillis], oldest first. The range is located by binary search over the
+     * receivedAt column; rows are only rebuilt later for the points a caller keeps, see
+     * {@link #readings(long[])}.
+     */
+    Slice slice(long fromMillis, long toMillis, SensorMetric metric) {
+        for (int attempt = 1; ; attempt++) {
+            long end = published;
+            long first = lowerBound(Math.max(0, end - capacity), end, fromMillis);
+            long last = upperBound(first, end, toMillis);
+
+            int count = (int) (last - first);
+            long[] times = new long[count];
+            double[] values = new double[count];
+            for (int i = 0; i < count; i++) {
+                int row = (int) ((first + i) % capacity);
+                times[i] = receivedAt[row];
+                values[i] = columnValue(metric, row);
+            }
+            VarHandle.loadLoadFence();
+
+            long oldestValid = claimed - capacity;
+            if (oldestValid <= first) {
+                return new Slice(first, times, values);
+            }
+            if (attempt == MAX_SLICE_ATTEMPTS) {
+                // Writer kept lapping the oldest rows; drop them and anything a torn probe let in
+                int skip = (int) Math.min(count, oldestValid - first);
+                while (skip < count && times[skip] < fromMillis) {
+                    skip++;
+                }
+                return new Slice(first + skip,
+                        Arrays.copyOfRange(times, skip, count),
+                        Arrays.copyOfRange(values, skip, count));
+            }
+        }
+    }
+
+    /**
+     * Rebuild the readings with the given ascending sequence numbers, newest first.
+     * Rows overwritten since they were selected are skipped.
+     */
+    List<SensorData> readings(long[] seqs) {
+        SensorData[] copy = new SensorData[seqs.length];
+        for (int i = 0; i < seqs.length; i++) {
+            copy[i] = readRow((int) (seqs[i] % capacity));
+        }
+        VarHandle.loadLoadFence();
+
+        long oldestValid = claimed - capacity;
+        List<SensorData> result = new ArrayList<>(seqs.length);
+        for (int i = seqs.length - 1; i >= 0 && seqs[i] >= oldestValid; i--) {
+            result.add(copy[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Compress the readings with sequence numbers [firstSeq, firstSeq + count) into a chunk.
+     * Only the writer may call this, before those rows are overwritten.
+     */
+    SensorHistoryChunk encode(long firstSeq, int count) {
+        SensorHistoryChunk.Builder builder = new SensorHistoryChunk.Builder();
+        for (long seq = firstSeq; seq < firstSeq + count; seq++) {
+            int row = (int) (seq % capacity);
+            builder.add(receivedAt[row], timestamp[row], temperature[row], humidity[row],
+                    airQualityRaw[row], co2[row], nh3[row], ch4[row], co[row],
+                    status(row), getBit(lightBits, row), getBit(motionBits, row));
+        }
+        return builder.build(deviceId, firstSeq);
+    }
+
+    int size() {
+        return (int) Math.min(published, capacity);
+    }
+
+    /**
+     * Receive time of the oldest reading held, or Long.MAX_VALUE when empty
+     */
+    long oldestReceivedAt() {
+        long end = published;
+        return end > 0 ? receivedAt[(int) (Math.max(0, end - capacity) % capacity)] : Long.MAX_VALUE;
+    }
+
+    /**
+     * Number of readings appended since the store was created
+     */
+    long appended() {
+        return published;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    String getDeviceId() {
+        return deviceId;
+    }
+
+    private SensorData readRow(int row) {
+        return SensorData.builder()
+                .temperature(temperature[row])
+                .humidity(humidity[row])
+                .airQualityRaw(airQualityRaw[row])
+                .co2(co2[row])
+                .nh3(nh3[row])
+                .ch4(ch4[row])
+                .co(co[row])
+                .airQualityStatus(status(row))
+                .isLight(getBit(lightBits, row))
+                .motionDetected(getBit(motionBits, row))
+                .deviceId(deviceId)
+                .timestamp(timestamp[row])
+                .receivedAt(fromEpochMillis(receivedAt[row]))
+                .build();
+    }
+
+    private String status(int row) {
+        byte code = airQualityStatus[row];
+        if (code != SensorStatusDictionary.OVERFLOW_CODE) {
+            return SensorStatusDictionary.INSTANCE.decode(code);
+        }
+        // Null only for a row torn by the writer, which the caller drops
+        String[] raw = overflowStatus;
+        return raw != null ? raw[row] : null;
+    }
+
+    private double columnValue(SensorMetric metric, int row) {
+        return switch (metric) {
+            case TEMPERATURE -> temperature[row];
+            case HUMIDITY -> humidity[row];
+            case AIR_QUALITY_RAW -> airQualityRaw[row];
+            case CO2 -> co2[row];
+            case NH3 -> nh3[row];
+            case CH4 -> ch4[row];
+            case CO -> co[row];
+        };
+    }
+
+    // First sequence in [low, high) received at or after the given time
+    private long lowerBound(long low, long high, long millis) {
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (receivedAt[(int) (mid % capacity)] < millis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // First sequence in [low, high) received after the given time
+    private long upperBound(long low, long high, long millis) {
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (receivedAt[(int) (mid % capacity)] <= millis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static void setBit(long[] bits, int row, boolean value) {
+        if (value) {
+            bits[row >>> 6] |= 1L << row;
+        } else {
+            bits[row >>> 6] &= ~(1L << row);
+        }
+    }
+
+    private static boolean getBit(long[] bits, int row) {
+        return (bits[row >>> 6] & (1L << row)) != 0;
+    }
+
+    static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime != null ? dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : Long.MIN_VALUE;
+    }
+
+    static LocalDateTime fromEpochMillis(long epochMillis) {
+        return epochMillis != Long.MIN_VALUE
+                ? LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault())
+                : null;
+    }
+
+    /**
+     * Receive times and metric values copied out of the store, starting at sequence {@code firstSeq}
+     */
+    record Slice(long firstSeq, long[] times, double[] values) {
+
+        int size() {
+            return times.length;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.backend.service;
+
+import com.example.backend.model.DailySummary;
+import com.example.backend.model.RollupResolution;
+import com.example.backend.model.SensorRollup;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-device and fleet-wide daily totals, built from the 1-day rollups kept up to date on
+ * ingest plus alert counters updated as alerts fire. Producing a summary is O(devices) and
+ * never replays the day's readings.
+ */
+@Service
+public class SensorDailySummaryService {
+
+    private final SensorRollupService rollupService;
+
+    // Days of alert counters kept, including today
+    @Value("${sensor.report.alert-retention-days:7}")
+    private int alertRetentionDays;
+
+    // Alerts per day and device
+    private final ConcurrentHashMap<LocalDate, ConcurrentHashMap<String, LongAdder>> alerts = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SensorDailySummaryService(SensorRollupService rollupService) {
+        this.rollupService = rollupService;
+    }
+
+    /**
+     * Count an alert triggered for a device today
+     */
+    public void recordAlert(String deviceId) {
+        alerts.computeIfAbsent(LocalDate.now(), day -> new ConcurrentHashMap<>())
+                .computeIfAbsent(deviceId, id -> new LongAdder())
+                .increment();
+    }
+
+    /**
+     * Fleet-wide summary of a day with the summary of every device that reported or
+     * triggered alerts, or null if there was neither
+     */
+    public DailySummary getSummary(LocalDate day) {
+        pruneAlerts();
+        Map<String, SensorRollup> deviceRollups = rollupService.getDeviceRollups(RollupResolution.DAY, day.atStartOfDay());
+        Map<String, LongAdder> deviceAlerts = alerts.getOrDefault(day, new ConcurrentHashMap<>());
+        if (deviceRollups.isEmpty() && deviceAlerts.isEmpty()) {
+            return null;
+        }
+
+        TreeSet<String> deviceIds = new TreeSet<>(deviceRollups.keySet());
+        deviceIds.addAll(deviceAlerts.keySet());
+        List<DailySummary> devices = new ArrayList<>(deviceIds.size());
+        long totalAlerts = 0;
+        for (String deviceId : deviceIds) {
+            SensorRollup rollup = deviceRollups.get(deviceId);
+            LongAdder alertCount = deviceAlerts.get(deviceId);
+            long deviceAlertCount = alertCount != null ? alertCount.sum() : 0;
+            totalAlerts += deviceAlertCount;
+            devices.add(DailySummary.builder()
+                    .day(day)
+                    .deviceId(deviceId)
+                    .readings(rollup != null ? rollup.getCount() : 0)
+                    .alerts(deviceAlertCount)
+                    .metrics(rollup != null ? rollup.getMetrics() : Map.of())
+                    .build());
+        }
+
+        SensorRollup fleet = rollupService.getFleetRollup(RollupResolution.DAY, day.atStartOfDay());
+        return DailySummary.builder()
+                .day(day)
+                .readings(fleet != null ? fleet.getCount() : 0)
+                .alerts(totalAlerts)
+                .metrics(fleet != null ? fleet.getMetrics() : Map.of())
+                .devices(devices)
+                .build();
+    }
+
+    private void pruneAlerts() {
+        LocalDate oldest = LocalDate.now().minusDays(Math.max(1, alertRetentionDays) - 1L);
+        alerts.keySet().removeIf(day -> day.isBefore(oldest));
+    }
+}
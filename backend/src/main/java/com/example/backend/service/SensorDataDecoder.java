@@ -0,0 +1,193 @@
+package com.example.backend.service;
+
+import com.example.backend.model.SensorData;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.NumberInput;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Streaming decoder for sensor JSON payloads delivered as raw MQTT bytes.
+ *
+ * Walks the tokens of the known SensorData fields directly instead of binding through
+ * ObjectMapper reflection. Field names come from Jackson's canonicalized symbol table, so
+ * matching them allocates nothing, and each worker thread keeps a small cache of the
+ * deviceId and airQualityStatus strings it has seen, so repeated values are not copied again.
+ * Floats are parsed from the parser's character buffer rather than through a String.
+ * Jackson parsers cannot be retargeted at a new buffer, but the factory recycles their
+ * internal buffers per thread, so per message only the parser, its small context objects
+ * and the result are allocated.
+ *
+ * Binding matches ObjectMapper: unknown fields are skipped, nulls become zero for primitives,
+ * numeric strings are coerced, and the Lombok boolean isLight is bound from "light". The one
+ * exception is a repeated deviceId field: the first one wins, so the ingest lane can be picked
+ * by reading up to that field only.
+ */
+@Component
+public class SensorDataDecoder {
+
+    private final JsonFactory jsonFactory;
+
+    private final ThreadLocal<StringCache> stringCache = ThreadLocal.withInitial(StringCache::new);
+
+    @Autowired
+    public SensorDataDecoder(ObjectMapper objectMapper) {
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    public SensorData decode(byte[] payload) throws IOException {
+        return decode(payload, 0, payload.length);
+    }
+
+    public SensorData decode(byte[] payload, int offset, int length) throws IOException {
+        SensorData sensorData = new SensorData();
+        boolean deviceIdRead = false;
+        StringCache strings = stringCache.get();
+        try (JsonParser parser = jsonFactory.createParser(payload, offset, length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Sensor payload is not a JSON object");
+            }
+            String field;
+            while ((field = parser.nextFieldName()) != null) {
+                JsonToken token = parser.nextToken();
+                switch (field) {
+                    case "temperature" -> sensorData.setTemperature(floatValue(parser, token));
+                    case "humidity" -> sensorData.setHumidity(floatValue(parser, token));
+                    case "airQualityRaw" -> sensorData.setAirQualityRaw((int) longValue(parser, token));
+                    case "co2" -> sensorData.setCo2((int) longValue(parser, token));
+                    case "nh3" -> sensorData.setNh3((int) longValue(parser, token));
+                    case "ch4" -> sensorData.setCh4((int) longValue(parser, token));
+                    case "co" -> sensorData.setCo((int) longValue(parser, token));
+                    case "timestamp" -> sensorData.setTimestamp(longValue(parser, token));
+                    case "light" -> sensorData.setLight(booleanValue(parser, token));
+                    case "motionDetected" -> sensorData.setMotionDetected(booleanValue(parser, token));
+                    case "deviceId" -> {
+                        String deviceId = stringValue(parser, token, strings);
+                        if (!deviceIdRead) {
+                            sensorData.setDeviceId(deviceId);
+                            deviceIdRead = true;
+                        }
+                    }
+                    case "airQualityStatus" -> sensorData.setAirQualityStatus(stringValue(parser, token, strings));
+                    default -> parser.skipChildren();
+                }
+            }
+        }
+        return sensorData;
+    }
+
+    /**
+     * The deviceId that decode() would return for this payload, without binding the other fields.
+     * Follows the same rules: only top-level fields count, the first deviceId wins, and values
+     * are coerced the same way. Stops at that field, so picking the ingest lane on the MQTT
+     * thread costs a scan up to the deviceId rather than a full parse.
+     */
+    public String deviceId(byte[] payload) throws IOException {
+        StringCache strings = stringCache.get();
+        try (JsonParser parser = jsonFactory.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Sensor payload is not a JSON object");
+            }
+            String field;
+            while ((field = parser.nextFieldName()) != null) {
+                JsonToken token = parser.nextToken();
+                if ("deviceId".equals(field)) {
+                    return stringValue(parser, token, strings);
+                }
+                parser.skipChildren();
+            }
+        }
+        return null;
+    }
+
+    private static float floatValue(JsonParser parser, JsonToken token) throws IOException {
+        return switch (token) {
+            case VALUE_NUMBER_INT -> parser.getLongValue();
+            // Parse straight from the parser's character buffer; getFloatValue() would build a String
+            case VALUE_NUMBER_FLOAT -> NumberInput.parseFloat(
+                    parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength(), true);
+            case VALUE_STRING -> parser.getText().isBlank() ? 0 : Float.parseFloat(parser.getText().trim());
+            case VALUE_NULL -> 0;
+            default -> throw new IOException("Expected a number for " + parser.currentName() + " but got " + token);
+        };
+    }
+
+    private static long longValue(JsonParser parser, JsonToken token) throws IOException {
+        return switch (token) {
+            case VALUE_NUMBER_INT -> parser.getLongValue();
+            case VALUE_NUMBER_FLOAT -> (long) parser.getDoubleValue();
+            case VALUE_STRING -> parser.getText().isBlank() ? 0 : (long) Double.parseDouble(parser.getText().trim());
+            case VALUE_NULL -> 0;
+            default -> throw new IOException("Expected a number for " + parser.currentName() + " but got " + token);
+        };
+    }
+
+    private static boolean booleanValue(JsonParser parser, JsonToken token) throws IOException {
+        return switch (token) {
+            case VALUE_TRUE -> true;
+            case VALUE_FALSE, VALUE_NULL -> false;
+            case VALUE_NUMBER_INT -> parser.getIntValue() != 0;
+            case VALUE_STRING -> Boolean.parseBoolean(parser.getText().trim());
+            default -> throw new IOException("Expected a boolean for " + parser.currentName() + " but got " + token);
+        };
+    }
+
+    private static String stringValue(JsonParser parser, JsonToken token, StringCache strings) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return null;
+        }
+        if (token.isStructStart()) {
+            // ObjectMapper rejects these too; returning here would leave the parser inside the value
+            throw new IOException("Expected a string for " + parser.currentName() + " but got " + token);
+        }
+        if (token != JsonToken.VALUE_STRING) {
+            return parser.getValueAsString();
+        }
+        return strings.get(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+    }
+
+    /**
+     * Small direct-mapped cache of recently decoded strings, keyed by their characters
+     */
+    private static final class StringCache {
+        private static final int SIZE = 256;
+        private static final int MAX_CACHED_LENGTH = 64;
+
+        private final String[] entries = new String[SIZE];
+
+        String get(char[] chars, int offset, int length) {
+            if (length > MAX_CACHED_LENGTH) {
+                return new String(chars, offset, length);
+            }
+            int hash = 0;
+            for (int i = 0; i < length; i++) {
+                hash = 31 * hash + chars[offset + i];
+            }
+            int slot = (hash ^ (hash >>> 16)) & (SIZE - 1);
+            String cached = entries[slot];
+            if (cached != null && matches(cached, chars, offset, length)) {
+                return cached;
+            }
+            String value = new String(chars, offset, length);
+            entries[slot] = value;
+            return value;
+        }
+
+        private static boolean matches(String cached, char[] chars, int offset, int length) {
+            if (cached.length() != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (cached.charAt(i) != chars[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
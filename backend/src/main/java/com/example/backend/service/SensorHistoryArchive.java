@@ -0,0 +1,549 @@
+package com.example.backend.service;
+
+import com.example.backend.model.SensorData;
+import com.example.backend.model.SensorMetric;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.VarHandle;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Cold tier of the sensor history: compressed chunks that aged out of memory, kept in
+ * immutable on-disk segment files.
+ *
+ * Chunks are appended to a pre-sized segment file mapped with a MappedByteBuffer; a full
+ * segment is never written again. An in-memory index per device holds the segment, position
+ * and receive time range of every chunk (about 30 bytes each), so a range query maps straight
+ * to the chunks it overlaps, which then decode directly from the mapped files. Segments whose
+ * newest reading is past retention are deleted. The index is rebuilt by scanning the segments
+ * on startup.
+ *
+ * Ingest lanes only queue chunks; a single writer thread appends them to the segments and
+ * rolls full ones, so neither the segment monitor nor fsync sits on the ingest path. Until a
+ * queued chunk is written its device index keeps it in memory, so queries see it either way.
+ *
+ * Segment layout: a header (int magic, int version, long creation time) followed by records of
+ * an int length, written last, an int CRC32 of the chunk bytes and a serialized
+ * SensorHistoryChunk. On startup a segment is read up to its first missing, torn or corrupt
+ * record; the rest of it is ignored.
+ */
+@Slf4j
+@Service
+public class SensorHistoryArchive {
+
+    private static final int SEGMENT_MAGIC = 0x41485354; // "AHST"
+    private static final int SEGMENT_VERSION = 2;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private static final String SEGMENT_PREFIX = "history-";
+    private static final String SEGMENT_SUFFIX = ".segment";
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 10_000;
+
+    @Value("${sensor.history.cold.enabled:true}")
+    private boolean enabled;
+
+    @Value("${sensor.history.cold.dir:data/history}")
+    private String directory;
+
+    @Value("${sensor.history.cold.segment-size:67108864}")
+    private int segmentSize;
+
+    @Value("${sensor.history.cold.retention-days:180}")
+    private int retentionDays;
+
+    // Chunks waiting for the writer; lanes block when it falls this far behind
+    @Value("${sensor.history.cold.queue-capacity:1024}")
+    private int queueCapacity;
+
+    private final ConcurrentHashMap<String, DeviceIndex> devices = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private BlockingQueue<SensorHistoryChunk> queue;
+    private Thread writerThread;
+    private volatile boolean running;
+
+    // Writer thread state, also touched by maintain and close under the monitor
+    private Segment active;
+    private long nextSegmentNumber;
+
+    @PostConstruct
+    public synchronized void open() {
+        if (!enabled) {
+            return;
+        }
+        long chunks = 0;
+        try {
+            Path dir = Paths.get(directory);
+            Files.createDirectories(dir);
+            for (Path path : listSegments(dir)) {
+                nextSegmentNumber = segmentNumber(path) + 1;
+                chunks += load(path);
+            }
+        } catch (IOException e) {
+            log.error("Sensor history archive unavailable, history past memory retention is dropped: {}",
+                    e.getMessage(), e);
+            enabled = false;
+            return;
+        }
+        log.info("Indexed {} archived history chunks of {} devices in {} segments",
+                chunks, devices.size(), segments.size());
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        running = true;
+        writerThread = Thread.ofPlatform().name("history-archive-writer").daemon().start(this::run);
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queue a chunk aged out of memory for writing. Readings already archived or queued for
+     * the device, e.g. by a previous run before the journal was replayed, are skipped.
+     */
+    public void archive(SensorHistoryChunk chunk) {
+        if (!enabled) {
+            return;
+        }
+        // Under the map's lock for the device, so retention cannot drop the index in between
+        SensorHistoryChunk[] queued = new SensorHistoryChunk[1];
+        DeviceIndex index = devices.compute(chunk.getDeviceId(), (id, existing) -> {
+            DeviceIndex target = existing != null ? existing : new DeviceIndex();
+            queued[0] = target.addPending(chunk);
+            return target;
+        });
+        if (queued[0] == null) {
+            return;
+        }
+        try {
+            queue.put(queued[0]);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            index.removePending(queued[0]);
+            log.warn("Interrupted while archiving, chunk of {} dropped", chunk.getDeviceId());
+        }
+    }
+
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            try {
+                SensorHistoryChunk chunk = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (chunk != null) {
+                    write(chunk);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("History archive writer error: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private synchronized void write(SensorHistoryChunk chunk) {
+        DeviceIndex index = devices.get(chunk.getDeviceId());
+        int size = RECORD_HEADER_SIZE + chunk.serializedSize();
+        try {
+            if (active == null || active.remaining() < size) {
+                roll(size);
+            }
+        } catch (IOException e) {
+            log.error("Failed to open history segment, chunk of {} dropped: {}", chunk.getDeviceId(), e.getMessage(), e);
+            index.removePending(chunk);
+            return;
+        }
+        Segment segment = active;
+        int position = segment.end;
+        chunk.writeTo(segment.buffer, position + RECORD_HEADER_SIZE);
+        segment.buffer.putInt(position + 4, checksum(segment.buffer, position + RECORD_HEADER_SIZE, size - RECORD_HEADER_SIZE));
+        // The length must not become visible before the chunk
+        VarHandle.storeStoreFence();
+        segment.buffer.putInt(position, size - RECORD_HEADER_SIZE);
+        segment.end += size;
+        segment.newestReceivedAt = Math.max(segment.newestReceivedAt, chunk.lastReceivedAt());
+        index.written(chunk, segment, position);
+    }
+
+    /**
+     * Receive times and metric values of the archived readings of a device within
+     * [fromMillis, toMillis], oldest first
+     */
+    Slice slice(String deviceId, long fromMillis, long toMillis, SensorMetric metric) {
+        DeviceIndex index = devices.get(deviceId);
+        List<SensorHistoryChunk> chunks = index != null && fromMillis <= toMillis
+                ? index.chunks(fromMillis, toMillis) : List.of();
+
+        List<SensorHistoryChunk> selected = new ArrayList<>();
+        List<long[]> times = new ArrayList<>();
+        List<double[]> values = new ArrayList<>();
+        List<Integer> firstRows = new ArrayList<>();
+        for (SensorHistoryChunk chunk : chunks) {
+            long[] chunkTimes = chunk.receivedAt();
+            int first = 0;
+            while (first < chunkTimes.length && chunkTimes[first] < fromMillis) {
+                first++;
+            }
+            int last = first;
+            while (last < chunkTimes.length && chunkTimes[last] <= toMillis) {
+                last++;
+            }
+            if (first < last) {
+                selected.add(chunk);
+                firstRows.add(first);
+                times.add(Arrays.copyOfRange(chunkTimes, first, last));
+                values.add(Arrays.copyOfRange(chunk.values(metric), first, last));
+            }
+        }
+        return new Slice(selected, firstRows, times, values);
+    }
+
+    /**
+     * Flush written chunks to disk and delete segments past retention
+     */
+    @Scheduled(fixedDelayString = "${sensor.history.cold.sweep-interval:60000}")
+    public synchronized void maintain() {
+        if (!enabled) {
+            return;
+        }
+        if (active != null) {
+            active.buffer.force();
+        }
+        long cutoff = System.currentTimeMillis() - Duration.ofDays(retentionDays).toMillis();
+        Iterator<Segment> iterator = segments.values().iterator();
+        while (iterator.hasNext()) {
+            Segment segment = iterator.next();
+            if (segment == active || segment.newestReceivedAt >= cutoff) {
+                // Segments are in time order; nothing newer has expired
+                break;
+            }
+            iterator.remove();
+            for (DeviceIndex index : devices.values()) {
+                index.removeSegment(segment);
+            }
+            for (String deviceId : devices.keySet()) {
+                devices.computeIfPresent(deviceId, (id, index) -> index.isEmpty() ? null : index);
+            }
+            try {
+                // Readers still holding the mapping keep the file contents until it is unmapped
+                Files.deleteIfExists(segment.path);
+                log.info("Deleted expired history segment {}", segment.path);
+            } catch (IOException e) {
+                log.warn("Failed to delete expired history segment {}: {}", segment.path, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Write out the queued chunks, then flush the active segment
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        running = false;
+        if (writerThread != null) {
+            writerThread.join(SHUTDOWN_TIMEOUT_MILLIS);
+            if (!queue.isEmpty()) {
+                log.warn("{} history chunks not archived at shutdown", queue.size());
+            }
+        }
+        flush();
+    }
+
+    private synchronized void flush() {
+        if (active != null) {
+            active.buffer.force();
+            active = null;
+        }
+    }
+
+    private long load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int version = buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != SEGMENT_MAGIC ? -1 : buffer.getInt(4);
+            if (version != SEGMENT_VERSION) {
+                log.warn("Skipping unrecognized history segment {}", path);
+                return 0;
+            }
+            Segment segment = new Segment(path, buffer);
+            long chunks = 0;
+            int position = HEADER_SIZE;
+            // A zero length marks the end of the written records, including a chunk cut short by a crash
+            while (position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+                int length = buffer.getInt(position);
+                if (length <= 0) {
+                    break;
+                }
+                SensorHistoryChunk chunk = null;
+                if (length <= buffer.capacity() - position - RECORD_HEADER_SIZE
+                        && buffer.getInt(position + 4) == checksum(buffer, position + RECORD_HEADER_SIZE, length)) {
+                    try {
+                        chunk = SensorHistoryChunk.readFrom(buffer, position + RECORD_HEADER_SIZE);
+                    } catch (RuntimeException e) {
+                        log.debug("Undecodable history chunk in {} at {}: {}", path, position, e.getMessage());
+                    }
+                }
+                if (chunk == null) {
+                    // Same as the journal: everything from the first bad record on is dropped
+                    log.warn("Corrupt history record in {} at byte {}, ignoring the rest of the segment", path, position);
+                    break;
+                }
+                devices.computeIfAbsent(chunk.getDeviceId(), id -> new DeviceIndex())
+                        .add(segment, position, chunk.firstReceivedAt(), chunk.lastReceivedAt());
+                segment.newestReceivedAt = Math.max(segment.newestReceivedAt, chunk.lastReceivedAt());
+                position += RECORD_HEADER_SIZE + length;
+                chunks++;
+            }
+            segment.end = position;
+            segments.put(segmentNumber(path), segment);
+            return chunks;
+        }
+    }
+
+    private void roll(int needed) throws IOException {
+        if (active != null) {
+            active.buffer.force();
+        }
+        long number = nextSegmentNumber++;
+        Path path = Paths.get(directory, String.format("%s%020d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+        int size = Math.max(segmentSize, HEADER_SIZE + needed);
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(size);
+            MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(0, SEGMENT_MAGIC);
+            buffer.putInt(4, SEGMENT_VERSION);
+            buffer.putLong(8, System.currentTimeMillis());
+            active = new Segment(path, buffer);
+            active.end = HEADER_SIZE;
+            segments.put(number, active);
+        }
+        log.debug("Opened history segment {}", path);
+    }
+
+    private static int checksum(MappedByteBuffer buffer, int position, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(position, length));
+        return (int) crc.getValue();
+    }
+
+    private static List<Path> listSegments(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files
+                    .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                            && path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long segmentNumber(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Archived readings selected by a range query, rebuilt on demand
+     */
+    static final class Slice {
+        static final Slice EMPTY = new Slice(List.of(), List.of(), List.of(), List.of());
+
+        private final List<SensorHistoryChunk> chunks;
+        private final int[] firstRows;
+        // Slice index of each chunk's first selected row
+        private final int[] starts;
+        private final long[] times;
+        private final double[] values;
+
+        private Slice(List<SensorHistoryChunk> chunks, List<Integer> firstRows,
+                      List<long[]> times, List<double[]> values) {
+            this.chunks = chunks;
+            this.firstRows = firstRows.stream().mapToInt(Integer::intValue).toArray();
+            this.starts = new int[chunks.size()];
+            int total = 0;
+            for (int c = 0; c < chunks.size(); c++) {
+                starts[c] = total;
+                total += times.get(c).length;
+            }
+            this.times = new long[total];
+            this.values = new double[total];
+            for (int c = 0; c < chunks.size(); c++) {
+                System.arraycopy(times.get(c), 0, this.times, starts[c], times.get(c).length);
+                System.arraycopy(values.get(c), 0, this.values, starts[c], values.get(c).length);
+            }
+        }
+
+        int size() {
+            return times.length;
+        }
+
+        long[] times() {
+            return times;
+        }
+
+        double[] values() {
+            return values;
+        }
+
+        /**
+         * Rebuild the readings at the given ascending slice indexes, newest first
+         */
+        List<SensorData> readings(int[] points) {
+            List<SensorData> result = new ArrayList<>(points.length);
+            int chunk = chunks.size() - 1;
+            SensorHistoryChunk.Rows rows = null;
+            for (int i = points.length - 1; i >= 0; i--) {
+                while (starts[chunk] > points[i]) {
+                    chunk--;
+                    rows = null;
+                }
+                if (rows == null) {
+                    rows = chunks.get(chunk).decode();
+                }
+                result.add(rows.reading(firstRows[chunk] + points[i] - starts[chunk]));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Archived chunks of one device in time order, followed by the ones still queued for the
+     * writer
+     */
+    private static final class DeviceIndex {
+        private Segment[] segments = new Segment[16];
+        private int[] positions = new int[16];
+        private long[] firstReceivedAt = new long[16];
+        private long[] lastReceivedAt = new long[16];
+        private int size;
+        private final ArrayDeque<SensorHistoryChunk> pending = new ArrayDeque<>();
+
+        /**
+         * Track a chunk queued for the writer, without the readings this device already has.
+         * Returns the chunk to queue, or null if nothing was left.
+         */
+        synchronized SensorHistoryChunk addPending(SensorHistoryChunk chunk) {
+            SensorHistoryChunk trimmed = chunk.receivedAfter(lastReceivedAt());
+            if (trimmed != null) {
+                pending.addLast(trimmed);
+            }
+            return trimmed;
+        }
+
+        synchronized void removePending(SensorHistoryChunk chunk) {
+            pending.remove(chunk);
+        }
+
+        /**
+         * Move a queued chunk to its place on disk
+         */
+        synchronized void written(SensorHistoryChunk chunk, Segment segment, int position) {
+            pending.remove(chunk);
+            add(segment, position, chunk.firstReceivedAt(), chunk.lastReceivedAt());
+        }
+
+        synchronized void add(Segment segment, int position, long first, long last) {
+            if (size == segments.length) {
+                segments = Arrays.copyOf(segments, size * 2);
+                positions = Arrays.copyOf(positions, size * 2);
+                firstReceivedAt = Arrays.copyOf(firstReceivedAt, size * 2);
+                lastReceivedAt = Arrays.copyOf(lastReceivedAt, size * 2);
+            }
+            segments[size] = segment;
+            positions[size] = position;
+            firstReceivedAt[size] = first;
+            lastReceivedAt[size] = last;
+            size++;
+        }
+
+        synchronized long lastReceivedAt() {
+            if (!pending.isEmpty()) {
+                return pending.getLast().lastReceivedAt();
+            }
+            return size > 0 ? lastReceivedAt[size - 1] : Long.MIN_VALUE;
+        }
+
+        synchronized boolean isEmpty() {
+            return size == 0 && pending.isEmpty();
+        }
+
+        synchronized List<SensorHistoryChunk> chunks(long fromMillis, long toMillis) {
+            // First chunk ending at or after the start of the range
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (lastReceivedAt[mid] < fromMillis) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            List<SensorHistoryChunk> result = new ArrayList<>();
+            for (int i = low; i < size && firstReceivedAt[i] <= toMillis; i++) {
+                result.add(SensorHistoryChunk.readFrom(segments[i].buffer, positions[i] + RECORD_HEADER_SIZE));
+            }
+            for (SensorHistoryChunk chunk : pending) {
+                if (chunk.lastReceivedAt() >= fromMillis && chunk.firstReceivedAt() <= toMillis) {
+                    result.add(chunk);
+                }
+            }
+            return result;
+        }
+
+        synchronized void removeSegment(Segment segment) {
+            int removed = 0;
+            while (removed < size && segments[removed] == segment) {
+                removed++;
+            }
+            if (removed > 0) {
+                size -= removed;
+                System.arraycopy(segments, removed, segments, 0, size);
+                System.arraycopy(positions, removed, positions, 0, size);
+                System.arraycopy(firstReceivedAt, removed, firstReceivedAt, 0, size);
+                System.arraycopy(lastReceivedAt, removed, lastReceivedAt, 0, size);
+                Arrays.fill(segments, size, size + removed, null);
+            }
+        }
+    }
+
+    /**
+     * One mapped segment file; only the active one is appended to
+     */
+    private static final class Segment {
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int end;
+        private long newestReceivedAt = Long.MIN_VALUE;
+
+        private Segment(Path path, MappedByteBuffer buffer) {
+            this.path = path;
+            this.buffer = buffer;
+        }
+
+        int remaining() {
+            return buffer.capacity() - end;
+        }
+    }
+}
@@ -0,0 +1,689 @@
+package com.example.backend.service;
+
+import com.example.backend.model.SensorData;
+import com.example.backend.model.SensorMetric;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable, compressed block of consecutive readings of one device (Gorilla-style encoding).
+ *
+ * Every column is a separate bit stream, so a range query only decodes the receive times and
+ * the metric it needs:
+ * <ul>
+ *   <li>receivedAt and timestamp: delta-of-delta, a single bit for a steady reporting rate</li>
+ *   <li>temperature and humidity: XOR with the previous float, storing only the meaningful bits</li>
+ *   <li>airQualityRaw and gas readings: zigzag varint of the delta to the previous reading</li>
+ *   <li>airQualityStatus: one bit when unchanged, else the chunk's code for it; light and motion: one bit</li>
+ * </ul>
+ * Readings from a device reporting at a steady rate take roughly 1 to 2 bytes per value.
+ * Chunks are never modified once built and are decoded on demand only.
+ *
+ * A chunk can be written to and read back from a ByteBuffer, e.g. a memory-mapped segment
+ * file; a chunk read back decodes straight from that buffer. Serialized layout (big-endian):
+ * <pre>
+ *   long   firstReceivedAt, lastReceivedAt
+ *   int    count
+ *   short  deviceId length, followed by UTF-8
+ *   byte   number of statuses, each as byte code, byte length and UTF-8
+ *   int    column offsets (13), relative to the column data
+ *   byte[] column data
+ * </pre>
+ * Status codes are local to the chunk and stored with their names, so they survive a restart
+ * and are not limited by the shared dictionary; a chunk holds at most {@link #MAX_COUNT} readings
+ * so its codes always fit a byte.
+ */
+final class SensorHistoryChunk {
+
+    // Readings per chunk, so every distinct status (and none) gets a one-byte code
+    static final int MAX_COUNT = 255;
+
+    private static final int RECEIVED_AT = 0;
+    private static final int TIMESTAMP = 1;
+    private static final int TEMPERATURE = 2;
+    private static final int HUMIDITY = 3;
+    private static final int AIR_QUALITY_RAW = 4;
+    private static final int CO2 = 5;
+    private static final int NH3 = 6;
+    private static final int CH4 = 7;
+    private static final int CO = 8;
+    private static final int STATUS = 9;
+    private static final int LIGHT = 10;
+    private static final int MOTION = 11;
+    private static final int COLUMNS = 12;
+
+    private final String deviceId;
+    private final long firstSeq;
+    private final int count;
+    private final long firstReceivedAt;
+    private final long lastReceivedAt;
+    private final ByteBuffer data;
+    // Byte offset of every column in data, plus the end
+    private final int[] offsets;
+    // Status names by chunk-local code, code 0 is a missing status
+    private final String[] statuses;
+
+    private SensorHistoryChunk(String deviceId, long firstSeq, int count, long firstReceivedAt,
+                               long lastReceivedAt, ByteBuffer data, int[] offsets, String[] statuses) {
+        this.deviceId = deviceId;
+        this.firstSeq = firstSeq;
+        this.count = count;
+        this.firstReceivedAt = firstReceivedAt;
+        this.lastReceivedAt = lastReceivedAt;
+        this.data = data;
+        this.offsets = offsets;
+        this.statuses = statuses;
+    }
+
+    /**
+     * Read a chunk serialized at the given position; the column data stays in the buffer
+     */
+    static SensorHistoryChunk readFrom(ByteBuffer buffer, int position) {
+        long firstReceivedAt = buffer.getLong(position);
+        long lastReceivedAt = buffer.getLong(position + 8);
+        int count = buffer.getInt(position + 16);
+        position += 20;
+        int deviceIdLength = buffer.getShort(position) & 0xFFFF;
+        String deviceId = readString(buffer, position + 2, deviceIdLength);
+        position += 2 + deviceIdLength;
+
+        String[] statuses = new String[256];
+        int statusCount = buffer.get(position++) & 0xFF;
+        for (int i = 0; i < statusCount; i++) {
+            int code = buffer.get(position) & 0xFF;
+            int length = buffer.get(position + 1) & 0xFF;
+            statuses[code] = readString(buffer, position + 2, length);
+            position += 2 + length;
+        }
+
+        int[] offsets = new int[COLUMNS + 1];
+        for (int c = 0; c <= COLUMNS; c++) {
+            offsets[c] = buffer.getInt(position);
+            position += 4;
+        }
+        return new SensorHistoryChunk(deviceId, 0, count, firstReceivedAt, lastReceivedAt,
+                buffer.slice(position, offsets[COLUMNS]), offsets, statuses);
+    }
+
+    private static String readString(ByteBuffer buffer, int position, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(position, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Bytes taken by {@link #writeTo(ByteBuffer, int)}
+     */
+    int serializedSize() {
+        int size = 20 + 2 + deviceId.getBytes(StandardCharsets.UTF_8).length + 1;
+        for (byte code : usedStatusCodes()) {
+            size += 2 + statusBytes(code).length;
+        }
+        return size + (COLUMNS + 1) * 4 + sizeInBytes();
+    }
+
+    /**
+     * Serialize the chunk at the given position of the buffer
+     */
+    void writeTo(ByteBuffer buffer, int position) {
+        buffer.putLong(position, firstReceivedAt);
+        buffer.putLong(position + 8, lastReceivedAt);
+        buffer.putInt(position + 16, count);
+        position += 20;
+        byte[] deviceIdBytes = deviceId.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort(position, (short) deviceIdBytes.length);
+        buffer.put(position + 2, deviceIdBytes);
+        position += 2 + deviceIdBytes.length;
+
+        byte[] codes = usedStatusCodes();
+        buffer.put(position++, (byte) codes.length);
+        for (byte code : codes) {
+            byte[] name = statusBytes(code);
+            buffer.put(position, code);
+            buffer.put(position + 1, (byte) name.length);
+            buffer.put(position + 2, name);
+            position += 2 + name.length;
+        }
+
+        for (int c = 0; c <= COLUMNS; c++) {
+            buffer.putInt(position, offsets[c]);
+            position += 4;
+        }
+        buffer.put(position, data, 0, sizeInBytes());
+    }
+
+    /**
+     * Chunk of the readings received after the given time, or null if there are none
+     */
+    SensorHistoryChunk receivedAfter(long millis) {
+        if (lastReceivedAt <= millis) {
+            return null;
+        }
+        if (firstReceivedAt > millis) {
+            return this;
+        }
+        Rows rows = decode();
+        Builder builder = new Builder();
+        for (int row = 0; row < count; row++) {
+            if (rows.receivedAt[row] > millis) {
+                builder.add(rows.receivedAt[row], rows.timestamp[row], rows.temperature[row], rows.humidity[row],
+                        rows.airQualityRaw[row], rows.co2[row], rows.nh3[row], rows.ch4[row], rows.co[row],
+                        statusName(rows.status[row]),
+                        rows.light[row], rows.motion[row]);
+            }
+        }
+        return builder.build(deviceId, firstSeq + count - builder.count());
+    }
+
+    private byte[] usedStatusCodes() {
+        boolean[] used = new boolean[256];
+        int distinct = 0;
+        for (byte code : decodeStatuses(reader(STATUS), count)) {
+            if (!used[code & 0xFF] && statusName(code) != null) {
+                used[code & 0xFF] = true;
+                distinct++;
+            }
+        }
+        byte[] codes = new byte[distinct];
+        for (int code = 0, i = 0; code < used.length; code++) {
+            if (used[code]) {
+                codes[i++] = (byte) code;
+            }
+        }
+        return codes;
+    }
+
+    private byte[] statusBytes(byte code) {
+        byte[] bytes = statusName(code).getBytes(StandardCharsets.UTF_8);
+        return bytes.length <= 255 ? bytes : Arrays.copyOf(bytes, 255);
+    }
+
+    private String statusName(byte code) {
+        return statuses[code & 0xFF];
+    }
+
+    String getDeviceId() {
+        return deviceId;
+    }
+
+    long firstSeq() {
+        return firstSeq;
+    }
+
+    long endSeq() {
+        return firstSeq + count;
+    }
+
+    int count() {
+        return count;
+    }
+
+    long firstReceivedAt() {
+        return firstReceivedAt;
+    }
+
+    long lastReceivedAt() {
+        return lastReceivedAt;
+    }
+
+    /**
+     * Size of the encoded column data
+     */
+    int sizeInBytes() {
+        return data.capacity();
+    }
+
+    /**
+     * Receive times (epoch millis) of all readings, oldest first
+     */
+    long[] receivedAt() {
+        return decodeTimes(reader(RECEIVED_AT), count);
+    }
+
+    /**
+     * Values of one metric for all readings, oldest first
+     */
+    double[] values(SensorMetric metric) {
+        double[] values = new double[count];
+        switch (metric) {
+            case TEMPERATURE, HUMIDITY -> {
+                float[] floats = decodeFloats(reader(metric == SensorMetric.TEMPERATURE ? TEMPERATURE : HUMIDITY), count);
+                for (int i = 0; i < count; i++) {
+                    values[i] = floats[i];
+                }
+            }
+            default -> {
+                int[] ints = decodeInts(reader(intColumn(metric)), count);
+                for (int i = 0; i < count; i++) {
+                    values[i] = ints[i];
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Decode every column, for rebuilding whole readings
+     */
+    Rows decode() {
+        return new Rows(
+                decodeTimes(reader(RECEIVED_AT), count),
+                decodeTimes(reader(TIMESTAMP), count),
+                decodeFloats(reader(TEMPERATURE), count),
+                decodeFloats(reader(HUMIDITY), count),
+                decodeInts(reader(AIR_QUALITY_RAW), count),
+                decodeInts(reader(CO2), count),
+                decodeInts(reader(NH3), count),
+                decodeInts(reader(CH4), count),
+                decodeInts(reader(CO), count),
+                decodeStatuses(reader(STATUS), count),
+                decodeBits(reader(LIGHT), count),
+                decodeBits(reader(MOTION), count));
+    }
+
+    private BitReader reader(int column) {
+        return new BitReader(data, offsets[column]);
+    }
+
+    private static int intColumn(SensorMetric metric) {
+        return switch (metric) {
+            case AIR_QUALITY_RAW -> AIR_QUALITY_RAW;
+            case CO2 -> CO2;
+            case NH3 -> NH3;
+            case CH4 -> CH4;
+            case CO -> CO;
+            case TEMPERATURE, HUMIDITY -> throw new IllegalArgumentException("Not an integer column: " + metric);
+        };
+    }
+
+    private static long[] decodeTimes(BitReader reader, int count) {
+        long[] times = new long[count];
+        long previous = 0;
+        long delta = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0) {
+                previous = reader.read(64);
+            } else {
+                delta += readDeltaOfDelta(reader);
+                previous += delta;
+            }
+            times[i] = previous;
+        }
+        return times;
+    }
+
+    private static long readDeltaOfDelta(BitReader reader) {
+        if (!reader.readBit()) {
+            return 0;
+        }
+        if (!reader.readBit()) {
+            return reader.readSigned(7);
+        }
+        if (!reader.readBit()) {
+            return reader.readSigned(9);
+        }
+        if (!reader.readBit()) {
+            return reader.readSigned(12);
+        }
+        return reader.readBit() ? reader.read(64) : reader.readSigned(32);
+    }
+
+    private static float[] decodeFloats(BitReader reader, int count) {
+        float[] values = new float[count];
+        int previous = 0;
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 0; i < count; i++) {
+            if (i == 0) {
+                previous = (int) reader.read(32);
+            } else if (reader.readBit()) {
+                if (reader.readBit()) {
+                    leading = (int) reader.read(5);
+                    int meaningful = (int) reader.read(5) + 1;
+                    trailing = 32 - leading - meaningful;
+                }
+                previous ^= (int) reader.read(32 - leading - trailing) << trailing;
+            }
+            values[i] = Float.intBitsToFloat(previous);
+        }
+        return values;
+    }
+
+    private static int[] decodeInts(BitReader reader, int count) {
+        int[] values = new int[count];
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            long zigzag = reader.readVarint();
+            previous += (zigzag >>> 1) ^ -(zigzag & 1);
+            values[i] = (int) previous;
+        }
+        return values;
+    }
+
+    private static byte[] decodeStatuses(BitReader reader, int count) {
+        byte[] values = new byte[count];
+        byte previous = 0;
+        for (int i = 0; i < count; i++) {
+            if (reader.readBit()) {
+                previous = (byte) reader.read(8);
+            }
+            values[i] = previous;
+        }
+        return values;
+    }
+
+    private static boolean[] decodeBits(BitReader reader, int count) {
+        boolean[] values = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = reader.readBit();
+        }
+        return values;
+    }
+
+    /**
+     * Decoded columns of a chunk
+     */
+    final class Rows {
+        private final long[] receivedAt;
+        private final long[] timestamp;
+        private final float[] temperature;
+        private final float[] humidity;
+        private final int[] airQualityRaw;
+        private final int[] co2;
+        private final int[] nh3;
+        private final int[] ch4;
+        private final int[] co;
+        private final byte[] status;
+        private final boolean[] light;
+        private final boolean[] motion;
+
+        private Rows(long[] receivedAt, long[] timestamp, float[] temperature, float[] humidity,
+                     int[] airQualityRaw, int[] co2, int[] nh3, int[] ch4, int[] co,
+                     byte[] status, boolean[] light, boolean[] motion) {
+            this.receivedAt = receivedAt;
+            this.timestamp = timestamp;
+            this.temperature = temperature;
+            this.humidity = humidity;
+            this.airQualityRaw = airQualityRaw;
+            this.co2 = co2;
+            this.nh3 = nh3;
+            this.ch4 = ch4;
+            this.co = co;
+            this.status = status;
+            this.light = light;
+            this.motion = motion;
+        }
+
+        /**
+         * Reading at the given row of the chunk, oldest first
+         */
+        SensorData reading(int row) {
+            return SensorData.builder()
+                    .temperature(temperature[row])
+                    .humidity(humidity[row])
+                    .airQualityRaw(airQualityRaw[row])
+                    .co2(co2[row])
+                    .nh3(nh3[row])
+                    .ch4(ch4[row])
+                    .co(co[row])
+                    .airQualityStatus(statusName(status[row]))
+                    .isLight(light[row])
+                    .motionDetected(motion[row])
+                    .deviceId(deviceId)
+                    .timestamp(timestamp[row])
+                    .receivedAt(SensorColumnStore.fromEpochMillis(receivedAt[row]))
+                    .build();
+        }
+    }
+
+    /**
+     * Encodes readings column by column as they are added; single-threaded
+     */
+    static final class Builder {
+        private final BitWriter[] columns = new BitWriter[COLUMNS];
+        private final long[] previousTime = new long[2];
+        private final long[] previousDelta = new long[2];
+        private final int[] previousFloat = new int[2];
+        private final int[] previousLeading = new int[2];
+        private final int[] previousTrailing = new int[2];
+        private final long[] previousInt = new long[5];
+        private byte previousStatus;
+        private final Map<String, Byte> statusCodes = new HashMap<>();
+        // Code 0 is a missing status
+        private final List<String> statusNames = new ArrayList<>();
+        private long firstReceivedAt;
+        private int count;
+
+        Builder() {
+            for (int c = 0; c < COLUMNS; c++) {
+                columns[c] = new BitWriter();
+            }
+            Arrays.fill(previousLeading, -1);
+            statusNames.add(null);
+        }
+
+        void add(long receivedAt, long timestamp, float temperature, float humidity,
+                 int airQualityRaw, int co2, int nh3, int ch4, int co,
+                 String statusName, boolean light, boolean motion) {
+            if (count == MAX_COUNT) {
+                throw new IllegalStateException("A chunk holds at most " + MAX_COUNT + " readings");
+            }
+            if (count == 0) {
+                firstReceivedAt = receivedAt;
+            }
+            writeTime(0, columns[RECEIVED_AT], receivedAt);
+            writeTime(1, columns[TIMESTAMP], timestamp);
+            writeFloat(0, columns[TEMPERATURE], temperature);
+            writeFloat(1, columns[HUMIDITY], humidity);
+            writeInt(0, columns[AIR_QUALITY_RAW], airQualityRaw);
+            writeInt(1, columns[CO2], co2);
+            writeInt(2, columns[NH3], nh3);
+            writeInt(3, columns[CH4], ch4);
+            writeInt(4, columns[CO], co);
+            byte status = statusCode(statusName);
+            if (count > 0 && status == previousStatus) {
+                columns[STATUS].writeBit(false);
+            } else {
+                columns[STATUS].writeBit(true);
+                columns[STATUS].write(status, 8);
+                previousStatus = status;
+            }
+            columns[LIGHT].writeBit(light);
+            columns[MOTION].writeBit(motion);
+            count++;
+        }
+
+        int count() {
+            return count;
+        }
+
+        private byte statusCode(String statusName) {
+            if (statusName == null) {
+                return 0;
+            }
+            Byte code = statusCodes.get(statusName);
+            if (code == null) {
+                code = (byte) statusNames.size();
+                statusCodes.put(statusName, code);
+                statusNames.add(statusName);
+            }
+            return code;
+        }
+
+        SensorHistoryChunk build(String deviceId, long firstSeq) {
+            int[] offsets = new int[COLUMNS + 1];
+            for (int c = 0; c < COLUMNS; c++) {
+                offsets[c + 1] = offsets[c] + columns[c].sizeInBytes();
+            }
+            byte[] data = new byte[offsets[COLUMNS]];
+            for (int c = 0; c < COLUMNS; c++) {
+                columns[c].copyTo(data, offsets[c]);
+            }
+            return new SensorHistoryChunk(deviceId, firstSeq, count, firstReceivedAt,
+                    previousTime[0], ByteBuffer.wrap(data), offsets, statusNames.toArray(new String[0]));
+        }
+
+        private void writeTime(int index, BitWriter writer, long value) {
+            if (count == 0) {
+                writer.write(value, 64);
+            } else {
+                long delta = value - previousTime[index];
+                long deltaOfDelta = delta - previousDelta[index];
+                if (deltaOfDelta == 0) {
+                    writer.writeBit(false);
+                } else if (fits(deltaOfDelta, 7)) {
+                    writer.write(0b10, 2);
+                    writer.write(deltaOfDelta, 7);
+                } else if (fits(deltaOfDelta, 9)) {
+                    writer.write(0b110, 3);
+                    writer.write(deltaOfDelta, 9);
+                } else if (fits(deltaOfDelta, 12)) {
+                    writer.write(0b1110, 4);
+                    writer.write(deltaOfDelta, 12);
+                } else if (fits(deltaOfDelta, 32)) {
+                    writer.write(0b11110, 5);
+                    writer.write(deltaOfDelta, 32);
+                } else {
+                    writer.write(0b11111, 5);
+                    writer.write(deltaOfDelta, 64);
+                }
+                previousDelta[index] = delta;
+            }
+            previousTime[index] = value;
+        }
+
+        private void writeFloat(int index, BitWriter writer, float value) {
+            int bits = Float.floatToRawIntBits(value);
+            if (count == 0) {
+                writer.write(bits, 32);
+            } else {
+                int xor = bits ^ previousFloat[index];
+                if (xor == 0) {
+                    writer.writeBit(false);
+                } else {
+                    writer.writeBit(true);
+                    int leading = Integer.numberOfLeadingZeros(xor);
+                    int trailing = Integer.numberOfTrailingZeros(xor);
+                    if (previousLeading[index] >= 0 && leading >= previousLeading[index]
+                            && trailing >= previousTrailing[index]) {
+                        // Meaningful bits fit in the previous window
+                        writer.writeBit(false);
+                        writer.write(xor >>> previousTrailing[index],
+                                32 - previousLeading[index] - previousTrailing[index]);
+                    } else {
+                        int meaningful = 32 - leading - trailing;
+                        writer.writeBit(true);
+                        writer.write(leading, 5);
+                        writer.write(meaningful - 1, 5);
+                        writer.write(xor >>> trailing, meaningful);
+                        previousLeading[index] = leading;
+                        previousTrailing[index] = trailing;
+                    }
+                }
+            }
+            previousFloat[index] = bits;
+        }
+
+        private void writeInt(int index, BitWriter writer, int value) {
+            long delta = value - previousInt[index];
+            writer.writeVarint((delta << 1) ^ (delta >> 63));
+            previousInt[index] = value;
+        }
+
+        private static boolean fits(long value, int bits) {
+            long limit = 1L << (bits - 1);
+            return value >= -limit && value < limit;
+        }
+    }
+
+    /**
+     * Append-only bit stream, most significant bit first
+     */
+    private static final class BitWriter {
+        private byte[] buffer = new byte[32];
+        private long position;
+
+        void writeBit(boolean bit) {
+            write(bit ? 1 : 0, 1);
+        }
+
+        void write(long value, int bits) {
+            while (bits > 0) {
+                int index = (int) (position >>> 3);
+                if (index == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                int free = 8 - (int) (position & 7);
+                int n = Math.min(free, bits);
+                int chunk = (int) (value >>> (bits - n)) & ((1 << n) - 1);
+                buffer[index] |= (byte) (chunk << (free - n));
+                position += n;
+                bits -= n;
+            }
+        }
+
+        void writeVarint(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((value & 0x7F) | 0x80, 8);
+                value >>>= 7;
+            }
+            write(value, 8);
+        }
+
+        int sizeInBytes() {
+            return (int) ((position + 7) >>> 3);
+        }
+
+        void copyTo(byte[] target, int offset) {
+            System.arraycopy(buffer, 0, target, offset, sizeInBytes());
+        }
+    }
+
+    private static final class BitReader {
+        private final ByteBuffer buffer;
+        private long position;
+
+        BitReader(ByteBuffer buffer, int offset) {
+            this.buffer = buffer;
+            this.position = (long) offset << 3;
+        }
+
+        boolean readBit() {
+            return read(1) != 0;
+        }
+
+        long read(int bits) {
+            long value = 0;
+            while (bits > 0) {
+                int available = 8 - (int) (position & 7);
+                int n = Math.min(available, bits);
+                int b = buffer.get((int) (position >>> 3)) & 0xFF;
+                value = (value << n) | ((b >>> (available - n)) & ((1 << n) - 1));
+                position += n;
+                bits -= n;
+            }
+            return value;
+        }
+
+        long readSigned(int bits) {
+            return read(bits) << (64 - bits) >> (64 - bits);
+        }
+
+        long readVarint() {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                long b = read(8);
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.backend.service;
+
+import java.util.Arrays;
+
+/**
+ * Server-side downsampling of a sensor history slice for charting.
+ *
+ * A step keeps the minimum and maximum reading of each time bucket, so spikes survive;
+ * a limit then reduces the remaining points with Largest-Triangle-Three-Buckets (LTTB),
+ * which keeps the visual shape of the series. Both return indexes into the slice, in order.
+ */
+final class SensorHistoryDownsampler {
+
+    private SensorHistoryDownsampler() {
+    }
+
+    /**
+     * @param stepMillis bucket width for min/max downsampling, or 0 to skip it
+     * @param limit      maximum number of points to return, or 0 for no limit
+     */
+    static int[] downsample(long[] times, double[] values, long stepMillis, int limit) {
+        int[] points = new int[times.length];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = i;
+        }
+        if (stepMillis > 0) {
+            points = minMaxPerBucket(times, values, points, stepMillis);
+        }
+        if (limit > 0 && points.length > limit) {
+            points = largestTriangleThreeBuckets(times, values, points, limit);
+        }
+        return points;
+    }
+
+    static int[] minMaxPerBucket(long[] times, double[] values, int[] points, long stepMillis) {
+        int[] selected = new int[points.length];
+        int count = 0;
+        int i = 0;
+        while (i < points.length) {
+            long bucket = Math.floorDiv(times[points[i]], stepMillis);
+            int min = points[i];
+            int max = points[i];
+            for (i++; i < points.length && Math.floorDiv(times[points[i]], stepMillis) == bucket; i++) {
+                int point = points[i];
+                if (values[point] < values[min]) {
+                    min = point;
+                }
+                if (values[point] > values[max]) {
+                    max = point;
+                }
+            }
+            selected[count++] = Math.min(min, max);
+            if (min != max) {
+                selected[count++] = Math.max(min, max);
+            }
+        }
+        return Arrays.copyOf(selected, count);
+    }
+
+    static int[] largestTriangleThreeBuckets(long[] times, double[] values, int[] points, int threshold) {
+        int n = points.length;
+        if (threshold >= n) {
+            return points;
+        }
+        if (threshold == 1) {
+            return new int[] { points[n - 1] };
+        }
+        if (threshold == 2) {
+            return new int[] { points[0], points[n - 1] };
+        }
+
+        int[] sampled = new int[threshold];
+        int count = 0;
+        long origin = times[points[0]];
+        double every = (double) (n - 2) / (threshold - 2);
+
+        int a = 0;
+        sampled[count++] = points[a];
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            // Average of the next bucket is the third vertex of the triangle
+            int avgStart = (int) Math.floor((bucket + 1) * every) + 1;
+            int avgEnd = Math.min((int) Math.floor((bucket + 2) * every) + 1, n);
+            double avgX = 0;
+            double avgY = 0;
+            for (int j = avgStart; j < avgEnd; j++) {
+                avgX += times[points[j]] - origin;
+                avgY += values[points[j]];
+            }
+            int avgCount = Math.max(1, avgEnd - avgStart);
+            avgX /= avgCount;
+            avgY /= avgCount;
+
+            int rangeStart = (int) Math.floor(bucket * every) + 1;
+            int rangeEnd = (int) Math.floor((bucket + 1) * every) + 1;
+            double ax = times[points[a]] - origin;
+            double ay = values[points[a]];
+
+            double maxArea = -1;
+            int next = rangeStart;
+            for (int j = rangeStart; j < rangeEnd; j++) {
+                double area = Math.abs((ax - avgX) * (values[points[j]] - ay)
+                        - (ax - (times[points[j]] - origin)) * (avgY - ay));
+                if (area > maxArea) {
+                    maxArea = area;
+                    next = j;
+                }
+            }
+            sampled[count++] = points[next];
+            a = next;
+        }
+        sampled[count++] = points[n - 1];
+        return Arrays.copyOf(sampled, count);
+    }
+}
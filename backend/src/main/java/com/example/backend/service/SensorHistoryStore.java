@@ -0,0 +1,274 @@
+package com.example.backend.service;
+
+import com.example.backend.model.SensorData;
+import com.example.backend.model.SensorMetric;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * History of a single device: the most recent readings in a SensorColumnStore, and older ones
+ * sealed into compressed SensorHistoryChunks.
+ *
+ * Every chunkSize appended readings the writer compresses them into a chunk while they are
+ * still in the column store, so older readings outlive the column store's capacity at a
+ * fraction of the memory. Chunks older than the retention, measured from the newest reading,
+ * are handed to the archive (the on-disk cold tier), if any, and dropped from memory. Sealed
+ * chunks are published as a copy-on-write array and read without locking; range queries decode
+ * only the chunks overlapping the range.
+ */
+class SensorHistoryStore {
+
+    private final SensorColumnStore recent;
+    private final int chunkSize;
+    private final long retentionMillis;
+    // Receives chunks past retention, or null to drop them
+    private final Consumer<SensorHistoryChunk> archive;
+
+    private volatile SensorHistoryChunk[] chunks = new SensorHistoryChunk[0];
+    // Sequence number of the first reading not sealed yet, only touched by the writer
+    private long sealedSeq;
+
+    SensorHistoryStore(String deviceId, int capacity, int chunkSize, long retentionMillis) {
+        this(deviceId, capacity, chunkSize, retentionMillis, null);
+    }
+
+    /**
+     * @param retentionMillis how long sealed chunks are kept in memory; with 0 and no archive
+     *                        only the recent readings are kept
+     * @param archive         receives chunks past retention, or null to drop them
+     */
+    SensorHistoryStore(String deviceId, int capacity, int chunkSize, long retentionMillis,
+                       Consumer<SensorHistoryChunk> archive) {
+        this.recent = new SensorColumnStore(deviceId, capacity);
+        // A chunk is sealed from readings still held by the column store
+        this.chunkSize = Math.min(Math.min(chunkSize, capacity), SensorHistoryChunk.MAX_COUNT);
+        this.retentionMillis = retentionMillis;
+        this.archive = archive;
+    }
+
+    /**
+     * Append a reading; only one thread may call this for a given store
+     */
+    void append(SensorData sensorData) {
+        recent.append(sensorData);
+        if ((retentionMillis > 0 || archive != null) && chunkSize > 0
+                && recent.appended() - sealedSeq >= chunkSize) {
+            seal();
+        }
+    }
+
+    /**
+     * The most recent readings, newest first, as held uncompressed
+     */
+    List<SensorData> snapshot() {
+        return recent.snapshot();
+    }
+
+    /**
+     * Receive times and values of one metric for the readings received within
+     * [fromMillis, toMillis], oldest first, across sealed chunks and recent readings
+     */
+    SensorColumnStore.Slice slice(long fromMillis, long toMillis, SensorMetric metric) {
+        SensorColumnStore.Slice recentSlice = recent.slice(fromMillis, toMillis, metric);
+        // Readings before the recent slice were sealed before the column store dropped them
+        long boundary = recentSlice.firstSeq();
+        SensorHistoryChunk[] sealed = chunks;
+
+        List<long[]> times = new ArrayList<>();
+        List<double[]> values = new ArrayList<>();
+        long firstSeq = -1;
+        long nextSeq = -1;
+        for (SensorHistoryChunk chunk : sealed) {
+            if (chunk.firstSeq() >= boundary || chunk.firstReceivedAt() > toMillis) {
+                break;
+            }
+            if (chunk.lastReceivedAt() < fromMillis) {
+                continue;
+            }
+            long[] chunkTimes = chunk.receivedAt();
+            int end = (int) Math.min(chunk.count(), boundary - chunk.firstSeq());
+            int first = lowerBound(chunkTimes, 0, end, fromMillis);
+            int last = upperBound(chunkTimes, first, end, toMillis);
+            if (first == last) {
+                continue;
+            }
+            if (firstSeq < 0) {
+                firstSeq = chunk.firstSeq() + first;
+            }
+            times.add(Arrays.copyOfRange(chunkTimes, first, last));
+            values.add(Arrays.copyOfRange(chunk.values(metric), first, last));
+            nextSeq = chunk.firstSeq() + last;
+        }
+
+        if (firstSeq < 0) {
+            return recentSlice;
+        }
+        if (nextSeq != boundary && recentSlice.size() > 0) {
+            // The column store was lapped before the chunk was sealed; keep the contiguous part
+            return recentSlice;
+        }
+        times.add(recentSlice.times());
+        values.add(recentSlice.values());
+        return new SensorColumnStore.Slice(firstSeq, concatTimes(times), concatValues(values));
+    }
+
+    /**
+     * Rebuild the readings with the given ascending sequence numbers, newest first.
+     * Readings no longer retained are skipped.
+     */
+    List<SensorData> readings(long[] seqs) {
+        SensorHistoryChunk[] sealed = chunks;
+        long sealedEnd = sealed.length > 0 ? sealed[sealed.length - 1].endSeq() : 0;
+        int split = 0;
+        while (split < seqs.length && seqs[split] < sealedEnd) {
+            split++;
+        }
+        List<SensorData> result = recent.readings(Arrays.copyOfRange(seqs, split, seqs.length));
+
+        // Rows the column store overwrote meanwhile have been sealed by now
+        int older = seqs.length - result.size();
+        sealed = chunks;
+        SensorHistoryChunk.Rows rows = null;
+        int chunkIndex = sealed.length - 1;
+        for (int i = older - 1; i >= 0; i--) {
+            while (chunkIndex >= 0 && sealed[chunkIndex].firstSeq() > seqs[i]) {
+                chunkIndex--;
+                rows = null;
+            }
+            if (chunkIndex < 0) {
+                break;
+            }
+            if (seqs[i] >= sealed[chunkIndex].endSeq()) {
+                continue;
+            }
+            if (rows == null) {
+                rows = sealed[chunkIndex].decode();
+            }
+            result.add(rows.reading((int) (seqs[i] - sealed[chunkIndex].firstSeq())));
+        }
+        return result;
+    }
+
+    /**
+     * Number of readings retained, sealed or recent
+     */
+    long size() {
+        SensorHistoryChunk[] sealed = chunks;
+        long end = recent.appended();
+        long oldest = end - recent.size();
+        if (sealed.length > 0) {
+            oldest = Math.min(oldest, sealed[0].firstSeq());
+        }
+        return end - oldest;
+    }
+
+    /**
+     * Memory taken by the sealed chunks' encoded data
+     */
+    long compressedBytes() {
+        long bytes = 0;
+        for (SensorHistoryChunk chunk : chunks) {
+            bytes += chunk.sizeInBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Receive time of the oldest reading held in memory, or Long.MAX_VALUE when empty
+     */
+    long oldestReceivedAt() {
+        SensorHistoryChunk[] sealed = chunks;
+        long oldest = recent.oldestReceivedAt();
+        return sealed.length > 0 ? Math.min(oldest, sealed[0].firstReceivedAt()) : oldest;
+    }
+
+    /**
+     * Seal the readings not in a chunk yet and hand every chunk to the archive, when the
+     * device is dropped from memory. Only the writer may call this.
+     */
+    void archiveAll() {
+        if (archive == null) {
+            return;
+        }
+        for (SensorHistoryChunk chunk : chunks) {
+            archive.accept(chunk);
+        }
+        long end = recent.appended();
+        long start = Math.max(sealedSeq, end - recent.size());
+        for (; start < end; start += SensorHistoryChunk.MAX_COUNT) {
+            archive.accept(recent.encode(start, (int) Math.min(end - start, SensorHistoryChunk.MAX_COUNT)));
+        }
+        sealedSeq = end;
+    }
+
+    String getDeviceId() {
+        return recent.getDeviceId();
+    }
+
+    private void seal() {
+        SensorHistoryChunk chunk = recent.encode(sealedSeq, chunkSize);
+        sealedSeq += chunkSize;
+
+        SensorHistoryChunk[] current = chunks;
+        int expired = 0;
+        long cutoff = chunk.lastReceivedAt() - retentionMillis;
+        while (expired < current.length && current[expired].lastReceivedAt() < cutoff) {
+            if (archive != null) {
+                archive.accept(current[expired]);
+            }
+            expired++;
+        }
+        SensorHistoryChunk[] next = Arrays.copyOfRange(current, expired, current.length + 1);
+        next[next.length - 1] = chunk;
+        chunks = next;
+    }
+
+    // First index in [low, high) at or after the given time
+    private static int lowerBound(long[] times, int low, int high, long millis) {
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] < millis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // First index in [low, high) after the given time
+    private static int upperBound(long[] times, int low, int high, long millis) {
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] <= millis) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static long[] concatTimes(List<long[]> parts) {
+        long[] result = new long[parts.stream().mapToInt(part -> part.length).sum()];
+        int offset = 0;
+        for (long[] part : parts) {
+            System.arraycopy(part, 0, result, offset, part.length);
+            offset += part.length;
+        }
+        return result;
+    }
+
+    private static double[] concatValues(List<double[]> parts) {
+        double[] result = new double[parts.stream().mapToInt(part -> part.length).sum()];
+        int offset = 0;
+        for (double[] part : parts) {
+            System.arraycopy(part, 0, result, offset, part.length);
+            offset += part.length;
+        }
+        return result;
+    }
+}
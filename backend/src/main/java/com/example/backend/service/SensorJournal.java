@@ -0,0 +1,446 @@
+package com.example.backend.service;
+
+import com.example.backend.model.SensorData;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Append-only journal of ingested sensor readings, used to rebuild in-memory state after a restart.
+ *
+ * Readings are written as fixed 128-byte records into pre-sized segment files mapped with a
+ * MappedByteBuffer, so an append is a plain memory copy with no system call on the MQTT thread.
+ * A background thread forces dirty pages to disk, rolls segments by age and deletes segments
+ * past retention. Segments also roll when full.
+ *
+ * Record layout (little-endian):
+ * <pre>
+ *   0  int    commit marker, written last
+ *   4  long   receivedAt (epoch millis)
+ *  12  long   device timestamp
+ *  20  float  temperature
+ *  24  float  humidity
+ *  28  int    airQualityRaw, co2, nh3, ch4, co (5 x 4 bytes)
+ *  48  byte   flags (bit 0 light, bit 1 motion)
+ *  49  byte   airQualityStatus length (0xFF for null), followed by its UTF-8 bytes
+ *   n  byte   deviceId length, followed by its UTF-8 bytes
+ * </pre>
+ * The status and device ID share the last 79 bytes; readings whose strings do not fit are not journaled.
+ * The first record slot of each segment holds the file header.
+ */
+@Slf4j
+@Service
+public class SensorJournal {
+
+    static final int RECORD_SIZE = 128;
+    private static final int SEGMENT_MAGIC = 0x414A4E4C; // "AJNL"
+    private static final int SEGMENT_VERSION = 2;
+    private static final int COMMITTED = 0x53454E31; // "SEN1"
+
+    private static final int OFFSET_RECEIVED_AT = 4;
+    private static final int OFFSET_TIMESTAMP = 12;
+    private static final int OFFSET_TEMPERATURE = 20;
+    private static final int OFFSET_HUMIDITY = 24;
+    private static final int OFFSET_AIR_QUALITY_RAW = 28;
+    private static final int OFFSET_CO2 = 32;
+    private static final int OFFSET_NH3 = 36;
+    private static final int OFFSET_CH4 = 40;
+    private static final int OFFSET_CO = 44;
+    private static final int OFFSET_FLAGS = 48;
+    private static final int OFFSET_STATUS = 49;
+    // Bytes left for the status and device ID after their two length bytes
+    private static final int MAX_STRING_BYTES = RECORD_SIZE - OFFSET_STATUS - 2;
+
+    private static final String SEGMENT_PREFIX = "sensors-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    // Records decoded per replay task
+    private static final int REPLAY_CHUNK_RECORDS = 16_384;
+
+    @Value("${sensor.journal.enabled:true}")
+    private boolean enabled;
+
+    @Value("${sensor.journal.dir:data/journal}")
+    private String directory;
+
+    @Value("${sensor.journal.segment-size:67108864}")
+    private int segmentSize;
+
+    @Value("${sensor.journal.roll-interval:3600000}")
+    private long rollIntervalMillis;
+
+    @Value("${sensor.journal.flush-interval:1000}")
+    private long flushIntervalMillis;
+
+    @Value("${sensor.journal.retention:604800000}")
+    private long retentionMillis;
+
+    // Encoded deviceIds of registered devices
+    private final ConcurrentHashMap<String, byte[]> deviceIdBytes = new ConcurrentHashMap<>();
+    private final Deque<Segment> retiring = new ArrayDeque<>();
+    private volatile Segment active;
+    private ScheduledExecutorService flusher;
+    private long nextSegmentNumber;
+
+    @Autowired
+    public SensorJournal(DeviceRegistry deviceRegistry) {
+        deviceRegistry.addEvictionListener(deviceIdBytes::remove);
+    }
+
+    /**
+     * Replay every journaled reading in ingest order, then start a fresh segment for new appends.
+     * Segments are decoded in parallel chunks while the consumer is fed sequentially.
+     *
+     * @return number of readings replayed
+     */
+    public synchronized long replay(Consumer<SensorData> consumer) {
+        if (!enabled) {
+            return 0;
+        }
+        long started = System.currentTimeMillis();
+        long replayed = 0;
+        try {
+            Path dir = Paths.get(directory);
+            Files.createDirectories(dir);
+            List<Path> segments = listSegments(dir);
+            if (!segments.isEmpty()) {
+                nextSegmentNumber = segmentNumber(segments.get(segments.size() - 1)) + 1;
+                replayed = replaySegments(segments, consumer);
+            }
+            openSegment();
+            startFlusher();
+        } catch (IOException e) {
+            log.error("Sensor journal unavailable, readings will not survive a restart: {}", e.getMessage(), e);
+            enabled = false;
+            return replayed;
+        }
+        log.info("Replayed {} journaled sensor readings in {} ms", replayed, System.currentTimeMillis() - started);
+        return replayed;
+    }
+
+    /**
+     * Append a reading. Safe to call from several ingest threads; never blocks on I/O.
+     */
+    public void append(SensorData sensorData) {
+        Segment segment = active;
+        if (segment == null) {
+            return;
+        }
+        byte[] deviceId = deviceIdBytes.get(sensorData.getDeviceId());
+        if (deviceId == null) {
+            deviceId = sensorData.getDeviceId().getBytes(StandardCharsets.UTF_8);
+            // Checked before caching so rejected IDs do not pile up in the cache
+            if (deviceId.length > MAX_STRING_BYTES) {
+                log.debug("Device ID too long to journal: {}", sensorData.getDeviceId());
+                return;
+            }
+            deviceIdBytes.put(sensorData.getDeviceId(), deviceId);
+        }
+        String status = sensorData.getAirQualityStatus();
+        byte[] statusBytes = status != null ? status.getBytes(StandardCharsets.UTF_8) : null;
+        if (statusBytes != null && statusBytes.length + deviceId.length > MAX_STRING_BYTES) {
+            log.warn("Air quality status too long to journal for device {}: {}", sensorData.getDeviceId(), status);
+            return;
+        }
+
+        int position;
+        while ((position = segment.reserve()) < 0) {
+            segment = roll(segment);
+            if (segment == null) {
+                return;
+            }
+        }
+        segment.write(position, sensorData, statusBytes, deviceId);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        synchronized (this) {
+            flushSegments();
+            active = null;
+        }
+    }
+
+    private long replaySegments(List<Path> segments, Consumer<SensorData> consumer) throws IOException {
+        List<MappedByteBuffer> buffers = new ArrayList<>();
+        List<int[]> chunks = new ArrayList<>();
+        for (Path path : segments) {
+            MappedByteBuffer buffer = mapForReplay(path);
+            if (buffer == null) {
+                continue;
+            }
+            int records = buffer.capacity() / RECORD_SIZE;
+            for (int from = 1; from < records; from += REPLAY_CHUNK_RECORDS) {
+                chunks.add(new int[] { buffers.size(), from, Math.min(records, from + REPLAY_CHUNK_RECORDS) });
+            }
+            buffers.add(buffer);
+        }
+
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        ExecutorService decoders = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "sensor-journal-replay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            // Keep a bounded window of chunks decoding ahead of the in-order consumer
+            Deque<CompletableFuture<List<SensorData>>> window = new ArrayDeque<>();
+            int next = 0;
+            long replayed = 0;
+            while (next < chunks.size() || !window.isEmpty()) {
+                while (next < chunks.size() && window.size() < parallelism * 2) {
+                    int[] chunk = chunks.get(next++);
+                    MappedByteBuffer buffer = buffers.get(chunk[0]);
+                    window.add(CompletableFuture.supplyAsync(() -> decode(buffer, chunk[1], chunk[2]), decoders));
+                }
+                for (SensorData sensorData : window.poll().join()) {
+                    consumer.accept(sensorData);
+                    replayed++;
+                }
+            }
+            return replayed;
+        } finally {
+            decoders.shutdown();
+        }
+    }
+
+    private MappedByteBuffer mapForReplay(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.capacity() < RECORD_SIZE || buffer.getInt(0) != SEGMENT_MAGIC
+                    || buffer.getInt(4) != SEGMENT_VERSION || buffer.getInt(8) != RECORD_SIZE) {
+                log.warn("Skipping unrecognized journal segment {}", path);
+                return null;
+            }
+            return buffer;
+        }
+    }
+
+    private static List<SensorData> decode(MappedByteBuffer buffer, int fromRecord, int toRecord) {
+        List<SensorData> readings = new ArrayList<>();
+        for (int record = fromRecord; record < toRecord; record++) {
+            int base = record * RECORD_SIZE;
+            // Slots that were reserved but never committed (crash mid-write) are skipped
+            if (buffer.getInt(base) != COMMITTED) {
+                continue;
+            }
+            byte flags = buffer.get(base + OFFSET_FLAGS);
+            readings.add(SensorData.builder()
+                    .receivedAt(SensorColumnStore.fromEpochMillis(buffer.getLong(base + OFFSET_RECEIVED_AT)))
+                    .timestamp(buffer.getLong(base + OFFSET_TIMESTAMP))
+                    .temperature(buffer.getFloat(base + OFFSET_TEMPERATURE))
+                    .humidity(buffer.getFloat(base + OFFSET_HUMIDITY))
+                    .airQualityRaw(buffer.getInt(base + OFFSET_AIR_QUALITY_RAW))
+                    .co2(buffer.getInt(base + OFFSET_CO2))
+                    .nh3(buffer.getInt(base + OFFSET_NH3))
+                    .ch4(buffer.getInt(base + OFFSET_CH4))
+                    .co(buffer.getInt(base + OFFSET_CO))
+                    .isLight((flags & 1) != 0)
+                    .motionDetected((flags & 2) != 0)
+                    .airQualityStatus(readString(buffer, base + OFFSET_STATUS))
+                    .deviceId(readString(buffer, deviceIdOffset(buffer, base)))
+                    .build());
+        }
+        return readings;
+    }
+
+    private static int deviceIdOffset(MappedByteBuffer buffer, int base) {
+        int statusLength = buffer.get(base + OFFSET_STATUS) & 0xFF;
+        return base + OFFSET_STATUS + 1 + (statusLength == 0xFF ? 0 : statusLength);
+    }
+
+    private static String readString(MappedByteBuffer buffer, int offset) {
+        int length = buffer.get(offset) & 0xFF;
+        if (length == 0xFF) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(offset + 1, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private synchronized Segment roll(Segment full) {
+        if (active != full) {
+            // Another writer already rolled this segment
+            return active;
+        }
+        try {
+            full.retiredAt = System.currentTimeMillis();
+            retiring.add(full);
+            openSegment();
+        } catch (IOException e) {
+            log.error("Failed to roll sensor journal segment, journaling stopped: {}", e.getMessage(), e);
+            active = null;
+        }
+        return active;
+    }
+
+    private void openSegment() throws IOException {
+        Path path = Paths.get(directory, String.format("%s%020d%s", SEGMENT_PREFIX, nextSegmentNumber++, SEGMENT_SUFFIX));
+        int size = Math.max(2, segmentSize / RECORD_SIZE) * RECORD_SIZE;
+        try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw")) {
+            file.setLength(size);
+            MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(0, SEGMENT_MAGIC);
+            buffer.putInt(4, SEGMENT_VERSION);
+            buffer.putInt(8, RECORD_SIZE);
+            buffer.putLong(12, System.currentTimeMillis());
+            active = new Segment(path, buffer);
+        }
+        log.debug("Opened sensor journal segment {}", path);
+    }
+
+    private void startFlusher() {
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sensor-journal-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::maintain, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void maintain() {
+        try {
+            Segment segment = active;
+            if (segment != null && segment.hasRecords()
+                    && System.currentTimeMillis() - segment.createdAt >= rollIntervalMillis) {
+                roll(segment);
+            }
+            flushSegments();
+            deleteExpiredSegments();
+        } catch (Exception e) {
+            log.error("Sensor journal maintenance failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private void flushSegments() {
+        // Retired segments are forced once more so appends that raced the roll reach disk
+        Segment retired;
+        while ((retired = retiring.peek()) != null) {
+            retired.buffer.force();
+            if (System.currentTimeMillis() - retired.retiredAt < flushIntervalMillis) {
+                break;
+            }
+            retiring.poll();
+        }
+        Segment segment = active;
+        if (segment != null) {
+            segment.buffer.force();
+        }
+    }
+
+    private void deleteExpiredSegments() throws IOException {
+        long cutoff = System.currentTimeMillis() - retentionMillis;
+        Segment segment = active;
+        for (Path path : listSegments(Paths.get(directory))) {
+            if ((segment == null || !path.equals(segment.path))
+                    && Files.getLastModifiedTime(path).toMillis() < cutoff) {
+                Files.deleteIfExists(path);
+                log.info("Deleted expired sensor journal segment {}", path);
+            }
+        }
+    }
+
+    private static List<Path> listSegments(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files
+                    .filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                            && path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long segmentNumber(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * One mapped segment file; writers reserve record slots with a single atomic increment
+     */
+    private static final class Segment {
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private final int records;
+        private final long createdAt = System.currentTimeMillis();
+        private final AtomicInteger nextRecord = new AtomicInteger(1);
+        private long retiredAt;
+
+        private Segment(Path path, MappedByteBuffer buffer) {
+            this.path = path;
+            this.buffer = buffer;
+            this.records = buffer.capacity() / RECORD_SIZE;
+        }
+
+        // Byte offset of a free record slot, or -1 when the segment is full
+        int reserve() {
+            int record = nextRecord.getAndIncrement();
+            if (record >= records) {
+                return -1;
+            }
+            return record * RECORD_SIZE;
+        }
+
+        boolean hasRecords() {
+            return nextRecord.get() > 1;
+        }
+
+        void write(int base, SensorData data, byte[] status, byte[] deviceId) {
+            buffer.putLong(base + OFFSET_RECEIVED_AT, SensorColumnStore.toEpochMillis(data.getReceivedAt()));
+            buffer.putLong(base + OFFSET_TIMESTAMP, data.getTimestamp());
+            buffer.putFloat(base + OFFSET_TEMPERATURE, data.getTemperature());
+            buffer.putFloat(base + OFFSET_HUMIDITY, data.getHumidity());
+            buffer.putInt(base + OFFSET_AIR_QUALITY_RAW, data.getAirQualityRaw());
+            buffer.putInt(base + OFFSET_CO2, data.getCo2());
+            buffer.putInt(base + OFFSET_NH3, data.getNh3());
+            buffer.putInt(base + OFFSET_CH4, data.getCh4());
+            buffer.putInt(base + OFFSET_CO, data.getCo());
+            buffer.put(base + OFFSET_FLAGS, (byte) ((data.isLight() ? 1 : 0) | (data.isMotionDetected() ? 2 : 0)));
+            int offset = base + OFFSET_STATUS;
+            if (status == null) {
+                buffer.put(offset++, (byte) 0xFF);
+            } else {
+                buffer.put(offset++, (byte) status.length);
+                buffer.put(offset, status);
+                offset += status.length;
+            }
+            buffer.put(offset, (byte) deviceId.length);
+            buffer.put(offset + 1, deviceId);
+            // The marker must not become visible before the record body
+            VarHandle.storeStoreFence();
+            buffer.putInt(base, COMMITTED);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters of the MQTT to WebSocket sensor path.
+ *
+ * Meters used per message are looked up once and cached, so the hot path only increments
+ * and records. Per-device tags can be switched off with sensor.metrics.device-tags for
+ * large fleets; device meters are then not registered and timers are recorded untagged.
+ */
+@Component
+public class SensorMetrics {
+
+    private static final Duration MIN_EXPECTED_LATENCY = Duration.ofNanos(50_000);
+    private static final Duration MAX_EXPECTED_LATENCY = Duration.ofSeconds(10);
+
+    private final MeterRegistry registry;
+
+    @Value("${sensor.metrics.device-tags:true}")
+    private boolean deviceTags;
+
+    private final ConcurrentHashMap<String, TopicMeters> topicMeters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Timer> broadcastTimers = new ConcurrentHashMap<>();
+    // Meters registered per device, removed again when the device is evicted
+    private final ConcurrentHashMap<String, List<Meter>> deviceMeters = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SensorMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Counters and timers of an inbound MQTT topic
+     */
+    public TopicMeters topic(String topic) {
+        return topicMeters.computeIfAbsent(topic != null ? topic : "unknown", this::createTopicMeters);
+    }
+
+    /**
+     * Timer of STOMP sends to a device destination ("device" scope) or the fleet-wide one
+     */
+    public Timer broadcastTimer(String scope, String deviceId) {
+        String device = deviceTags && deviceId != null ? deviceId : "";
+        return broadcastTimers.computeIfAbsent(scope + '|' + device, key -> latencyTimer(
+                Timer.builder("auralink.websocket.broadcast")
+                        .description("Time to hand a reading to the STOMP broker")
+                        .tags(deviceTags(device).and("scope", scope))));
+    }
+
+    /**
+     * Number of readings retained in the history of a device
+     */
+    public void registerHistory(String deviceId, SensorHistoryStore store) {
+        if (!deviceTags) {
+            return;
+        }
+        Gauge gauge = Gauge.builder("auralink.sensor.history.size", store, SensorHistoryStore::size)
+                .description("Readings retained in the device history")
+                .tag("device", deviceId)
+                .register(registry);
+        Gauge compressed = Gauge.builder("auralink.sensor.history.compressed", store, SensorHistoryStore::compressedBytes)
+                .description("Bytes of compressed older history of the device")
+                .baseUnit("bytes")
+                .tag("device", deviceId)
+                .register(registry);
+        deviceMeters.computeIfAbsent(deviceId, id -> new CopyOnWriteArrayList<>()).addAll(List.of(gauge, compressed));
+    }
+
+    /**
+     * Remove every meter tagged with the device
+     */
+    public void removeDevice(String deviceId) {
+        List<Meter> meters = deviceMeters.remove(deviceId);
+        if (meters != null) {
+            meters.forEach(registry::remove);
+        }
+        broadcastTimers.entrySet().removeIf(entry -> {
+            boolean deviceTimer = entry.getKey().endsWith('|' + deviceId);
+            if (deviceTimer) {
+                registry.remove(entry.getValue());
+            }
+            return deviceTimer;
+        });
+    }
+
+    private Tags deviceTags(String device) {
+        return device.isEmpty() ? Tags.empty() : Tags.of("device", device);
+    }
+
+    private TopicMeters createTopicMeters(String topic) {
+        return new TopicMeters(
+                Counter.builder("auralink.mqtt.messages")
+                        .description("MQTT messages received")
+                        .tag("topic", topic)
+                        .register(registry),
+                Counter.builder("auralink.mqtt.parse.failures")
+                        .description("MQTT payloads that could not be decoded")
+                        .tag("topic", topic)
+                        .register(registry),
+                latencyTimer(Timer.builder("auralink.mqtt.handler")
+                        .description("Time spent handling an MQTT message on its ingest lane")
+                        .tag("topic", topic)),
+                latencyTimer(Timer.builder("auralink.mqtt.ingest.latency")
+                        .description("Time from MQTT arrival to the end of handling, including lane queueing")
+                        .tag("topic", topic)));
+    }
+
+    private Timer latencyTimer(Timer.Builder builder) {
+        return builder
+                .publishPercentileHistogram()
+                .minimumExpectedValue(MIN_EXPECTED_LATENCY)
+                .maximumExpectedValue(MAX_EXPECTED_LATENCY)
+                .register(registry);
+    }
+
+    public record TopicMeters(Counter messages, Counter parseFailures, Timer handler, Timer ingestLatency) {
+
+        /**
+         * Record handling time from a System.nanoTime() start and end-to-end latency from
+         * the message creation timestamp (epoch millis, may be null)
+         */
+        public void recordHandled(long startedNanos, Long arrivedAtMillis) {
+            handler.record(System.nanoTime() - startedNanos, TimeUnit.NANOSECONDS);
+            if (arrivedAtMillis != null) {
+                ingestLatency.record(Math.max(0, System.currentTimeMillis() - arrivedAtMillis), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.backend.service;
+
+import com.example.backend.model.MetricQuantiles;
+import com.example.backend.model.SensorData;
+import com.example.backend.model.SensorMetric;
+import com.example.backend.model.SensorQuantiles;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Percentiles of selected metrics per device and fleet-wide over sliding windows.
+ *
+ * Every device keeps a ring of time buckets holding one QuantileSketch per metric, updated on
+ * ingest. A window query merges the device's buckets in the window; a fleet query merges those
+ * of every device. Bucket slots are reused as the ring wraps, so steady-state ingest does not
+ * allocate.
+ */
+@Service
+public class SensorQuantileService {
+
+    @Value("${sensor.quantiles.bucket:60000}")
+    private long bucketMillis;
+
+    // Buckets kept per device; the longest window is bucket * buckets
+    @Value("${sensor.quantiles.buckets:60}")
+    private int bucketCount;
+
+    private SensorMetric[] metrics = {SensorMetric.TEMPERATURE, SensorMetric.HUMIDITY, SensorMetric.CO2};
+
+    private final ConcurrentHashMap<String, SketchRing> sketches = new ConcurrentHashMap<>();
+
+    @Autowired
+    public SensorQuantileService(DeviceRegistry deviceRegistry) {
+        deviceRegistry.addEvictionListener(sketches::remove);
+    }
+
+    @Value("${sensor.quantiles.metrics:temperature,humidity,co2}")
+    void setMetrics(String names) {
+        metrics = Arrays.stream(names.split(","))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .map(SensorMetric::fromName)
+                .distinct()
+                .toArray(SensorMetric[]::new);
+    }
+
+    /**
+     * Add a reading to the sketches of its device's time bucket
+     */
+    public void record(SensorData sensorData) {
+        if (sensorData.getReceivedAt() == null) {
+            return;
+        }
+        long localMillis = RollupSeries.toLocalMillis(sensorData.getReceivedAt());
+        SketchRing ring = sketches.get(sensorData.getDeviceId());
+        if (ring == null) {
+            ring = sketches.computeIfAbsent(sensorData.getDeviceId(),
+                    id -> new SketchRing(bucketCount, metrics.length, bucketMillis));
+        }
+        ring.add(Math.floorDiv(localMillis, bucketMillis) * bucketMillis, metrics, sensorData);
+    }
+
+    /**
+     * Quantiles of a device over the last window, or null if the device has no readings in it
+     */
+    public SensorQuantiles getQuantiles(String deviceId, Duration window, double[] quantiles) {
+        SketchRing ring = sketches.get(deviceId);
+        if (ring == null) {
+            return null;
+        }
+        long[] range = windowRange(window);
+        QuantileSketch[] merged = newSketches();
+        if (!ring.mergeInto(range[0], range[1], merged)) {
+            return null;
+        }
+        return toQuantiles(deviceId, range, 1, merged, quantiles);
+    }
+
+    /**
+     * Quantiles over the last window of all devices merged, or null if no device has readings in it
+     */
+    public SensorQuantiles getFleetQuantiles(Duration window, double[] quantiles) {
+        long[] range = windowRange(window);
+        QuantileSketch[] merged = newSketches();
+        int devices = 0;
+        for (SketchRing ring : sketches.values()) {
+            if (ring.mergeInto(range[0], range[1], merged)) {
+                devices++;
+            }
+        }
+        return devices > 0 ? toQuantiles(null, range, devices, merged, quantiles) : null;
+    }
+
+    // [first bucket start, last bucket start] of the window ending now, capped at the retention
+    private long[] windowRange(Duration window) {
+        long now = RollupSeries.toLocalMillis(LocalDateTime.now());
+        long last = Math.floorDiv(now, bucketMillis) * bucketMillis;
+        long buckets = Math.min(bucketCount, Math.max(1, Math.ceilDiv(window.toMillis(), bucketMillis)));
+        return new long[] {last - (buckets - 1) * bucketMillis, last};
+    }
+
+    private QuantileSketch[] newSketches() {
+        QuantileSketch[] result = new QuantileSketch[metrics.length];
+        for (int m = 0; m < result.length; m++) {
+            result[m] = new QuantileSketch();
+        }
+        return result;
+    }
+
+    private SensorQuantiles toQuantiles(String deviceId, long[] range, int devices,
+                                        QuantileSketch[] merged, double[] quantiles) {
+        Map<String, MetricQuantiles> result = new LinkedHashMap<>();
+        for (int m = 0; m < metrics.length; m++) {
+            QuantileSketch sketch = merged[m];
+            Map<String, Double> values = new LinkedHashMap<>();
+            for (double q : quantiles) {
+                values.put(label(q), sketch.quantile(q));
+            }
+            result.put(metrics[m].getFieldName(), MetricQuantiles.builder()
+                    .count(sketch.getCount())
+                    .min(sketch.getMin())
+                    .max(sketch.getMax())
+                    .quantiles(values)
+                    .build());
+        }
+        return SensorQuantiles.builder()
+                .deviceId(deviceId)
+                .from(RollupSeries.fromLocalMillis(range[0]))
+                .to(RollupSeries.fromLocalMillis(range[1] + bucketMillis))
+                .devices(devices)
+                .metrics(result)
+                .build();
+    }
+
+    // 0.5 -> p50, 0.999 -> p99.9
+    private static String label(double quantile) {
+        return "p" + BigDecimal.valueOf(quantile * 100).stripTrailingZeros().toPlainString();
+    }
+
+    /**
+     * Fixed ring of time buckets of one device; slot = bucket number modulo the ring size
+     */
+    private static final class SketchRing {
+        private final long bucketMillis;
+        private final long[] starts;
+        private final QuantileSketch[][] buckets;
+
+        SketchRing(int capacity, int metricCount, long bucketMillis) {
+            this.bucketMillis = bucketMillis;
+            this.starts = new long[capacity];
+            Arrays.fill(starts, Long.MIN_VALUE);
+            this.buckets = new QuantileSketch[capacity][metricCount];
+            for (QuantileSketch[] bucket : buckets) {
+                for (int m = 0; m < metricCount; m++) {
+                    bucket[m] = new QuantileSketch();
+                }
+            }
+        }
+
+        synchronized void add(long bucketStart, SensorMetric[] metrics, SensorData data) {
+            int slot = (int) Math.floorMod(Math.floorDiv(bucketStart, bucketMillis), (long) starts.length);
+            if (starts[slot] != bucketStart) {
+                if (starts[slot] > bucketStart) {
+                    // Older than what the ring still holds for this slot
+                    return;
+                }
+                starts[slot] = bucketStart;
+                for (QuantileSketch sketch : buckets[slot]) {
+                    sketch.clear();
+                }
+            }
+            QuantileSketch[] bucket = buckets[slot];
+            for (int m = 0; m < metrics.length; m++) {
+                bucket[m].add(metrics[m].valueOf(data));
+            }
+        }
+
+        synchronized boolean mergeInto(long fromStart, long toStart, QuantileSketch[] target) {
+            boolean merged = false;
+            for (int slot = 0; slot < starts.length; slot++) {
+                if (starts[slot] >= fromStart && starts[slot] <= toStart) {
+                    for (int m = 0; m < target.length; m++) {
+                        target[m].merge(buckets[slot][m]);
+                    }
+                    merged = true;
+                }
+            }
+            return merged;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.backend.service;
+
+import com.example.backend.model.RollupResolution;
+import com.example.backend.model.SensorData;
+import com.example.backend.model.SensorRollup;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Incremental 1-minute, 1-hour and 1-day aggregates of every sensor metric, per device.
+ * Fed from the MQTT ingest path so long-range views never rescan raw readings.
+ */
+@Service
+public class SensorRollupService {
+
+    private static final RollupResolution[] RESOLUTIONS = RollupResolution.values();
+
+    @Value("${sensor.rollups.minute-retention:1440}")
+    private int minuteRetention;
+
+    @Value("${sensor.rollups.hour-retention:720}")
+    private int hourRetention;
+
+    @Value("${sensor.rollups.day-retention:365}")
+    private int dayRetention;
+
+    // Rollup series per device, indexed by RollupResolution ordinal
+    private final ConcurrentHashMap<String, RollupSeries[]> rollups = new ConcurrentHashMap<>();
+    
+    @Autowired
+    public SensorRollupService(DeviceRegistry deviceRegistry) {
+        deviceRegistry.addEvictionListener(rollups::remove);
+    }
+
+    /**
+     * Fold a reading into the open buckets of its device
+     */
+    public void record(SensorData sensorData) {
+        if (sensorData.getReceivedAt() == null) {
+            return;
+        }
+        long localMillis = RollupSeries.toLocalMillis(sensorData.getReceivedAt());
+        RollupSeries[] series = rollups.computeIfAbsent(sensorData.getDeviceId(), this::createSeries);
+        for (RollupSeries rollupSeries : series) {
+            rollupSeries.add(localMillis, sensorData);
+        }
+    }
+
+    /**
+     * Rollups of a device whose bucket starts within [from, to] (either bound optional), newest first
+     */
+    public List<SensorRollup> getRollups(String deviceId, RollupResolution resolution,
+                                         LocalDateTime from, LocalDateTime to) {
+        RollupSeries[] series = rollups.get(deviceId);
+        if (series == null) {
+            return new ArrayList<>();
+        }
+        return series[resolution.ordinal()].query(
+                from != null ? RollupSeries.toLocalMillis(from) : Long.MIN_VALUE,
+                to != null ? RollupSeries.toLocalMillis(to) : Long.MAX_VALUE);
+    }
+
+    /**
+     * All devices' buckets starting at the given time merged into one rollup,
+     * or null if no device reported in that bucket
+     */
+    public SensorRollup getFleetRollup(RollupResolution resolution, LocalDateTime bucketStart) {
+        long bucketLocal = resolution.bucketStart(RollupSeries.toLocalMillis(bucketStart));
+        RollupSeries.RollupAccumulator accumulator = new RollupSeries.RollupAccumulator();
+        for (RollupSeries[] series : rollups.values()) {
+            series[resolution.ordinal()].mergeInto(bucketLocal, accumulator);
+        }
+        return accumulator.getCount() > 0 ? accumulator.toRollup(resolution, bucketLocal) : null;
+    }
+
+    /**
+     * Every device's bucket starting at the given time, by device id; O(devices)
+     */
+    public Map<String, SensorRollup> getDeviceRollups(RollupResolution resolution, LocalDateTime bucketStart) {
+        long bucketLocal = resolution.bucketStart(RollupSeries.toLocalMillis(bucketStart));
+        Map<String, SensorRollup> result = new TreeMap<>();
+        rollups.forEach((deviceId, series) -> {
+            RollupSeries.RollupAccumulator accumulator = new RollupSeries.RollupAccumulator();
+            series[resolution.ordinal()].mergeInto(bucketLocal, accumulator);
+            if (accumulator.getCount() > 0) {
+                SensorRollup rollup = accumulator.toRollup(resolution, bucketLocal);
+                rollup.setDeviceId(deviceId);
+                result.put(deviceId, rollup);
+            }
+        });
+        return result;
+    }
+
+    private RollupSeries[] createSeries(String deviceId) {
+        RollupSeries[] series = new RollupSeries[RESOLUTIONS.length];
+        for (RollupResolution resolution : RESOLUTIONS) {
+            series[resolution.ordinal()] = new RollupSeries(deviceId, resolution, retentionFor(resolution));
+        }
+        return series;
+    }
+
+    private int retentionFor(RollupResolution resolution) {
+        int retention = switch (resolution) {
+            case MINUTE -> minuteRetention;
+            case HOUR -> hourRetention;
+            case DAY -> dayRetention;
+        };
+        return Math.max(1, retention);
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.backend.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary encoding for airQualityStatus values shared by all column stores.
+ * Devices only report a handful of distinct statuses, so each one is stored as a single byte.
+ * Once the dictionary is full, further statuses get {@link #OVERFLOW_CODE} and the caller has
+ * to keep the raw string itself.
+ */
+@Slf4j
+final class SensorStatusDictionary {
+
+    static final SensorStatusDictionary INSTANCE = new SensorStatusDictionary();
+
+    // Code 0 is reserved for a missing status, code 255 for a status not in the dictionary
+    private static final byte NULL_CODE = 0;
+    static final byte OVERFLOW_CODE = (byte) 0xFF;
+    private static final int MAX_CODES = 255;
+
+    private final ConcurrentHashMap<String, Byte> codes = new ConcurrentHashMap<>();
+    private volatile String[] values = new String[] { null };
+    // Set once the first status did not fit, so later ones skip the lock
+    private volatile boolean full;
+
+    private SensorStatusDictionary() {
+    }
+
+    byte encode(String status) {
+        if (status == null) {
+            return NULL_CODE;
+        }
+        Byte code = codes.get(status);
+        if (code != null) {
+            return code;
+        }
+        return full ? OVERFLOW_CODE : register(status);
+    }
+
+    /**
+     * Status of a code, or null for {@link #OVERFLOW_CODE}
+     */
+    String decode(byte code) {
+        String[] current = values;
+        int index = code & 0xFF;
+        return index < current.length ? current[index] : null;
+    }
+
+    private synchronized byte register(String status) {
+        Byte existing = codes.get(status);
+        if (existing != null) {
+            return existing;
+        }
+        if (values.length >= MAX_CODES) {
+            if (!full) {
+                full = true;
+                log.warn("Status dictionary is full ({} statuses), keeping further statuses as raw strings",
+                        MAX_CODES - 1);
+            }
+            return OVERFLOW_CODE;
+        }
+        byte code = (byte) values.length;
+        String[] grown = Arrays.copyOf(values, values.length + 1);
+        grown[code & 0xFF] = status;
+        values = grown;
+        codes.put(status, code);
+        return code;
+    }
+}
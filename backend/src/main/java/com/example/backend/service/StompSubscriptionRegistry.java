@@ -0,0 +1,110 @@
+package com.example.backend.service;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Live count of STOMP subscriptions per destination, kept from session events so
+ * publishers can skip serializing messages nobody is subscribed to.
+ *
+ * Destinations with wildcards (e.g. /topic/sensors/**) are matched the same way the
+ * simple broker matches them.
+ */
+@Component
+public class StompSubscriptionRegistry {
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    // sessionId -> (subscriptionId -> destination)
+    private final ConcurrentHashMap<String, Map<String, String>> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Integer> destinationCounts = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Integer> patternCounts = new ConcurrentHashMap<>();
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        subscribe(accessor.getSessionId(), accessor.getSubscriptionId(), accessor.getDestination());
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        unsubscribe(accessor.getSessionId(), accessor.getSubscriptionId());
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        disconnect(event.getSessionId());
+    }
+
+    /**
+     * Whether at least one session would receive a message sent to the destination
+     */
+    public boolean hasSubscribers(String destination) {
+        if (destinationCounts.containsKey(destination)) {
+            return true;
+        }
+        for (String pattern : patternCounts.keySet()) {
+            if (pathMatcher.match(pattern, destination)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getSubscriptionCount() {
+        int total = 0;
+        for (Map<String, String> subscriptions : sessions.values()) {
+            total += subscriptions.size();
+        }
+        return total;
+    }
+
+    void subscribe(String sessionId, String subscriptionId, String destination) {
+        if (sessionId == null || subscriptionId == null || destination == null) {
+            return;
+        }
+        String previous = sessions.computeIfAbsent(sessionId, id -> new ConcurrentHashMap<>())
+                .put(subscriptionId, destination);
+        if (previous != null) {
+            release(previous);
+        }
+        countsFor(destination).merge(destination, 1, Integer::sum);
+    }
+
+    void unsubscribe(String sessionId, String subscriptionId) {
+        Map<String, String> subscriptions = sessionId != null ? sessions.get(sessionId) : null;
+        if (subscriptions == null || subscriptionId == null) {
+            return;
+        }
+        String destination = subscriptions.remove(subscriptionId);
+        if (destination != null) {
+            release(destination);
+        }
+    }
+
+    void disconnect(String sessionId) {
+        Map<String, String> subscriptions = sessionId != null ? sessions.remove(sessionId) : null;
+        if (subscriptions != null) {
+            subscriptions.values().forEach(this::release);
+        }
+    }
+
+    private void release(String destination) {
+        // Drop the entry at zero so hasSubscribers stays a single lookup
+        countsFor(destination).computeIfPresent(destination, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private ConcurrentHashMap<String, Integer> countsFor(String destination) {
+        return pathMatcher.isPattern(destination) ? patternCounts : destinationCounts;
+    }
+}
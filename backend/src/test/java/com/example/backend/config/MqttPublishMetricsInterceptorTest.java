@@ -0,0 +1,51 @@
+package com.example.backend.config;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.integration.mqtt.support.MqttHeaders;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MqttPublishMetricsInterceptorTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final MqttPublishMetricsInterceptor interceptor = new MqttPublishMetricsInterceptor(registry, "auralink/control");
+
+    @Test
+    void timesPublishesByTopicAndOutcome() {
+        Message<String> control = MessageBuilder.withPayload("on").build();
+        Message<String> alerts = MessageBuilder.withPayload("{}").setHeader(MqttHeaders.TOPIC, "auralink/alerts").build();
+
+        publish(control, true, null);
+        publish(control, true, null);
+        publish(control, false, new IOException("not connected"));
+        publish(alerts, true, null);
+
+        assertEquals(2, timer("auralink/control", "success").count());
+        assertEquals(1, timer("auralink/control", "failure").count());
+        assertEquals(1, timer("auralink/alerts", "success").count());
+        // Both outcomes of a topic are registered on its first publish
+        assertEquals(4, registry.find("auralink.mqtt.publish").timers().size());
+    }
+
+    @Test
+    void ignoresCompletionsWithoutAStartedSample() {
+        interceptor.afterSendCompletion(MessageBuilder.withPayload("on").build(), null, true, null);
+
+        assertEquals(0, registry.find("auralink.mqtt.publish").timers().size());
+    }
+
+    private void publish(Message<?> message, boolean sent, Exception failure) {
+        interceptor.preSend(message, null);
+        interceptor.afterSendCompletion(message, null, sent, failure);
+    }
+
+    private Timer timer(String topic, String outcome) {
+        return registry.get("auralink.mqtt.publish").tag("topic", topic).tag("outcome", outcome).timer();
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.backend.config;
+
+import com.example.backend.model.SensorData;
+import com.example.backend.service.SensorBinaryCodec;
+import com.example.backend.service.SensorDataDecoder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PartitionedIngestChannelTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final SensorDataDecoder decoder = new SensorDataDecoder(objectMapper);
+    private final PartitionedIngestChannel channel = new PartitionedIngestChannel(
+            4, 16, PartitionedIngestChannel.OverflowPolicy.BLOCK, decoder, objectMapper);
+
+    @Test
+    void keysSensorPayloadsByTheDeviceIdTheDecoderReads() throws Exception {
+        String[] payloads = {
+                "{\"deviceId\":\"lobby\",\"co2\":612}",
+                "{\"deviceId\":\"lo\\\"bby\",\"co2\":612}",
+                "{\"deviceId\":\"\\u006cobby\"}",
+                "{\"deviceId\":\"first\",\"co2\":612,\"deviceId\":\"second\"}",
+                "{\"meta\":{\"deviceId\":\"nested\"},\"deviceId\":\"outer\"}",
+                "{\"meta\":{\"deviceId\":\"nested\"},\"co2\":612}",
+                "{\"note\":\"\\\"deviceId\\\":\\\"fake\\\"\",\"deviceId\":\"real\"}",
+                "{\"device\":\"fallback\",\"co2\":612}",
+                "{\"deviceId\":42}",
+                "{\"deviceId\":null}",
+                "{ \"deviceId\"\n :\t\"spaced\" }",
+        };
+        for (String payload : payloads) {
+            byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+            SensorData decoded = decoder.decode(bytes);
+            String expected = decoded.getDeviceId() != null ? decoded.getDeviceId() : "auralink/sensors";
+            assertEquals(expected, channel.partitionKey(message("auralink/sensors", bytes)), payload);
+        }
+    }
+
+    @Test
+    void keysStatusAndBinaryMessagesLikeTheirHandlers() throws Exception {
+        String[][] statuses = {
+                {"{\"deviceId\":\"lobby\",\"status\":\"online\"}", "lobby"},
+                {"{\"device\":\"lab\",\"status\":\"offline\"}", "lab"},
+                {"{\"deviceId\":null,\"device\":\"hall\"}", "hall"},
+                {"{\"device\":\"a\",\"meta\":{\"deviceId\":\"x\"},\"deviceId\":\"b\",\"deviceId\":\"c\"}", "b"},
+                {"{\"status\":\"online\"}", "auralink/status"},
+        };
+        for (String[] status : statuses) {
+            byte[] bytes = status[0].getBytes(StandardCharsets.UTF_8);
+            assertEquals(status[1], channel.partitionKey(message("auralink/status", bytes)), status[0]);
+        }
+
+        SensorBinaryCodec codec = new SensorBinaryCodec();
+        byte[] frame = codec.encode(SensorData.builder().deviceId("binary-device").build());
+        assertEquals(codec.decode(frame).getDeviceId(), channel.partitionKey(message("auralink/sensors/bin", frame)));
+    }
+
+    @Test
+    void fallsBackToTheTopicForUndecodablePayloads() {
+        byte[] garbage = "not json {\"deviceId\":\"x\"}".getBytes(StandardCharsets.UTF_8);
+        assertEquals("auralink/sensors", channel.partitionKey(message("auralink/sensors", garbage)));
+    }
+
+    private static Message<byte[]> message(String topic, byte[] payload) {
+        return MessageBuilder.withPayload(payload).setHeader("mqtt_receivedTopic", topic).build();
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.backend.config;
+
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PooledJavaMailSenderTest {
+
+    @Test
+    void reusesOneConnectionAcrossSendsAndBatches() throws Exception {
+        Transport transport = transport();
+        TestSender sender = new TestSender(60_000, List.of(transport));
+
+        sender.send(message("a@example.com"));
+        sender.send(message("b@example.com"), message("c@example.com"), message("d@example.com"));
+        sender.send(message("e@example.com"));
+
+        assertEquals(1, sender.getOpenedConnections());
+        verify(transport, times(1)).connect(any(), any(int.class), any(), any());
+        verify(transport, times(5)).sendMessage(any(), any(Address[].class));
+        // Fresh connections are reused without a NOOP
+        verify(transport, never()).isConnected();
+
+        sender.destroy();
+        verify(transport).close();
+    }
+
+    @Test
+    void replacesConnectionsThatFailValidation() throws Exception {
+        Transport first = transport();
+        Transport second = transport();
+        TestSender sender = new TestSender(0, List.of(first, second));
+
+        sender.send(message("a@example.com"));
+        // The server dropped the idle session, so the NOOP check fails
+        when(first.isConnected()).thenReturn(false);
+        sender.send(message("b@example.com"));
+
+        assertEquals(2, sender.getOpenedConnections());
+        verify(first).close();
+        verify(second, times(1)).sendMessage(any(), any(Address[].class));
+    }
+
+    @Test
+    void reportsRejectedMessagesAndKeepsSendingTheRest() throws Exception {
+        Transport transport = transport();
+        TestSender sender = new TestSender(60_000, List.of(transport));
+        MimeMessage rejected = message("bad@example.com");
+        doThrow(new MessagingException("550 no such user")).when(transport).sendMessage(same(rejected), any(Address[].class));
+
+        MailSendException failure = assertThrows(MailSendException.class,
+                () -> sender.send(message("a@example.com"), rejected, message("b@example.com")));
+
+        assertEquals(1, failure.getFailedMessages().size());
+        assertSame(rejected, failure.getFailedMessages().keySet().iterator().next());
+        verify(transport, times(3)).sendMessage(any(), any(Address[].class));
+        assertEquals(1, sender.getOpenedConnections());
+    }
+
+    private static Transport transport() {
+        Transport transport = mock(Transport.class);
+        when(transport.isConnected()).thenReturn(true);
+        return transport;
+    }
+
+    private static MimeMessage message(String to) throws MessagingException {
+        MimeMessage message = new MimeMessage((Session) null);
+        message.setFrom(new InternetAddress("auralink@example.com"));
+        message.setRecipients(MimeMessage.RecipientType.TO, to);
+        message.setSubject("Pool test");
+        message.setText("Hello");
+        return message;
+    }
+
+    /**
+     * Hands out the given transports in order instead of opening real SMTP connections
+     */
+    private static final class TestSender extends PooledJavaMailSender {
+        private final Deque<Transport> transports;
+
+        TestSender(long validateAfterMillis, List<Transport> transports) {
+            super(2, validateAfterMillis, 60_000, 1000);
+            this.transports = new ArrayDeque<>(transports);
+        }
+
+        @Override
+        protected Transport getTransport(Session session) {
+            return transports.poll();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.backend.service;
+
+import com.example.backend.model.EmailMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class AlertDispatcherTest {
+
+    private static final long DIGEST_WINDOW_MILLIS = 300;
+
+    private final EmailService emailService = mock(EmailService.class);
+    private AlertDispatcher dispatcher;
+
+    private AlertDispatcher start(int recipientBurst) {
+        dispatcher = new AlertDispatcher(emailService);
+        ReflectionTestUtils.setField(dispatcher, "queueCapacity", 100);
+        ReflectionTestUtils.setField(dispatcher, "digestWindowMillis", DIGEST_WINDOW_MILLIS);
+        ReflectionTestUtils.setField(dispatcher, "recipientBurst", recipientBurst);
+        ReflectionTestUtils.setField(dispatcher, "recipientRatePerHour", 0.0);
+        dispatcher.start();
+        return dispatcher;
+    }
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        dispatcher.stop();
+    }
+
+    @Test
+    void coalescesAlertsWithinWindowIntoDigest() {
+        start(10);
+        dispatcher.dispatch("admin@example.com", "High CO2", "lobby", "CO2 reading 0");
+        verify(emailService, timeout(DIGEST_WINDOW_MILLIS)).sendSensorAlert(anyString(), anyString(), anyString(), any());
+        for (int i = 1; i < 5; i++) {
+            dispatcher.dispatch("admin@example.com", "High CO2", "lobby", "CO2 reading " + i);
+        }
+
+        // The first alert went out at once, the other four go as one digest when the window closes
+        verify(emailService, timeout(DIGEST_WINDOW_MILLIS * 5).times(2))
+                .sendSensorAlert(eq("admin@example.com"), anyString(), anyString(), any());
+        ArgumentCaptor<String> types = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<String> messages = ArgumentCaptor.forClass(String.class);
+        verify(emailService, times(2)).sendSensorAlert(anyString(), types.capture(), messages.capture(), any());
+        assertEquals(List.of("High CO2", "High CO2 (4 alerts)"), types.getAllValues());
+        assertTrue(messages.getAllValues().get(1).contains("CO2 reading 4"));
+        assertEquals(3L, dispatcher.getStats().get("coalesced"));
+    }
+
+    @Test
+    void rateLimitsEachRecipient() {
+        start(2);
+        for (int device = 0; device < 5; device++) {
+            dispatcher.dispatch("admin@example.com", "High CO2", "device-" + device, "CO2 high");
+        }
+        dispatcher.dispatch("ops@example.com", "High CO2", "device-0", "CO2 high");
+
+        verify(emailService, after(DIGEST_WINDOW_MILLIS).times(2)).sendSensorAlert(eq("admin@example.com"), anyString(), anyString(), any());
+        verify(emailService, times(1)).sendSensorAlert(eq("ops@example.com"), anyString(), anyString(), any());
+        assertEquals(3, dispatcher.getStats().get("pendingDigests"));
+    }
+
+    @Test
+    void countsOutcomesWhenDeliverySettles() {
+        ArgumentCaptor<Consumer<EmailMessage>> outcome = ArgumentCaptor.captor();
+        start(10);
+        dispatcher.dispatch("admin@example.com", "High CO2", "lobby", "CO2 high");
+        dispatcher.dispatch("admin@example.com", "High CO2", "lab", "CO2 high");
+        verify(emailService, timeout(DIGEST_WINDOW_MILLIS).times(2))
+                .sendSensorAlert(anyString(), anyString(), anyString(), outcome.capture());
+
+        // Queued in the outbox, nothing delivered yet
+        assertEquals(2L, dispatcher.getStats().get("queued"));
+        assertEquals(0L, dispatcher.getStats().get("sent"));
+
+        outcome.getAllValues().get(0).accept(EmailMessage.builder().status("SENT").build());
+        outcome.getAllValues().get(1).accept(EmailMessage.builder().status("FAILED").build());
+        assertEquals(1L, dispatcher.getStats().get("sent"));
+        assertEquals(1L, dispatcher.getStats().get("failed"));
+    }
+}
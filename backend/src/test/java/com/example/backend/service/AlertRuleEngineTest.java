@@ -0,0 +1,136 @@
+package com.example.backend.service;
+
+import com.example.backend.model.AlertRule;
+import com.example.backend.model.SensorAlert;
+import com.example.backend.model.SensorData;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class AlertRuleEngineTest {
+
+    private final AlertDispatcher alertDispatcher = mock(AlertDispatcher.class);
+    private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+    private final AlertRuleEngine engine = createEngine();
+
+    private AlertRuleEngine createEngine() {
+        AlertRuleEngine engine = new AlertRuleEngine(alertDispatcher, messagingTemplate,
+                mock(SensorDailySummaryService.class), new DeviceRegistry());
+        ReflectionTestUtils.setField(engine, "enabled", true);
+        ReflectionTestUtils.setField(engine, "configuredRules", "high-temperature:temperature>35,high-co2:co2>1000");
+        ReflectionTestUtils.setField(engine, "defaultRecipient", "admin@example.com");
+        ReflectionTestUtils.setField(engine, "defaultDebounce", 3);
+        ReflectionTestUtils.setField(engine, "defaultCooldownMillis", 60_000L);
+        ReflectionTestUtils.setField(engine, "defaultHysteresis", 0.02);
+        engine.loadConfiguredRules();
+        return engine;
+    }
+
+    @Test
+    void firesAfterDebounceAndResolvesPastClearThreshold() {
+        evaluate(36, 36, 20, 36, 36);
+        verify(alertDispatcher, times(0)).dispatch(anyString(), anyString(), anyString(), anyString());
+
+        evaluate(36);
+        verify(alertDispatcher).dispatch(eq("admin@example.com"), eq("High Temperature"), eq("lobby"), anyString());
+
+        // Between the clear threshold (34.3) and the threshold: still firing
+        evaluate(34.5, 34.5, 34.5, 34.5);
+        evaluate(30, 30, 30);
+
+        assertEquals(List.of("alert_fired", "alert_resolved"), publishedTypes());
+    }
+
+    @Test
+    void cooldownSuppressesRepeatedNotifications() {
+        evaluate(40, 40, 40, 20, 20, 20, 40, 40, 40, 20, 20, 20);
+
+        verify(alertDispatcher, times(1)).dispatch(anyString(), anyString(), anyString(), anyString());
+        // The suppressed firing gets no resolution either
+        assertEquals(List.of("alert_fired", "alert_resolved"), publishedTypes());
+    }
+
+    @Test
+    void replacingARuleKeepsStateOfTheOthers() {
+        evaluate(40, 40, 40);
+        engine.putRule(AlertRule.builder().id("high-co2").metric("co2").operator(">").threshold(800).debounce(1).build());
+
+        // high-temperature is still firing: no second notification, high-co2 fires at once
+        engine.evaluate(reading(40, 900));
+
+        ArgumentCaptor<String> types = ArgumentCaptor.forClass(String.class);
+        verify(alertDispatcher, times(2)).dispatch(anyString(), types.capture(), anyString(), anyString());
+        assertEquals(List.of("High Temperature", "High Co2"), types.getAllValues());
+    }
+
+    @Test
+    void rejectsInvalidRules() {
+        assertThrows(IllegalArgumentException.class, () -> engine.putRule(
+                AlertRule.builder().id("bad").metric("pressure").operator(">").threshold(1).build()));
+        assertThrows(IllegalArgumentException.class, () -> engine.putRule(
+                AlertRule.builder().id("bad").metric("co2").operator(">").threshold(1000).clearThreshold(1100.0).build()));
+        assertEquals(2, engine.getRules().size());
+    }
+
+    @Test
+    void evaluatingReadingsThatFireNothingDoesNotAllocate() {
+        SensorData[] readings = new SensorData[1000];
+        for (int d = 0; d < readings.length; d++) {
+            readings[d] = reading(22, 450);
+            readings[d].setDeviceId("device-" + d);
+        }
+        // Warm up so the per-device state exists and the loop is compiled
+        for (int round = 0; round < 200; round++) {
+            for (SensorData reading : readings) {
+                engine.evaluate(reading);
+            }
+        }
+
+        int rounds = 200;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long bytesBefore = threads.getCurrentThreadAllocatedBytes();
+        for (int round = 0; round < rounds; round++) {
+            for (SensorData reading : readings) {
+                engine.evaluate(reading);
+            }
+        }
+        double bytesPerReading = (double) (threads.getCurrentThreadAllocatedBytes() - bytesBefore) / (rounds * readings.length);
+
+        assertEquals(0, bytesPerReading, 0.5);
+    }
+
+    private void evaluate(double... temperatures) {
+        for (double temperature : temperatures) {
+            engine.evaluate(reading(temperature, 450));
+        }
+    }
+
+    private List<String> publishedTypes() {
+        ArgumentCaptor<Object> messages = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate, atLeastOnce()).convertAndSend(eq(AlertRuleEngine.STOMP_DESTINATION), messages.capture());
+        return messages.getAllValues().stream().map(message -> ((SensorAlert) message).getType()).toList();
+    }
+
+    private static SensorData reading(double temperature, int co2) {
+        return SensorData.builder()
+                .deviceId("lobby")
+                .temperature((float) temperature)
+                .humidity(45)
+                .co2(co2)
+                .airQualityStatus("Good")
+                .build();
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.backend.service;
+
+import com.example.backend.model.BulkEmailRecipient;
+import com.example.backend.model.BulkEmailRequest;
+import com.example.backend.model.BulkEmailResult;
+import com.example.backend.model.EmailMessage;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BulkEmailServiceTest {
+
+    private final JavaMailSender mailSender = mock(JavaMailSender.class);
+    private final EmailOutbox outbox = mock(EmailOutbox.class);
+    private final BulkEmailService bulkEmailService = createService();
+
+    private BulkEmailService createService() {
+        BulkEmailService service = new BulkEmailService(mailSender, outbox);
+        ReflectionTestUtils.setField(service, "fromEmail", "auralink@example.com");
+        ReflectionTestUtils.setField(service, "parallelism", 2);
+        ReflectionTestUtils.setField(service, "batchSize", 50);
+        ReflectionTestUtils.setField(service, "maxRecipients", 1000);
+        return service;
+    }
+
+    @Test
+    void rendersTemplatesPerRecipient() {
+        EmailTemplate template = EmailTemplate.compile("<p>Hi {{ name }}, {{device}} reads {{co2}} ppm{{missing}}.</p> {{open", true);
+        StringBuilder buffer = new StringBuilder();
+
+        assertEquals("<p>Hi Ann &amp; Bo, lobby reads 1200 ppm.</p> {{open",
+                template.render(Map.of("name", "Ann & Bo", "device", "lobby", "co2", "1200"), buffer));
+        // The same buffer is reused for the next recipient
+        assertEquals("<p>Hi Cy, lab reads  ppm.</p> {{open", template.render(Map.of("name", "Cy", "device", "lab"), buffer));
+        assertEquals("No placeholders", EmailTemplate.compile("No placeholders", false).render(null, buffer));
+    }
+
+    @Test
+    void streamsResultForEveryRecipientInBatches() throws Exception {
+        when(mailSender.createMimeMessage()).thenAnswer(invocation -> new MimeMessage((Session) null));
+        Map<String, String> subjects = new ConcurrentHashMap<>();
+        doAnswer(invocation -> {
+            Map<Object, Exception> failed = new HashMap<>();
+            for (Object argument : invocation.getArguments()) {
+                MimeMessage message = (MimeMessage) argument;
+                String to = ((InternetAddress) message.getAllRecipients()[0]).getAddress();
+                subjects.put(to, message.getSubject());
+                if (to.startsWith("reject")) {
+                    failed.put(message, new MessagingException("550 no such user"));
+                }
+            }
+            if (!failed.isEmpty()) {
+                throw new MailSendException(failed);
+            }
+            return null;
+        }).when(mailSender).send(any(MimeMessage[].class));
+
+        List<BulkEmailRecipient> recipients = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            String to = (i == 7 ? "reject" : "user") + i + "@example.com";
+            recipients.add(new BulkEmailRecipient(to, Map.of("name", "User " + i)));
+        }
+        recipients.add(new BulkEmailRecipient(null, Map.of()));
+        BulkEmailRequest request = BulkEmailRequest.builder()
+                .subject("Weekly report for {{name}}")
+                .body("Hello {{name}}")
+                .recipients(recipients)
+                .build();
+
+        List<BulkEmailResult> results = new ArrayList<>();
+        int sent = bulkEmailService.send(request, results::add);
+
+        assertEquals(119, sent);
+        assertEquals(121, results.size());
+        Set<Integer> indexes = new TreeSet<>();
+        results.forEach(result -> indexes.add(result.getIndex()));
+        assertEquals(121, indexes.size());
+        assertEquals(List.of(7, 120), results.stream().filter(result -> "FAILED".equals(result.getStatus()))
+                .map(BulkEmailResult::getIndex).sorted().toList());
+        assertEquals("Weekly report for User 42", subjects.get("user42@example.com"));
+        // 121 recipients in batches of 50, the last one without an address never reaches SMTP
+        verify(mailSender, times(3)).send(any(MimeMessage[].class));
+    }
+
+    @Test
+    void queuesBatchesThatGetNoConnectionThroughTheOutbox() throws Exception {
+        when(mailSender.createMimeMessage()).thenAnswer(invocation -> new MimeMessage((Session) null));
+        doThrow(new MailSendException("Timed out waiting for a free SMTP connection"))
+                .when(mailSender).send(any(MimeMessage[].class));
+        when(outbox.isEnabled()).thenReturn(true);
+        BulkEmailRequest request = BulkEmailRequest.builder()
+                .subject("Weekly report for {{name}}")
+                .body("Hello {{name}}")
+                .recipients(List.of(new BulkEmailRecipient("a@example.com", Map.of("name", "Ann")),
+                        new BulkEmailRecipient("b@example.com", Map.of("name", "Bo"))))
+                .build();
+
+        List<BulkEmailResult> results = new ArrayList<>();
+        int sent = bulkEmailService.send(request, results::add);
+
+        assertEquals(0, sent);
+        assertEquals(List.of("QUEUED", "QUEUED"), results.stream().map(BulkEmailResult::getStatus).toList());
+        ArgumentCaptor<EmailMessage> queued = ArgumentCaptor.forClass(EmailMessage.class);
+        verify(outbox, times(2)).enqueue(queued.capture());
+        assertEquals(List.of("Weekly report for Ann", "Weekly report for Bo"),
+                queued.getAllValues().stream().map(EmailMessage::getSubject).toList());
+        assertEquals(List.of("b@example.com"), queued.getAllValues().get(1).getTo());
+    }
+
+    @Test
+    void rejectsRequestsWithoutRecipients() {
+        BulkEmailRequest request = BulkEmailRequest.builder().subject("Hi").body("Hello").recipients(List.of()).build();
+        assertThrows(IllegalArgumentException.class, () -> bulkEmailService.validate(request));
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.backend.service;
+
+import com.example.backend.model.DeviceLiveness;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class DeviceLivenessTrackerTest {
+
+    private static final long TIMEOUT_MILLIS = 200;
+
+    private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+    private final DeviceRegistry deviceRegistry = new DeviceRegistry();
+    private final DeviceLivenessTracker tracker = createTracker();
+
+    private DeviceLivenessTracker createTracker() {
+        ReflectionTestUtils.setField(deviceRegistry, "maxDevices", 100);
+        ReflectionTestUtils.setField(deviceRegistry, "capacityPolicy", DeviceRegistry.CapacityPolicy.REJECT);
+        DeviceLivenessTracker tracker = new DeviceLivenessTracker(
+                messagingTemplate, Jackson2ObjectMapperBuilder.json().build(), deviceRegistry);
+        ReflectionTestUtils.setField(tracker, "timeoutMillis", TIMEOUT_MILLIS);
+        ReflectionTestUtils.setField(tracker, "tickMillis", 10L);
+        return tracker;
+    }
+
+    @Test
+    void goesOfflineAfterTimeoutAndBackOnlineOnHeartbeat() throws InterruptedException {
+        tracker.heartbeat("quiet");
+        tracker.heartbeat("chatty");
+
+        // chatty keeps sending heartbeats past the original deadline, quiet does not
+        long until = System.currentTimeMillis() + TIMEOUT_MILLIS * 2;
+        while (System.currentTimeMillis() < until) {
+            tracker.heartbeat("chatty");
+            tracker.tick();
+            Thread.sleep(10);
+        }
+
+        assertFalse(tracker.getDevice("quiet").isOnline());
+        assertTrue(tracker.getDevice("chatty").isOnline());
+
+        tracker.heartbeat("quiet");
+        assertTrue(tracker.getDevice("quiet").isOnline());
+        assertEquals(List.of("device_online", "device_online", "device_offline", "device_online"), publishedTypes());
+    }
+
+    @Test
+    void offlineStatusMessageTakesDeviceOfflineImmediately() throws Exception {
+        tracker.onStatusMessage("{\"status\":\"connected\",\"device\":\"ESP32_AuraLink\"}".getBytes(StandardCharsets.UTF_8));
+        assertTrue(tracker.getDevice("ESP32_AuraLink").isOnline());
+
+        tracker.onStatusMessage("{\"status\":\"offline\",\"device\":\"ESP32_AuraLink\"}".getBytes(StandardCharsets.UTF_8));
+        assertFalse(tracker.getDevice("ESP32_AuraLink").isOnline());
+    }
+
+    private List<String> publishedTypes() {
+        ArgumentCaptor<Object> messages = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate, atLeastOnce()).convertAndSend(eq("/topic/status"), messages.capture());
+        return messages.getAllValues().stream().map(message -> ((DeviceLiveness) message).getType()).toList();
+    }
+}
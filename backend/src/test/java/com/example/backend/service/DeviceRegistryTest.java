@@ -0,0 +1,84 @@
+package com.example.backend.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeviceRegistryTest {
+
+    private final List<String> evicted = new ArrayList<>();
+
+    private DeviceRegistry registry(int maxDevices, DeviceRegistry.CapacityPolicy policy, long idleTtlMillis) {
+        DeviceRegistry registry = new DeviceRegistry();
+        ReflectionTestUtils.setField(registry, "maxDevices", maxDevices);
+        ReflectionTestUtils.setField(registry, "capacityPolicy", policy);
+        ReflectionTestUtils.setField(registry, "idleTtlMillis", idleTtlMillis);
+        registry.addEvictionListener(evicted::add);
+        return registry;
+    }
+
+    @Test
+    void evictsLeastRecentlySeenDeviceAtCapacity() {
+        DeviceRegistry registry = registry(2, DeviceRegistry.CapacityPolicy.EVICT_OLDEST, 0);
+        registry.touch("a", 1000);
+        registry.touch("b", 2000);
+        registry.touch("a", 3000);
+
+        assertTrue(registry.touch("c", 4000));
+
+        assertEquals(List.of("b"), evicted);
+        assertTrue(registry.isRegistered("a"));
+        assertFalse(registry.isRegistered("b"));
+        assertEquals(2, registry.getDeviceCount());
+    }
+
+    @Test
+    void rejectsNewDevicesAtCapacity() {
+        DeviceRegistry registry = registry(1, DeviceRegistry.CapacityPolicy.REJECT, 0);
+        registry.touch("a", 1000);
+
+        assertFalse(registry.touch("b", 2000));
+        assertFalse(registry.touch(null, 2000));
+        assertTrue(registry.touch("a", 3000));
+        assertTrue(evicted.isEmpty());
+    }
+
+    @Test
+    void evictsIdleDevicesAndReadmitsThem() {
+        DeviceRegistry registry = registry(10, DeviceRegistry.CapacityPolicy.EVICT_OLDEST, 60_000);
+        long now = System.currentTimeMillis();
+        registry.touch("idle", now - 120_000);
+        registry.touch("active", now);
+
+        registry.evictIdleDevices();
+
+        assertEquals(List.of("idle"), evicted);
+        assertTrue(registry.touch("idle", now));
+        assertTrue(registry.isRegistered("idle"));
+    }
+
+    @Test
+    void runsListenersThroughTheEvictionExecutorUnlessReadmitted() {
+        DeviceRegistry registry = registry(10, DeviceRegistry.CapacityPolicy.EVICT_OLDEST, 60_000);
+        List<Runnable> deferred = new ArrayList<>();
+        registry.setEvictionExecutor((deviceId, task) -> deferred.add(task));
+        long now = System.currentTimeMillis();
+        registry.touch("gone", now - 120_000);
+        registry.touch("back", now - 120_000);
+
+        registry.evictIdleDevices();
+        assertTrue(evicted.isEmpty());
+        // A reading on the owning lane re-admits one of them before the listeners run there
+        registry.touch("back", now);
+        deferred.forEach(Runnable::run);
+
+        assertEquals(List.of("gone"), evicted);
+        assertTrue(registry.isRegistered("back"));
+    }
+}
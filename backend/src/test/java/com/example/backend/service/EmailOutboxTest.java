@@ -0,0 +1,173 @@
+package com.example.backend.service;
+
+import com.example.backend.model.EmailMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EmailOutboxTest {
+
+    @TempDir
+    Path directory;
+
+    private final JavaMailSender mailSender = mock(JavaMailSender.class);
+    private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+    private EmailOutbox outbox;
+
+    @AfterEach
+    void stop() {
+        if (outbox != null) {
+            outbox.stop();
+        }
+    }
+
+    @Test
+    void retriesTransientFailuresWithBackoffUntilSent() throws Exception {
+        when(mailSender.createMimeMessage()).thenAnswer(invocation -> new MimeMessage((Session) null));
+        // The first attempt waits until the returned message has been checked, as delivery updates it in place
+        CountDownLatch checked = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            checked.await();
+            throw new MailSendException("421 try again later");
+        })
+                .doThrow(new MailSendException("421 try again later"))
+                .doNothing()
+                .when(mailSender).send(any(MimeMessage[].class));
+        outbox = open();
+
+        EmailMessage message = outbox.enqueue(message("ops@example.com"));
+        assertEquals("PENDING", message.getStatus());
+        checked.countDown();
+
+        verify(mailSender, timeout(2000).times(3)).send(any(MimeMessage[].class));
+        verify(messagingTemplate, timeout(2000)).convertAndSend(eq(EmailOutbox.STOMP_DESTINATION),
+                argThat((EmailMessage sent) -> "SENT".equals(sent.getStatus())));
+        assertEquals(3, message.getAttempts());
+        assertFalse(Files.exists(directory.resolve(message.getId() + ".json")));
+    }
+
+    @Test
+    void deadLettersAfterMaxAttempts() throws Exception {
+        when(mailSender.createMimeMessage()).thenAnswer(invocation -> new MimeMessage((Session) null));
+        doThrow(new MailSendException("550 mailbox unavailable")).when(mailSender).send(any(MimeMessage[].class));
+        outbox = open();
+
+        List<EmailMessage> outcomes = new CopyOnWriteArrayList<>();
+        EmailMessage message = outbox.enqueue(message("nobody@example.com"), outcomes::add);
+
+        verify(messagingTemplate, timeout(2000)).convertAndSend(eq(EmailOutbox.STOMP_DESTINATION),
+                argThat((EmailMessage failed) -> "FAILED".equals(failed.getStatus())));
+        // Only the final outcome is reported, not the retries before it
+        assertEquals(List.of("FAILED"), outcomes.stream().map(EmailMessage::getStatus).toList());
+        verify(mailSender, times(3)).send(any(MimeMessage[].class));
+        assertTrue(Files.exists(directory.resolve("dead").resolve(message.getId() + ".json")));
+        assertEquals(0, outbox.pending());
+    }
+
+    @Test
+    void deadLettersPermanentRejectionsWithoutRetrying() throws Exception {
+        when(mailSender.createMimeMessage()).thenAnswer(invocation -> new MimeMessage((Session) null));
+        doAnswer(invocation -> {
+            Address[] invalid = {new InternetAddress("nobody@example.com")};
+            SendFailedException rejected = new SendFailedException("Invalid Addresses",
+                    new MessagingException("550 5.1.1 User unknown"), new Address[0], new Address[0], invalid);
+            throw new MailSendException(Map.of(invocation.getArgument(0), rejected));
+        }).when(mailSender).send(any(MimeMessage[].class));
+        outbox = open();
+
+        List<EmailMessage> outcomes = new CopyOnWriteArrayList<>();
+        EmailMessage message = outbox.enqueue(message("nobody@example.com"), outcomes::add);
+
+        verify(messagingTemplate, timeout(2000)).convertAndSend(eq(EmailOutbox.STOMP_DESTINATION),
+                argThat((EmailMessage failed) -> "FAILED".equals(failed.getStatus())));
+        verify(mailSender, times(1)).send(any(MimeMessage[].class));
+        assertEquals(1, message.getAttempts());
+        assertEquals(List.of("FAILED"), outcomes.stream().map(EmailMessage::getStatus).toList());
+    }
+
+    @Test
+    void classifiesPermanentFailures() {
+        assertTrue(EmailOutbox.isPermanent(new MessagingException("554 5.7.1 Message rejected")));
+        assertTrue(EmailOutbox.isPermanent(new MessagingException("Send failed",
+                new MessagingException("550-5.1.1 mailbox unavailable"))));
+        assertFalse(EmailOutbox.isPermanent(new MessagingException("451 4.3.0 try again later")));
+        assertFalse(EmailOutbox.isPermanent(new MessagingException("Connection reset")));
+    }
+
+    @Test
+    void deliversMessagesQueuedBeforeRestart() throws Exception {
+        when(mailSender.createMimeMessage()).thenAnswer(invocation -> new MimeMessage((Session) null));
+        doNothing().when(mailSender).send(any(MimeMessage[].class));
+
+        // Queued after the workers stopped, as if the process died before delivery
+        EmailOutbox stopped = open();
+        stopped.stop();
+        EmailMessage queued = stopped.enqueue(message("ops@example.com"));
+        verify(mailSender, never()).send(any(MimeMessage[].class));
+
+        outbox = open();
+        verify(mailSender, timeout(2000)).send(any(MimeMessage[].class));
+        verify(messagingTemplate, timeout(2000)).convertAndSend(eq(EmailOutbox.STOMP_DESTINATION),
+                argThat((EmailMessage sent) -> queued.getId().equals(sent.getId()) && "SENT".equals(sent.getStatus())));
+    }
+
+    private EmailOutbox open() {
+        EmailOutbox opened = new EmailOutbox(mailSender, messagingTemplate, new ObjectMapper().findAndRegisterModules());
+        ReflectionTestUtils.setField(opened, "fromEmail", "auralink@example.com");
+        ReflectionTestUtils.setField(opened, "enabled", true);
+        ReflectionTestUtils.setField(opened, "directory", directory.toString());
+        ReflectionTestUtils.setField(opened, "workers", 2);
+        ReflectionTestUtils.setField(opened, "maxAttempts", 3);
+        ReflectionTestUtils.setField(opened, "initialBackoffMillis", 20L);
+        ReflectionTestUtils.setField(opened, "maxBackoffMillis", 100L);
+        opened.start();
+        return opened;
+    }
+
+    private static EmailMessage message(String to) {
+        return EmailMessage.builder()
+                .id(UUID.randomUUID().toString())
+                .to(List.of(to))
+                .subject("Outbox test")
+                .body("<p>Hello</p>")
+                .isHtml(true)
+                .sentAt(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.backend.service;
+
+import com.example.backend.model.EmailMessage;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EmailServiceTest {
+
+    @Test
+    void keepsOnlyTheLatestSentEmails() {
+        EmailOutbox outbox = mock(EmailOutbox.class);
+        when(outbox.isEnabled()).thenReturn(true);
+        EmailService emailService = new EmailService();
+        ReflectionTestUtils.setField(emailService, "outbox", outbox);
+        ReflectionTestUtils.setField(emailService, "sentHistoryCapacity", 3);
+
+        for (int i = 0; i < 5; i++) {
+            emailService.sendSimpleEmail("ops@example.com", "Subject " + i, "Body");
+        }
+
+        assertEquals(List.of("Subject 2", "Subject 3", "Subject 4"),
+                emailService.getSentEmails().stream().map(EmailMessage::getSubject).toList());
+    }
+}
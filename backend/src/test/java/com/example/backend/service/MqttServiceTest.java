@@ -0,0 +1,79 @@
+package com.example.backend.service;
+
+import com.example.backend.config.PartitionedIngestChannel;
+import com.example.backend.controller.SensorController;
+import com.example.backend.model.EncodedSensorData;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class MqttServiceTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final SensorBroadcastService broadcastService = mock(SensorBroadcastService.class);
+    private final MqttService mqttService = createService();
+    private final SensorController controller = new SensorController(mqttService, mock(SensorRollupService.class),
+            mock(PartitionedIngestChannel.class), broadcastService, mock(SensorDailySummaryService.class),
+            mock(SensorQuantileService.class), mock(SensorAggregateService.class));
+
+    private MqttService createService() {
+        DeviceRegistry deviceRegistry = new DeviceRegistry();
+        ReflectionTestUtils.setField(deviceRegistry, "maxDevices", 100);
+        SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+        // Real detector and rule engine, disabled by default: mocking them would instrument the classes
+        // for the whole test JVM and skew the allocation checks of their own tests
+        SensorAnomalyDetector anomalyDetector = new SensorAnomalyDetector(messagingTemplate,
+                mock(MessageChannel.class), objectMapper, deviceRegistry);
+        AlertRuleEngine alertRuleEngine = new AlertRuleEngine(mock(AlertDispatcher.class), messagingTemplate,
+                mock(SensorDailySummaryService.class), deviceRegistry);
+        MqttService service = new MqttService(new SensorDataDecoder(objectMapper), mock(SensorBinaryCodec.class),
+                messagingTemplate, broadcastService, mock(SensorRollupService.class),
+                mock(SensorQuantileService.class), mock(SensorJournal.class), objectMapper,
+                new SensorMetrics(new SimpleMeterRegistry()), deviceRegistry, mock(DeviceLivenessTracker.class),
+                anomalyDetector, alertRuleEngine, mock(SensorHistoryArchive.class));
+        ReflectionTestUtils.setField(service, "defaultHistoryCapacity", 10);
+        ReflectionTestUtils.setField(service, "historyChunkSize", 10);
+        ReflectionTestUtils.setField(service, "compressedRetentionDays", 1);
+        return service;
+    }
+
+    @Test
+    void encodesEachReadingOnceForWebSocketAndRest() throws Exception {
+        MessageHandler handler = mqttService.handler();
+        handler.handleMessage(sensorMessage("{\"deviceId\":\"lab\",\"temperature\":21.5,\"co2\":612,"
+                + "\"airQualityStatus\":\"Good\",\"light\":true,\"timestamp\":1}"));
+        handler.handleMessage(sensorMessage("{\"deviceId\":\"lobby\",\"temperature\":23.0,\"co2\":480,\"timestamp\":2}"));
+
+        ArgumentCaptor<EncodedSensorData> offered = ArgumentCaptor.forClass(EncodedSensorData.class);
+        verify(broadcastService, times(2)).offer(offered.capture());
+        EncodedSensorData lab = offered.getAllValues().get(0);
+
+        // The bytes handed to the WebSocket broadcast are the ones REST serves
+        assertSame(lab.json(), controller.getLatestSensorData("lab").getBody());
+        assertArrayEquals(objectMapper.writeValueAsBytes(lab.data()), lab.json());
+        assertArrayEquals(objectMapper.writeValueAsBytes(mqttService.getAllLatestSensorData()),
+                controller.getAllLatestSensorData().getBody());
+    }
+
+    private static Message<byte[]> sensorMessage(String json) {
+        return MessageBuilder.withPayload(json.getBytes(StandardCharsets.UTF_8))
+                .setHeader("mqtt_receivedTopic", "auralink/sensors")
+                .build();
+    }
+}
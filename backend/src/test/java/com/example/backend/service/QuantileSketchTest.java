@@ -0,0 +1,70 @@
+package com.example.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class QuantileSketchTest {
+
+    private static final double[] QUANTILES = {0, 0.01, 0.25, 0.5, 0.75, 0.95, 0.99, 1};
+
+    @Test
+    void quantilesAreWithinRelativeAccuracy() {
+        Random random = new Random(7);
+        QuantileSketch sketch = new QuantileSketch();
+        double[] values = new double[20_000];
+        for (int i = 0; i < values.length; i++) {
+            // Mix of negative, zero and positive readings, e.g. outdoor temperatures
+            values[i] = i % 100 == 0 ? 0 : 5 + random.nextGaussian() * 8;
+            sketch.add(values[i]);
+        }
+
+        assertWithinAccuracy(values, sketch);
+    }
+
+    @Test
+    void mergedSketchesMatchSketchOfAllValues() {
+        Random random = new Random(11);
+        QuantileSketch fleet = new QuantileSketch();
+        double[] values = new double[30_000];
+        for (int device = 0; device < 3; device++) {
+            QuantileSketch deviceSketch = new QuantileSketch();
+            for (int i = 0; i < 10_000; i++) {
+                // Devices with very different CO2 levels
+                double value = 400 + device * 600 + random.nextDouble() * 200;
+                values[device * 10_000 + i] = value;
+                deviceSketch.add(value);
+            }
+            fleet.merge(deviceSketch);
+        }
+
+        assertEquals(values.length, fleet.getCount());
+        assertWithinAccuracy(values, fleet);
+    }
+
+    @Test
+    void clearedSketchIsEmpty() {
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.add(21.5);
+        sketch.clear();
+        sketch.add(30);
+
+        assertEquals(1, sketch.getCount());
+        assertEquals(30, sketch.quantile(0.5), 30 * QuantileSketch.RELATIVE_ACCURACY);
+    }
+
+    private static void assertWithinAccuracy(double[] values, QuantileSketch sketch) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        for (double q : QUANTILES) {
+            double expected = sorted[(int) (q * (sorted.length - 1))];
+            double actual = sketch.quantile(q);
+            assertTrue(Math.abs(actual - expected) <= Math.abs(expected) * QuantileSketch.RELATIVE_ACCURACY + 1e-9,
+                    "q" + q + ": expected " + expected + " but was " + actual);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.backend.service;
+
+import com.example.backend.model.DeviceAggregate;
+import com.example.backend.model.SensorAggregate;
+import com.example.backend.model.SensorData;
+import com.example.backend.model.SensorMetric;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SensorAggregateServiceTest {
+
+    private final MqttService mqttService = mock(MqttService.class);
+    private final SensorAggregateService aggregateService = createService();
+
+    private SensorAggregateService createService() {
+        SensorAggregateService service = new SensorAggregateService(mqttService);
+        ReflectionTestUtils.setField(service, "leafDevices", 8);
+        service.start();
+        return service;
+    }
+
+    @AfterEach
+    void stop() {
+        aggregateService.stop();
+    }
+
+    @Test
+    void aggregatesFleetAndTopDevicesOverWindow() {
+        // Device d reports co2 = 400 + d every second; 100 devices, 8 per leaf task
+        List<SensorHistoryStore> stores = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (int d = 0; d < 100; d++) {
+            SensorHistoryStore store = new SensorHistoryStore("device-" + d, 600, 120, 0);
+            for (int s = 599; s >= 0; s--) {
+                store.append(reading("device-" + d, 20, 400 + d, now.minusSeconds(s)));
+            }
+            stores.add(store);
+        }
+        when(mqttService.historyStores()).thenReturn(stores);
+
+        SensorAggregate aggregate = aggregateService.aggregate(SensorMetric.CO2, Duration.ofMinutes(5),
+                List.of("avg", "min", "max", "count", "p50"), false, 3, "max", false);
+
+        assertEquals(100, aggregate.getDevices());
+        assertEquals(449.5, aggregate.getValues().get("avg"), 1e-9);
+        assertEquals(400.0, aggregate.getValues().get("min"));
+        assertEquals(499.0, aggregate.getValues().get("max"));
+        assertEquals(aggregate.getCount(), aggregate.getValues().get("count"));
+        assertEquals(449.5, aggregate.getValues().get("p50"), 449.5 * QuantileSketch.RELATIVE_ACCURACY + 1);
+
+        assertEquals(List.of("device-99", "device-98", "device-97"),
+                aggregate.getGroups().stream().map(DeviceAggregate::getDeviceId).toList());
+        assertEquals(499.0, aggregate.getGroups().get(0).getValues().get("avg"));
+    }
+
+    @Test
+    void groupsLatestReadingsByDevice() {
+        LocalDateTime now = LocalDateTime.now();
+        when(mqttService.getAllLatestSensorData()).thenReturn(List.of(
+                reading("lobby", 24.5f, 500, now),
+                reading("lab", 21.0f, 450, now.minusSeconds(5)),
+                reading("hall", 19.5f, 420, now.minusSeconds(1))));
+
+        SensorAggregate aggregate = aggregateService.aggregate(SensorMetric.TEMPERATURE, null,
+                List.of("last", "max"), true, null, null, false);
+
+        assertNull(aggregate.getFrom());
+        assertEquals(24.5, aggregate.getValues().get("last"));
+        assertEquals(List.of("hall", "lab", "lobby"),
+                aggregate.getGroups().stream().map(DeviceAggregate::getDeviceId).toList());
+
+        SensorAggregate coldest = aggregateService.aggregate(SensorMetric.TEMPERATURE, null,
+                List.of("last"), false, 1, null, true);
+        assertEquals("hall", coldest.getGroups().get(0).getDeviceId());
+    }
+
+    @Test
+    void mergesLeafTasksAcrossALargeFleet() {
+        // Device d reports co2 = 400 + d + (s % 50) every 10 s for an hour; 2,000 devices, 64 per leaf task
+        ReflectionTestUtils.setField(aggregateService, "leafDevices", 64);
+        List<SensorHistoryStore> stores = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (int d = 0; d < 2000; d++) {
+            SensorHistoryStore store = new SensorHistoryStore("device-" + d, 360, 120, 0);
+            for (int s = 359; s >= 0; s--) {
+                store.append(reading("device-" + d, 20, 400 + d + s % 50, now.minusSeconds(s * 10L)));
+            }
+            stores.add(store);
+        }
+        when(mqttService.historyStores()).thenReturn(stores);
+
+        SensorAggregate aggregate = aggregateService.aggregate(SensorMetric.CO2, Duration.ofHours(1),
+                List.of("avg", "max"), false, 10, "max", false);
+
+        assertEquals(2000, aggregate.getDevices());
+        assertEquals(2000 * 360, aggregate.getCount());
+        // s % 50 over 0..359 sums to 7 x 1225 + 45
+        assertEquals(400 + 999.5 + 8620.0 / 360, aggregate.getValues().get("avg"), 1e-6);
+        assertEquals(400 + 1999 + 49, aggregate.getValues().get("max"));
+        assertEquals(List.of("device-1999", "device-1998", "device-1997", "device-1996", "device-1995",
+                        "device-1994", "device-1993", "device-1992", "device-1991", "device-1990"),
+                aggregate.getGroups().stream().map(DeviceAggregate::getDeviceId).toList());
+    }
+
+    private static SensorData reading(String deviceId, float temperature, int co2, LocalDateTime receivedAt) {
+        return SensorData.builder()
+                .deviceId(deviceId)
+                .temperature(temperature)
+                .co2(co2)
+                .receivedAt(receivedAt)
+                .build();
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.backend.service;
+
+import com.example.backend.model.SensorAnomaly;
+import com.example.backend.model.SensorData;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class SensorAnomalyDetectorTest {
+
+    private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+    private final MessageChannel mqttOutboundChannel = mock(MessageChannel.class);
+    private final SensorAnomalyDetector detector = createDetector();
+    private final Random random = new Random(42);
+
+    private SensorAnomalyDetector createDetector() {
+        DeviceRegistry deviceRegistry = new DeviceRegistry();
+        SensorAnomalyDetector detector = new SensorAnomalyDetector(messagingTemplate, mqttOutboundChannel,
+                Jackson2ObjectMapperBuilder.json().build(), deviceRegistry);
+        ReflectionTestUtils.setField(detector, "enabled", true);
+        ReflectionTestUtils.setField(detector, "fastAlpha", 0.1);
+        ReflectionTestUtils.setField(detector, "slowAlpha", 0.005);
+        ReflectionTestUtils.setField(detector, "zThreshold", 5.0);
+        ReflectionTestUtils.setField(detector, "driftThreshold", 3.0);
+        ReflectionTestUtils.setField(detector, "warmup", 30);
+        ReflectionTestUtils.setField(detector, "cooldownMillis", 60_000L);
+        return detector;
+    }
+
+    @Test
+    void stationaryNoiseRaisesNothing() {
+        for (int i = 0; i < 5000; i++) {
+            detector.process(reading("lobby", 22 + random.nextGaussian() * 0.3, 450 + random.nextGaussian() * 10));
+        }
+
+        verify(messagingTemplate, never()).convertAndSend(eq(SensorAnomalyDetector.STOMP_DESTINATION), any(Object.class));
+    }
+
+    @Test
+    void detectsSpike() {
+        for (int i = 0; i < 500; i++) {
+            detector.process(reading("lobby", 22 + random.nextGaussian() * 0.3, 450 + random.nextGaussian() * 10));
+        }
+        detector.process(reading("lobby", 22, 900));
+
+        List<SensorAnomaly> anomalies = published();
+        assertEquals(1, anomalies.size());
+        assertEquals("co2", anomalies.get(0).getMetric());
+        assertEquals("spike", anomalies.get(0).getKind());
+        assertTrue(anomalies.get(0).getScore() > 5);
+        verify(mqttOutboundChannel).send(any());
+    }
+
+    @Test
+    void detectsSlowDrift() {
+        double co2 = 450;
+        for (int i = 0; i < 500; i++) {
+            detector.process(reading("lab", 22 + random.nextGaussian() * 0.3, co2 + random.nextGaussian() * 10));
+        }
+        // Creep up by 0.5 ppm per reading: never a spike, but the level moves away
+        for (int i = 0; i < 400; i++) {
+            co2 += 0.5;
+            detector.process(reading("lab", 22 + random.nextGaussian() * 0.3, co2 + random.nextGaussian() * 10));
+        }
+
+        List<SensorAnomaly> anomalies = published();
+        assertTrue(anomalies.stream().anyMatch(a -> a.getMetric().equals("co2") && a.getKind().equals("drift")));
+        assertTrue(anomalies.stream().noneMatch(a -> a.getKind().equals("spike")));
+    }
+
+    @Test
+    void processingStationaryReadingsDoesNotAllocate() {
+        int devices = 1000;
+        SensorData[] readings = new SensorData[devices];
+        for (int d = 0; d < devices; d++) {
+            readings[d] = reading("device-" + d, 22, 450);
+        }
+        // Warm up past the detector warmup and until the loop is compiled
+        for (int round = 0; round < 200; round++) {
+            runRound(readings);
+        }
+
+        int rounds = 200;
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long bytesBefore = threads.getCurrentThreadAllocatedBytes();
+        for (int round = 0; round < rounds; round++) {
+            runRound(readings);
+        }
+        double bytesPerReading = (double) (threads.getCurrentThreadAllocatedBytes() - bytesBefore) / (rounds * devices);
+
+        assertEquals(0, bytesPerReading, 0.5);
+    }
+
+    private void runRound(SensorData[] readings) {
+        for (SensorData reading : readings) {
+            reading.setTemperature((float) (22 + random.nextGaussian() * 0.3));
+            reading.setCo2((int) (450 + random.nextGaussian() * 10));
+            detector.process(reading);
+        }
+    }
+
+    private List<SensorAnomaly> published() {
+        ArgumentCaptor<Object> messages = ArgumentCaptor.forClass(Object.class);
+        verify(messagingTemplate, atLeastOnce()).convertAndSend(eq(SensorAnomalyDetector.STOMP_DESTINATION), messages.capture());
+        return messages.getAllValues().stream().map(message -> (SensorAnomaly) message).toList();
+    }
+
+    private static SensorData reading(String deviceId, double temperature, double co2) {
+        return SensorData.builder()
+                .deviceId(deviceId)
+                .temperature((float) temperature)
+                .humidity(45)
+                .airQualityRaw(1200)
+                .co2((int) co2)
+                .nh3(5)
+                .ch4(10)
+                .co(2)
+                .build();
+    }
+}
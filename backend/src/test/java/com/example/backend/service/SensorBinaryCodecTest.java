@@ -0,0 +1,51 @@
+package com.example.backend.service;
+
+import com.example.backend.model.SensorData;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SensorBinaryCodecTest {
+
+    private static final String JSON_PAYLOAD = "{\"temperature\":27.4,\"humidity\":63.2,\"airQualityRaw\":1834,"
+            + "\"co2\":612,\"nh3\":4,\"ch4\":11,\"co\":2,\"airQualityStatus\":\"Moderate\",\"isLight\":true,"
+            + "\"motionDetected\":false,\"deviceId\":\"ESP32_AuraLink_Client\",\"timestamp\":4000000000}";
+
+    private final SensorBinaryCodec codec = new SensorBinaryCodec();
+
+    @Test
+    void roundTripsEveryField() throws IOException {
+        SensorData reading = SensorData.builder()
+                .temperature(27.4f).humidity(63.2f)
+                .airQualityRaw(1834).co2(612).nh3(4).ch4(11).co(2)
+                .airQualityStatus("Moderate").isLight(true).motionDetected(false)
+                .deviceId("ESP32_AuraLink_Client").timestamp(4_000_000_000L)
+                .build();
+
+        byte[] frame = codec.encode(reading);
+
+        assertEquals(reading, codec.decode(frame));
+        assertEquals("ESP32_AuraLink_Client", SensorBinaryCodec.deviceId(frame));
+        assertTrue(frame.length * 4 < JSON_PAYLOAD.getBytes(StandardCharsets.UTF_8).length,
+                "frame of " + frame.length + " bytes should be well under a quarter of the JSON payload");
+    }
+
+    @Test
+    void rejectsUnknownVersionAndTruncatedFrames() {
+        byte[] frame = codec.encode(SensorData.builder().deviceId("d1").build());
+
+        byte[] truncated = new byte[frame.length - 1];
+        System.arraycopy(frame, 0, truncated, 0, truncated.length);
+        assertThrows(IOException.class, () -> codec.decode(truncated));
+        assertNull(SensorBinaryCodec.deviceId(truncated));
+
+        frame[0] = (byte) (SensorBinaryCodec.VERSION + 1);
+        assertThrows(IOException.class, () -> codec.decode(frame));
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.backend.service;
+
+import com.example.backend.model.EncodedSensorData;
+import com.example.backend.model.SensorData;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SensorBroadcastServiceTest {
+
+    private final SimpMessagingTemplate messagingTemplate = mock(SimpMessagingTemplate.class);
+    private final StompSubscriptionRegistry subscriptions = mock(StompSubscriptionRegistry.class);
+    private final SensorBroadcastService broadcastService = new SensorBroadcastService(messagingTemplate, subscriptions,
+            new SensorMetrics(new SimpleMeterRegistry()), new DeviceRegistry());
+
+    @Test
+    void sendsOnlyTheLatestReadingOfEachDevicePerTick() {
+        when(subscriptions.hasSubscribers(SensorBroadcastService.DEVICE_DESTINATION_PREFIX + "lab")).thenReturn(true);
+        when(subscriptions.hasSubscribers(SensorBroadcastService.DEVICE_DESTINATION_PREFIX + "lobby")).thenReturn(true);
+        EncodedSensorData latestLab = reading("lab", 3);
+        EncodedSensorData latestLobby = reading("lobby", 2);
+
+        broadcastService.offer(reading("lab", 1));
+        broadcastService.offer(reading("lobby", 1));
+        broadcastService.offer(reading("lab", 2));
+        broadcastService.offer(latestLobby);
+        broadcastService.offer(latestLab);
+        broadcastService.flush();
+
+        assertArrayEquals(latestLab.json(), sent(SensorBroadcastService.DEVICE_DESTINATION_PREFIX + "lab"));
+        assertArrayEquals(latestLobby.json(), sent(SensorBroadcastService.DEVICE_DESTINATION_PREFIX + "lobby"));
+        verify(messagingTemplate, never()).send(eq(SensorBroadcastService.FLEET_DESTINATION), any(Message.class));
+        assertEquals(3L, broadcastService.getStats().get("merged"));
+        assertEquals(2L, broadcastService.getStats().get("published"));
+
+        // Nothing is pending until the devices report again
+        broadcastService.flush();
+        verify(messagingTemplate, times(2)).send(anyString(), any(Message.class));
+    }
+
+    @Test
+    void skipsDevicesWithoutSubscribers() {
+        broadcastService.offer(reading("lab", 1));
+        broadcastService.flush();
+
+        verify(messagingTemplate, never()).send(anyString(), any(Message.class));
+        assertEquals(1L, broadcastService.getStats().get("unsubscribed"));
+        assertEquals(0, broadcastService.getStats().get("pending"));
+    }
+
+    // The payload of the single message sent to the destination
+    private byte[] sent(String destination) {
+        ArgumentCaptor<Message> messages = ArgumentCaptor.forClass(Message.class);
+        verify(messagingTemplate).send(eq(destination), messages.capture());
+        return (byte[]) messages.getValue().getPayload();
+    }
+
+    private static EncodedSensorData reading(String deviceId, long timestamp) {
+        SensorData data = SensorData.builder().deviceId(deviceId).timestamp(timestamp).build();
+        String json = "{\"deviceId\":\"" + deviceId + "\",\"timestamp\":" + timestamp + "}";
+        return new EncodedSensorData(data, json.getBytes(StandardCharsets.UTF_8));
+    }
+}
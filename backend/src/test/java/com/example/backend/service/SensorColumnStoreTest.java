@@ -0,0 +1,111 @@
+package com.example.backend.service;
+
+import com.example.backend.model.SensorData;
+import com.example.backend.model.SensorMetric;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SensorColumnStoreTest {
+
+    private static SensorData reading(long timestamp) {
+        return SensorData.builder().deviceId("test-device").timestamp(timestamp).build();
+    }
+
+    @Test
+    void keepsNewestReadingsFirstAfterWrapAround() {
+        SensorColumnStore store = new SensorColumnStore("test-device", 3);
+        for (long i = 1; i <= 5; i++) {
+            store.append(reading(i));
+        }
+
+        List<SensorData> snapshot = store.snapshot();
+        assertEquals(3, snapshot.size());
+        assertEquals(5, snapshot.get(0).getTimestamp());
+        assertEquals(4, snapshot.get(1).getTimestamp());
+        assertEquals(3, snapshot.get(2).getTimestamp());
+    }
+
+    @Test
+    void roundTripsEveryField() {
+        SensorData original = SensorData.builder()
+                .temperature(23.5f)
+                .humidity(61.25f)
+                .airQualityRaw(1834)
+                .co2(612)
+                .nh3(4)
+                .ch4(11)
+                .co(2)
+                .airQualityStatus("Moderate")
+                .isLight(true)
+                .motionDetected(true)
+                .deviceId("test-device")
+                .timestamp(123456789L)
+                .receivedAt(LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS))
+                .build();
+
+        SensorColumnStore store = new SensorColumnStore("test-device", 8);
+        store.append(original);
+
+        assertEquals(original, store.snapshot().get(0));
+    }
+
+    @Test
+    void slicesByReceiveTimeAndDownsamples() {
+        LocalDateTime start = LocalDateTime.of(2025, 1, 1, 0, 0);
+        SensorColumnStore store = new SensorColumnStore("test-device", 10_000);
+        for (int i = 0; i < 10_000; i++) {
+            store.append(SensorData.builder()
+                    .temperature(i % 100)
+                    .timestamp(i)
+                    .receivedAt(start.plusSeconds(i))
+                    .build());
+        }
+
+        SensorColumnStore.Slice slice = store.slice(
+                SensorColumnStore.toEpochMillis(start.plusSeconds(1000)),
+                SensorColumnStore.toEpochMillis(start.plusSeconds(2999)),
+                SensorMetric.TEMPERATURE);
+        assertEquals(2000, slice.size());
+        assertEquals(1000, slice.firstSeq());
+
+        int[] points = SensorHistoryDownsampler.downsample(slice.times(), slice.values(), 0, 50);
+        assertEquals(50, points.length);
+        long[] seqs = new long[points.length];
+        for (int i = 0; i < points.length; i++) {
+            seqs[i] = slice.firstSeq() + points[i];
+        }
+        List<SensorData> readings = store.readings(seqs);
+        assertEquals(2999, readings.get(0).getTimestamp());
+        assertEquals(1000, readings.get(readings.size() - 1).getTimestamp());
+
+        int[] buckets = SensorHistoryDownsampler.downsample(slice.times(), slice.values(), 100_000, 0);
+        assertEquals(40, buckets.length);
+    }
+
+    @Test
+    void snapshotsStayOrderedWhileWriterIsAppending() throws InterruptedException {
+        SensorColumnStore store = new SensorColumnStore("test-device", 64);
+        Thread writer = new Thread(() -> {
+            for (long i = 1; i <= 200_000; i++) {
+                store.append(reading(i));
+            }
+        });
+        writer.start();
+
+        while (writer.isAlive()) {
+            List<SensorData> snapshot = store.snapshot();
+            assertTrue(snapshot.size() <= 64);
+            for (int i = 1; i < snapshot.size(); i++) {
+                assertEquals(snapshot.get(i - 1).getTimestamp() - 1, snapshot.get(i).getTimestamp());
+            }
+        }
+        writer.join();
+        assertEquals(200_000, store.snapshot().get(0).getTimestamp());
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.backend.service;
+
+import com.example.backend.model.DailySummary;
+import com.example.backend.model.SensorData;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SensorDailySummaryServiceTest {
+
+    private final SensorRollupService rollupService = new SensorRollupService(new DeviceRegistry());
+    private final SensorDailySummaryService summaryService = createService();
+
+    private SensorDailySummaryService createService() {
+        ReflectionTestUtils.setField(rollupService, "dayRetention", 7);
+        SensorDailySummaryService service = new SensorDailySummaryService(rollupService);
+        ReflectionTestUtils.setField(service, "alertRetentionDays", 7);
+        return service;
+    }
+
+    @Test
+    void summarizesDevicesAndFleetFromRunningTotals() {
+        LocalDate today = LocalDate.now();
+        rollupService.record(reading("lab", 20, today.atTime(0, 10)));
+        rollupService.record(reading("lab", 24, today.atTime(0, 20)));
+        rollupService.record(reading("lobby", 28, today.atTime(0, 30)));
+        summaryService.recordAlert("lab");
+        summaryService.recordAlert("lab");
+        summaryService.recordAlert("hall");
+
+        DailySummary summary = summaryService.getSummary(today);
+
+        assertEquals(3, summary.getReadings());
+        assertEquals(3, summary.getAlerts());
+        assertEquals(24.0, summary.getMetrics().get("temperature").getAvg(), 1e-9);
+        assertEquals(28.0, summary.getMetrics().get("temperature").getMax(), 1e-9);
+        assertEquals(3, summary.getDevices().size());
+
+        DailySummary hall = summary.getDevices().get(0);
+        assertEquals("hall", hall.getDeviceId());
+        assertEquals(0, hall.getReadings());
+        assertEquals(1, hall.getAlerts());
+
+        DailySummary lab = summary.getDevices().get(1);
+        assertEquals("lab", lab.getDeviceId());
+        assertEquals(2, lab.getReadings());
+        assertEquals(2, lab.getAlerts());
+        assertEquals(22.0, lab.getMetrics().get("temperature").getAvg(), 1e-9);
+        assertEquals(20.0, lab.getMetrics().get("temperature").getMin(), 1e-9);
+    }
+
+    @Test
+    void returnsNullForDayWithoutReadingsOrAlerts() {
+        rollupService.record(reading("lab", 20, LocalDate.now().atTime(0, 10)));
+
+        assertNull(summaryService.getSummary(LocalDate.now().minusDays(1)));
+    }
+
+    private static SensorData reading(String deviceId, float temperature, LocalDateTime receivedAt) {
+        return SensorData.builder()
+                .deviceId(deviceId)
+                .temperature(temperature)
+                .humidity(45)
+                .co2(450)
+                .receivedAt(receivedAt)
+                .build();
+    }
+}
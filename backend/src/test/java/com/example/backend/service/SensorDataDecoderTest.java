@@ -0,0 +1,73 @@
+package com.example.backend.service;
+
+import com.example.backend.model.SensorData;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SensorDataDecoderTest {
+
+    private static final String PAYLOAD = "{\"temperature\":27.4,\"humidity\":63.2,\"airQualityRaw\":1834,"
+            + "\"co2\":612,\"nh3\":4,\"ch4\":11,\"co\":2,\"airQualityStatus\":\"Moderate\",\"isLight\":true,"
+            + "\"light\":true,\"motionDetected\":false,\"deviceId\":\"ESP32_AuraLink\",\"timestamp\":123456}";
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final SensorDataDecoder decoder = new SensorDataDecoder(objectMapper);
+
+    @Test
+    void decodesLikeObjectMapper() throws Exception {
+        String[] payloads = {
+                PAYLOAD,
+                "{\"deviceId\":\"d1\",\"co2\":\"700\",\"temperature\":null,\"extra\":{\"nested\":[1,2]},\"airQualityStatus\":null}",
+                "{}"
+        };
+        for (String payload : payloads) {
+            assertEquals(objectMapper.readValue(payload, SensorData.class),
+                    decoder.decode(payload.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    @Test
+    void reusesRepeatedDeviceIds() throws Exception {
+        byte[] payload = PAYLOAD.getBytes(StandardCharsets.UTF_8);
+        assertSame(decoder.decode(payload).getDeviceId(), decoder.decode(payload).getDeviceId());
+    }
+
+    @Test
+    void allocatesLessThanObjectMapperBindingTheStringPayload() throws Exception {
+        byte[] payload = PAYLOAD.getBytes(StandardCharsets.UTF_8);
+        int iterations = 20_000;
+
+        double mapperBytes = bytesPerDecode(iterations, () ->
+                objectMapper.readValue(new String(payload, StandardCharsets.UTF_8), SensorData.class));
+        double decoderBytes = bytesPerDecode(iterations, () -> decoder.decode(payload));
+
+        assertTrue(decoderBytes < mapperBytes * 0.75, decoderBytes + " vs " + mapperBytes + " bytes/decode");
+    }
+
+    private interface Decode {
+        SensorData run() throws Exception;
+    }
+
+    private static double bytesPerDecode(int iterations, Decode decode) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            sink += decode.run().getCo2();
+        }
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < iterations; i++) {
+            sink += decode.run().getCo2();
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        assertEquals(612L * iterations * 2, sink);
+        return (double) allocated / iterations;
+    }
+}
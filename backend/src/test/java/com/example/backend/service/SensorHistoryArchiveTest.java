@@ -0,0 +1,165 @@
+package com.example.backend.service;
+
+import com.example.backend.model.SensorData;
+import com.example.backend.model.SensorMetric;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SensorHistoryArchiveTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    @TempDir
+    Path directory;
+
+    private final List<SensorHistoryArchive> opened = new ArrayList<>();
+
+    // Stops the writer threads before the temporary directory is deleted
+    @AfterEach
+    void close() throws InterruptedException {
+        for (SensorHistoryArchive archive : opened) {
+            archive.close();
+        }
+    }
+
+    @Test
+    void chunksPastMemoryRetentionAreQueryableFromDiskAfterRestart() throws Exception {
+        SensorHistoryArchive archive = openArchive();
+        // Keep one minute in memory, archive the rest
+        SensorHistoryStore store = new SensorHistoryStore("lab", 100, 50, 60_000, archive::archive);
+        for (int i = 0; i < 1000; i++) {
+            store.append(reading("lab", i));
+        }
+        // Everything but the last minute and the open chunk went to disk
+        long archived = archivedCount(archive, "lab");
+        assertTrue(archived >= 850 && archived < 1000, "archived: " + archived);
+        archive.close();
+
+        SensorHistoryArchive reopened = openArchive();
+        SensorHistoryArchive.Slice slice = reopened.slice("lab",
+                SensorColumnStore.toEpochMillis(START.plusSeconds(100)),
+                SensorColumnStore.toEpochMillis(START.plusSeconds(199)),
+                SensorMetric.TEMPERATURE);
+        assertEquals(100, slice.size());
+        for (int i = 0; i < slice.size(); i++) {
+            assertEquals((100 + i) % 50, slice.values()[i]);
+        }
+        List<SensorData> readings = slice.readings(new int[] {0, 99});
+        assertEquals(199, readings.get(0).getTimestamp());
+        assertEquals("Good", readings.get(0).getAirQualityStatus());
+        assertEquals(100, readings.get(1).getTimestamp());
+    }
+
+    @Test
+    void skipsReadingsArchivedBefore() {
+        SensorHistoryArchive archive = openArchive();
+        SensorHistoryStore first = new SensorHistoryStore("lab", 100, 50, 0, archive::archive);
+        for (int i = 0; i < 300; i++) {
+            first.append(reading("lab", i));
+        }
+        long archived = archivedCount(archive, "lab");
+
+        // A journal replay seals the same readings again
+        SensorHistoryStore replayed = new SensorHistoryStore("lab", 100, 40, 0, archive::archive);
+        for (int i = 0; i < 400; i++) {
+            replayed.append(reading("lab", i));
+        }
+
+        SensorHistoryArchive.Slice slice = archive.slice("lab", Long.MIN_VALUE, Long.MAX_VALUE, SensorMetric.TEMPERATURE);
+        assertEquals(SensorColumnStore.toEpochMillis(START), slice.times()[0]);
+        for (int i = 1; i < slice.size(); i++) {
+            assertEquals(slice.times()[i - 1] + 1000, slice.times()[i]);
+        }
+        assertTrue(slice.size() > archived);
+    }
+
+    @Test
+    void archivesTheOpenChunkWhenTheDeviceIsDropped() {
+        SensorHistoryArchive archive = openArchive();
+        SensorHistoryStore store = new SensorHistoryStore("lab", 100, 50, 60_000, archive::archive);
+        for (int i = 0; i < 130; i++) {
+            store.append(reading("lab", i));
+        }
+
+        store.archiveAll();
+
+        // Two sealed chunks and the 30 readings not sealed yet
+        SensorHistoryArchive.Slice slice = archive.slice("lab", Long.MIN_VALUE, Long.MAX_VALUE, SensorMetric.TEMPERATURE);
+        assertEquals(130, slice.size());
+        assertEquals(129, slice.readings(new int[] {129}).get(0).getTimestamp());
+    }
+
+    @Test
+    void ignoresTheRestOfASegmentFromACorruptRecord() throws Exception {
+        SensorHistoryArchive archive = openArchive();
+        SensorHistoryStore store = new SensorHistoryStore("lab", 100, 50, 0, archive::archive);
+        for (int i = 0; i < 1000; i++) {
+            store.append(reading("lab", i));
+        }
+        long archived = archivedCount(archive, "lab");
+        archive.close();
+
+        // Flip a byte inside the last record of the newest segment
+        Path newest;
+        try (Stream<Path> files = Files.list(directory)) {
+            newest = files.sorted().reduce((first, second) -> second).orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(newest, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            int position = 16;
+            int last = position;
+            while (buffer.getInt(position) > 0) {
+                last = position;
+                position += 8 + buffer.getInt(position);
+            }
+            int corrupt = last + 8 + buffer.getInt(last) / 2;
+            buffer.put(corrupt, (byte) ~buffer.get(corrupt));
+            buffer.force();
+        }
+
+        long recovered = archivedCount(openArchive(), "lab");
+        assertTrue(recovered > 0 && recovered < archived, "recovered: " + recovered + " of " + archived);
+    }
+
+    private SensorHistoryArchive openArchive() {
+        SensorHistoryArchive archive = new SensorHistoryArchive();
+        ReflectionTestUtils.setField(archive, "enabled", true);
+        ReflectionTestUtils.setField(archive, "directory", directory.toString());
+        ReflectionTestUtils.setField(archive, "segmentSize", 4096);
+        ReflectionTestUtils.setField(archive, "retentionDays", 100_000);
+        ReflectionTestUtils.setField(archive, "queueCapacity", 16);
+        opened.add(archive);
+        archive.open();
+        return archive;
+    }
+
+    private static long archivedCount(SensorHistoryArchive archive, String deviceId) {
+        return archive.slice(deviceId, Long.MIN_VALUE, Long.MAX_VALUE, SensorMetric.TEMPERATURE).size();
+    }
+
+    private static SensorData reading(String deviceId, int i) {
+        return SensorData.builder()
+                .temperature(i % 50)
+                .co2(400 + i)
+                .airQualityStatus("Good")
+                .deviceId(deviceId)
+                .timestamp(i)
+                .receivedAt(START.plusSeconds(i))
+                .build();
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.backend.service;
+
+import com.example.backend.model.SensorData;
+import com.example.backend.model.SensorMetric;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SensorHistoryChunkTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 0, 0);
+    private static final long DAY_MILLIS = Duration.ofDays(1).toMillis();
+
+    @Test
+    void roundTripsEveryFieldIncludingEdgeValues() {
+        SensorData[] originals = {
+                reading(0, 21.5f, 40.25f, 612, "Good", LocalDateTime.of(2025, 1, 1, 0, 0)),
+                reading(1, -12.75f, Float.NaN, Integer.MAX_VALUE, null, LocalDateTime.of(2025, 1, 1, 0, 0, 1)),
+                reading(Long.MAX_VALUE, Float.MAX_VALUE, 0f, Integer.MIN_VALUE, "Hazardous", LocalDateTime.of(2025, 3, 1, 0, 0)),
+                reading(-5, -0f, 100f, 0, "Hazardous", LocalDateTime.of(2025, 3, 1, 0, 0)),
+        };
+        SensorColumnStore store = new SensorColumnStore("test-device", 4);
+        for (SensorData original : originals) {
+            store.append(original);
+        }
+
+        SensorHistoryChunk chunk = store.encode(0, originals.length);
+        SensorHistoryChunk.Rows rows = chunk.decode();
+        for (int i = 0; i < originals.length; i++) {
+            assertEquals(originals[i], rows.reading(i));
+        }
+        assertArrayEquals(new double[] {612, Integer.MAX_VALUE, Integer.MIN_VALUE, 0}, chunk.values(SensorMetric.CO2));
+    }
+
+    @Test
+    void compressesSteadyReadingsToAboutOneToTwoBytesPerValue() {
+        Random random = new Random(3);
+        SensorColumnStore store = new SensorColumnStore("test-device", 120);
+        for (int i = 0; i < 120; i++) {
+            // 1 Hz with some network jitter, sensor values at their usual resolution
+            store.append(SensorData.builder()
+                    .temperature(Math.round((21 + Math.sin(i / 60.0) + random.nextGaussian() * 0.1) * 10) / 10f)
+                    .humidity(Math.round((45 + random.nextGaussian() * 0.5) * 10) / 10f)
+                    .airQualityRaw(1800 + random.nextInt(20))
+                    .co2(600 + i / 10 + random.nextInt(5))
+                    .nh3(4 + random.nextInt(2))
+                    .ch4(11 + random.nextInt(3))
+                    .co(2)
+                    .airQualityStatus("Moderate")
+                    .isLight(true)
+                    .motionDetected(i % 40 < 3)
+                    .deviceId("test-device")
+                    .timestamp(1000L * i + random.nextInt(3))
+                    .receivedAt(START.plusSeconds(i).plusNanos(random.nextInt(30) * 1_000_000L))
+                    .build());
+        }
+
+        SensorHistoryChunk chunk = store.encode(0, 120);
+        // 12 values per reading
+        double bytesPerValue = chunk.sizeInBytes() / (120.0 * 12);
+        assertTrue(bytesPerValue < 2, "bytes per value: " + bytesPerValue);
+        assertEquals(store.snapshot().get(0), chunk.decode().reading(119));
+    }
+
+    @Test
+    void rangeQueriesSpanSealedChunksAndRecentReadings() {
+        SensorHistoryStore store = new SensorHistoryStore("test-device", 100, 40, DAY_MILLIS);
+        for (int i = 0; i < 1000; i++) {
+            store.append(SensorData.builder()
+                    .temperature(i % 50)
+                    .deviceId("test-device")
+                    .timestamp(i)
+                    .receivedAt(START.plusSeconds(i))
+                    .build());
+        }
+        assertEquals(100, store.snapshot().size());
+        assertEquals(1000, store.size());
+
+        SensorColumnStore.Slice slice = store.slice(
+                SensorColumnStore.toEpochMillis(START.plusSeconds(100)),
+                SensorColumnStore.toEpochMillis(START.plusSeconds(949)),
+                SensorMetric.TEMPERATURE);
+        assertEquals(100, slice.firstSeq());
+        assertEquals(850, slice.size());
+        for (int i = 0; i < slice.size(); i++) {
+            assertEquals((100 + i) % 50, slice.values()[i]);
+        }
+
+        List<SensorData> readings = store.readings(new long[] {100, 101, 500, 920, 949});
+        assertEquals(List.of(949L, 920L, 500L, 101L, 100L),
+                readings.stream().map(SensorData::getTimestamp).toList());
+    }
+
+    @Test
+    void dropsChunksOlderThanRetention() {
+        SensorHistoryStore store = new SensorHistoryStore("test-device", 10, 10, 60_000);
+        for (int i = 0; i < 300; i++) {
+            store.append(SensorData.builder().timestamp(i).receivedAt(START.plusSeconds(i)).build());
+        }
+
+        // Chunks ending within 60 s of the newest reading are kept
+        assertEquals(70, store.size());
+        List<SensorData> all = store.readings(new long[] {229, 230, 299});
+        assertEquals(List.of(299L, 230L), all.stream().map(SensorData::getTimestamp).toList());
+    }
+
+    @Test
+    void keepsStatusesThatNoLongerFitTheSharedDictionary() {
+        // More distinct statuses than the dictionary holds, and more than one chunk
+        SensorColumnStore store = new SensorColumnStore("test-device", 300);
+        for (int i = 0; i < 300; i++) {
+            store.append(reading(i, 20f, 40f, 400, "status-" + i, START.plusSeconds(i)));
+        }
+
+        List<SensorData> snapshot = store.snapshot();
+        for (int i = 0; i < 300; i++) {
+            assertEquals("status-" + (299 - i), snapshot.get(i).getAirQualityStatus());
+        }
+
+        SensorHistoryChunk chunk = store.encode(45, SensorHistoryChunk.MAX_COUNT);
+        ByteBuffer buffer = ByteBuffer.allocate(chunk.serializedSize());
+        chunk.writeTo(buffer, 0);
+        SensorHistoryChunk.Rows rows = SensorHistoryChunk.readFrom(buffer, 0).decode();
+        for (int i = 0; i < SensorHistoryChunk.MAX_COUNT; i++) {
+            assertEquals("status-" + (45 + i), rows.reading(i).getAirQualityStatus());
+        }
+    }
+
+    private static SensorData reading(long timestamp, float temperature, float humidity, int co2,
+                                      String status, LocalDateTime receivedAt) {
+        return SensorData.builder()
+                .temperature(temperature)
+                .humidity(humidity)
+                .airQualityRaw(co2 / 2)
+                .co2(co2)
+                .nh3(-co2)
+                .ch4(7)
+                .co(co2 ^ 0x5555)
+                .airQualityStatus(status)
+                .isLight(timestamp % 2 == 0)
+                .motionDetected(timestamp % 3 == 0)
+                .deviceId("test-device")
+                .timestamp(timestamp)
+                .receivedAt(receivedAt)
+                .build();
+    }
+}
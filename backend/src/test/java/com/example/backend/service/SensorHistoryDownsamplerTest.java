@@ -0,0 +1,83 @@
+package com.example.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SensorHistoryDownsamplerTest {
+
+    @Test
+    void returnsEveryPointWhenTheLimitCoversTheSlice() {
+        long[] times = times(10);
+        double[] values = new double[10];
+
+        int[] all = {0, 1, 2, 3, 4, 5, 6, 7, 8, 9};
+        assertArrayEquals(all, SensorHistoryDownsampler.downsample(times, values, 0, 10));
+        assertArrayEquals(all, SensorHistoryDownsampler.downsample(times, values, 0, 50));
+        assertArrayEquals(all, SensorHistoryDownsampler.downsample(times, values, 0, 0));
+    }
+
+    @Test
+    void keepsTheMinimumAndMaximumOfEachStepInOrder() {
+        // One reading per second, 5 s steps
+        long[] times = times(12);
+        double[] values = {
+                5, 9, 1, 5, 5,   // max before min
+                7, 7, 2, 7, 8,   // min before max
+                3, 3             // flat: a single point
+        };
+
+        int[] points = SensorHistoryDownsampler.downsample(times, values, 5_000, 0);
+
+        assertArrayEquals(new int[] {1, 2, 7, 9, 10}, points);
+    }
+
+    @Test
+    void limitKeepsTheFirstAndLastPointsAndTheSpike() {
+        long[] times = times(1000);
+        double[] values = new double[1000];
+        Arrays.fill(values, 20);
+        values[500] = 80;
+
+        int[] points = SensorHistoryDownsampler.downsample(times, values, 0, 20);
+
+        assertEquals(20, points.length);
+        assertEquals(0, points[0]);
+        assertEquals(999, points[19]);
+        assertTrue(Arrays.stream(points).anyMatch(point -> point == 500));
+        for (int i = 1; i < points.length; i++) {
+            assertTrue(points[i] > points[i - 1]);
+        }
+    }
+
+    @Test
+    void limitAppliesAfterTheStep() {
+        long[] times = times(600);
+        double[] values = new double[600];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Math.sin(i / 10.0);
+        }
+
+        // Ten-second buckets of up to two points each, reduced to 50
+        int[] stepped = SensorHistoryDownsampler.downsample(times, values, 10_000, 0);
+        int[] points = SensorHistoryDownsampler.downsample(times, values, 10_000, 50);
+
+        assertTrue(stepped.length > 50);
+        assertEquals(50, points.length);
+        assertEquals(stepped[0], points[0]);
+        assertEquals(stepped[stepped.length - 1], points[49]);
+        assertTrue(Arrays.stream(points).allMatch(point -> Arrays.binarySearch(stepped, point) >= 0));
+    }
+
+    private static long[] times(int count) {
+        long[] times = new long[count];
+        for (int i = 0; i < count; i++) {
+            times[i] = 1_700_000_000_000L + i * 1000L;
+        }
+        return times;
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.backend.service;
+
+import com.example.backend.model.SensorData;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SensorJournalTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    @TempDir
+    Path directory;
+
+    private final List<SensorJournal> opened = new ArrayList<>();
+
+    @AfterEach
+    void close() {
+        opened.forEach(SensorJournal::close);
+    }
+
+    @Test
+    void replaysAppendedReadingsInOrderAfterRestart() {
+        SensorJournal journal = open(1 << 20);
+        for (int i = 0; i < 100; i++) {
+            journal.append(reading(i));
+        }
+        journal.close();
+
+        List<SensorData> replayed = replay(1 << 20);
+
+        assertEquals(100, replayed.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(reading(i), replayed.get(i));
+        }
+    }
+
+    @Test
+    void skipsUncommittedAndTornRecordsOfACrash() throws Exception {
+        SensorJournal journal = open(1 << 20);
+        for (int i = 0; i < 10; i++) {
+            journal.append(reading(i));
+        }
+        journal.close();
+        Path segment = segments().get(0);
+
+        // Record 3 was reserved but its commit marker never written
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4), 4L * SensorJournal.RECORD_SIZE);
+        }
+        // The process died halfway through record 9 (slot 10 after the header)
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.setLength(10L * SensorJournal.RECORD_SIZE + SensorJournal.RECORD_SIZE / 2);
+        }
+
+        List<SensorData> replayed = replay(1 << 20);
+
+        assertEquals(List.of(0L, 1L, 2L, 4L, 5L, 6L, 7L, 8L),
+                replayed.stream().map(SensorData::getTimestamp).toList());
+    }
+
+    @Test
+    void rollsFullSegmentsAndReplaysThemInOrder() throws Exception {
+        // A header and three records per segment
+        SensorJournal journal = open(4 * SensorJournal.RECORD_SIZE);
+        for (int i = 0; i < 10; i++) {
+            journal.append(reading(i));
+        }
+        journal.close();
+        assertEquals(4, segments().size());
+
+        List<SensorData> replayed = replay(4 * SensorJournal.RECORD_SIZE);
+
+        assertEquals(10, replayed.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, replayed.get(i).getTimestamp());
+        }
+    }
+
+    @Test
+    void keepsLongStatusesWholeAndSkipsReadingsWhoseStringsDoNotFit() {
+        SensorJournal journal = open(1 << 20);
+        SensorData longStatus = reading(1);
+        longStatus.setAirQualityStatus("Unhealthy for Sensitive Groups");
+        SensorData longDevice = reading(2);
+        longDevice.setDeviceId("d".repeat(78));
+        SensorData tooLong = reading(3);
+        tooLong.setDeviceId("d".repeat(40));
+        tooLong.setAirQualityStatus("s".repeat(40));
+        journal.append(longStatus);
+        journal.append(longDevice);
+        journal.append(tooLong);
+        journal.close();
+
+        assertEquals(List.of(longStatus), replay(1 << 20));
+        assertFalse(((Map<?, ?>) ReflectionTestUtils.getField(journal, "deviceIdBytes")).containsKey("d".repeat(78)));
+    }
+
+    @Test
+    void deletesSegmentsPastRetentionButNotTheActiveOne() throws Exception {
+        SensorJournal journal = open(1 << 20);
+        journal.append(reading(0));
+        journal.close();
+        Path old = segments().get(0);
+        Files.setLastModifiedTime(old, FileTime.fromMillis(System.currentTimeMillis() - 120_000));
+
+        SensorJournal reopened = new SensorJournal(new DeviceRegistry());
+        configure(reopened, 1 << 20);
+        ReflectionTestUtils.setField(reopened, "retentionMillis", 60_000L);
+        opened.add(reopened);
+        reopened.replay(reading -> { });
+        Path active = segments().get(1);
+        Files.setLastModifiedTime(active, FileTime.fromMillis(System.currentTimeMillis() - 120_000));
+
+        ReflectionTestUtils.invokeMethod(reopened, "maintain");
+
+        assertFalse(Files.exists(old));
+        assertTrue(Files.exists(active));
+    }
+
+    private SensorJournal open(int segmentSize) {
+        SensorJournal journal = new SensorJournal(new DeviceRegistry());
+        configure(journal, segmentSize);
+        opened.add(journal);
+        journal.replay(reading -> { });
+        return journal;
+    }
+
+    private List<SensorData> replay(int segmentSize) {
+        List<SensorData> replayed = new ArrayList<>();
+        SensorJournal journal = new SensorJournal(new DeviceRegistry());
+        configure(journal, segmentSize);
+        opened.add(journal);
+        journal.replay(replayed::add);
+        return replayed;
+    }
+
+    private void configure(SensorJournal journal, int segmentSize) {
+        ReflectionTestUtils.setField(journal, "enabled", true);
+        ReflectionTestUtils.setField(journal, "directory", directory.toString());
+        ReflectionTestUtils.setField(journal, "segmentSize", segmentSize);
+        ReflectionTestUtils.setField(journal, "rollIntervalMillis", 3_600_000L);
+        ReflectionTestUtils.setField(journal, "flushIntervalMillis", 60_000L);
+        ReflectionTestUtils.setField(journal, "retentionMillis", 3_600_000L);
+    }
+
+    private List<Path> segments() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    private static SensorData reading(int i) {
+        return SensorData.builder()
+                .deviceId(i % 2 == 0 ? "lobby" : "lab")
+                .timestamp(i)
+                .receivedAt(START.plusSeconds(i))
+                .temperature(20.5f + i)
+                .humidity(40)
+                .airQualityRaw(300 + i)
+                .co2(400 + i)
+                .nh3(1)
+                .ch4(2)
+                .co(3)
+                .isLight(i % 2 == 0)
+                .motionDetected(i % 3 == 0)
+                .airQualityStatus(i % 4 == 0 ? null : "Good")
+                .build();
+    }
+}
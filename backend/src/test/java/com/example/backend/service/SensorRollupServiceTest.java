@@ -0,0 +1,118 @@
+package com.example.backend.service;
+
+import com.example.backend.model.RollupResolution;
+import com.example.backend.model.SensorData;
+import com.example.backend.model.SensorRollup;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SensorRollupServiceTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    private final SensorRollupService rollupService = createService();
+
+    private SensorRollupService createService() {
+        SensorRollupService service = new SensorRollupService(new DeviceRegistry());
+        ReflectionTestUtils.setField(service, "minuteRetention", 3);
+        ReflectionTestUtils.setField(service, "hourRetention", 24);
+        ReflectionTestUtils.setField(service, "dayRetention", 7);
+        return service;
+    }
+
+    @Test
+    void foldsReadingsIntoBucketsAndRollsThemOver() {
+        rollupService.record(reading("lab", 20, START.plusSeconds(10)));
+        rollupService.record(reading("lab", 26, START.plusSeconds(20)));
+        rollupService.record(reading("lab", 23, START.plusSeconds(30)));
+        // Four more minutes; only three closed minute buckets are kept
+        for (int minute = 1; minute <= 4; minute++) {
+            rollupService.record(reading("lab", 30 + minute, START.plusMinutes(minute)));
+        }
+
+        List<SensorRollup> minutes = rollupService.getRollups("lab", RollupResolution.MINUTE, null, null);
+
+        assertEquals(List.of(START.plusMinutes(4), START.plusMinutes(3), START.plusMinutes(2), START.plusMinutes(1)),
+                minutes.stream().map(SensorRollup::getBucketStart).toList());
+        assertFalse(minutes.get(0).isComplete());
+        assertTrue(minutes.get(1).isComplete());
+
+        SensorRollup hour = rollupService.getRollups("lab", RollupResolution.HOUR, null, null).get(0);
+        assertEquals(7, hour.getCount());
+        assertEquals(20.0, hour.getMetrics().get("temperature").getMin(), 1e-9);
+        assertEquals(34.0, hour.getMetrics().get("temperature").getMax(), 1e-9);
+        assertEquals(34.0, hour.getMetrics().get("temperature").getLast(), 1e-9);
+        assertEquals((20 + 26 + 23 + 31 + 32 + 33 + 34) / 7.0, hour.getMetrics().get("temperature").getAvg(), 1e-9);
+    }
+
+    @Test
+    void growsTheRingAsBucketsCloseAndKeepsTheLatestOnceFull() {
+        RollupSeries series = new RollupSeries("lab", RollupResolution.MINUTE, 40);
+        // Past the initial ring, two doublings and a wrap-around
+        for (int minute = 0; minute < 100; minute++) {
+            series.add(RollupSeries.toLocalMillis(START.plusMinutes(minute)), reading("lab", minute, null));
+        }
+
+        List<SensorRollup> minutes = series.query(Long.MIN_VALUE, Long.MAX_VALUE);
+
+        // The open bucket and the 40 newest closed ones
+        assertEquals(41, minutes.size());
+        for (int i = 0; i < minutes.size(); i++) {
+            assertEquals(START.plusMinutes(99 - i), minutes.get(i).getBucketStart());
+            assertEquals(99.0 - i, minutes.get(i).getMetrics().get("temperature").getLast(), 1e-9);
+        }
+    }
+
+    @Test
+    void keepsTheMeanOfLongBucketsPrecise() {
+        // A day of 1 Hz readings whose float value has no exact binary form
+        for (int second = 0; second < 86_400; second++) {
+            rollupService.record(reading("lab", 0.1f, START.plusSeconds(second)));
+        }
+
+        SensorRollup day = rollupService.getRollups("lab", RollupResolution.DAY, null, null).get(0);
+
+        assertEquals(86_400, day.getCount());
+        assertEquals((double) 0.1f, day.getMetrics().get("temperature").getAvg(), 1e-15);
+    }
+
+    @Test
+    void takesFleetLastFromTheLatestReadingWhateverTheMergeOrder() {
+        RollupSeries early = new RollupSeries("early", RollupResolution.HOUR, 4);
+        RollupSeries late = new RollupSeries("late", RollupResolution.HOUR, 4);
+        early.add(RollupSeries.toLocalMillis(START.plusMinutes(50)), reading("early", 10, null));
+        late.add(RollupSeries.toLocalMillis(START.plusMinutes(5)), reading("late", 99, null));
+        late.add(RollupSeries.toLocalMillis(START.plusMinutes(55)), reading("late", 40, null));
+        long bucket = RollupSeries.toLocalMillis(START);
+
+        RollupSeries.RollupAccumulator forward = new RollupSeries.RollupAccumulator();
+        early.mergeInto(bucket, forward);
+        late.mergeInto(bucket, forward);
+        RollupSeries.RollupAccumulator backward = new RollupSeries.RollupAccumulator();
+        late.mergeInto(bucket, backward);
+        early.mergeInto(bucket, backward);
+
+        for (RollupSeries.RollupAccumulator accumulator : List.of(forward, backward)) {
+            SensorRollup fleet = accumulator.toRollup(RollupResolution.HOUR, bucket);
+            assertEquals(3, fleet.getCount());
+            assertEquals(40.0, fleet.getMetrics().get("temperature").getLast(), 1e-9);
+            assertEquals(10.0, fleet.getMetrics().get("temperature").getMin(), 1e-9);
+            assertEquals(99.0, fleet.getMetrics().get("temperature").getMax(), 1e-9);
+        }
+    }
+
+    private static SensorData reading(String deviceId, float temperature, LocalDateTime receivedAt) {
+        return SensorData.builder()
+                .deviceId(deviceId)
+                .temperature(temperature)
+                .receivedAt(receivedAt)
+                .build();
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StompSubscriptionRegistryTest {
+
+    private final StompSubscriptionRegistry registry = new StompSubscriptionRegistry();
+
+    @Test
+    void tracksSubscriptionsUntilUnsubscribeOrDisconnect() {
+        registry.subscribe("s1", "sub-0", "/topic/sensors/d1");
+        registry.subscribe("s2", "sub-0", "/topic/sensors/d1");
+        registry.subscribe("s2", "sub-1", "/topic/sensors/d2");
+
+        registry.unsubscribe("s1", "sub-0");
+        assertTrue(registry.hasSubscribers("/topic/sensors/d1"));
+
+        registry.disconnect("s2");
+        assertFalse(registry.hasSubscribers("/topic/sensors/d1"));
+        assertFalse(registry.hasSubscribers("/topic/sensors/d2"));
+        assertEquals(0, registry.getSubscriptionCount());
+    }
+
+    @Test
+    void matchesWildcardSubscriptions() {
+        registry.subscribe("s1", "sub-0", "/topic/sensors/**");
+
+        assertTrue(registry.hasSubscribers("/topic/sensors/d1"));
+        assertFalse(registry.hasSubscribers("/topic/status"));
+    }
+}
@@ -17,6 +17,7 @@ const char* mqtt_client_id = "ESP32_AuraLink_Client";
 
 // MQTT Topics
 const char* mqtt_topic = "auralink/sensors";
+const char* mqtt_binary_topic = "auralink/sensors/bin";
 const char* mqtt_status_topic = "auralink/status";
 const char* mqtt_quote_topic = "auralink/quotes";
 const char* TOPIC_EMAIL_NOTIFICATIONS = "iot/email/notifications";
@@ -43,6 +44,9 @@ const long suggestionDuration = 5000;       // Show suggestion for 5 seconds
 const long emailDisplayDuration = 10000;    // Show email summary for 10 seconds
 const long quoteDisplayDuration = 15000;    // Show AI quote for 15 seconds
 
+// Publish readings as compact binary frames on auralink/sensors/bin instead of JSON
+// #define SENSOR_BINARY_FORMAT
+
 // ================== Pin Configuration ==================
 // I2C pins
 #define I2C_SDA 21
@@ -205,6 +209,14 @@ void mqtt_callback(char* topic, byte* payload, unsigned int length) {
   }
 }
 
+// Status message on auralink/status; deviceId matches the readings so the backend tracks one device
+void buildStatusMessage(const char* status, char* buffer, size_t size) {
+  JsonDocument doc;
+  doc["status"] = status;
+  doc["deviceId"] = mqtt_client_id;
+  serializeJson(doc, buffer, size);
+}
+
 void mqtt_reconnect() {
   // Try to reconnect to MQTT broker
   if (WiFi.status() == WL_CONNECTED) {
@@ -213,12 +225,16 @@ void mqtt_reconnect() {
     // Loop until we're reconnected or max attempts reached
     while (!mqtt.connected() && attempts < 3) {
       Serial.print("Attempting MQTT connection...");
-      // Attempt to connect
-      if (mqtt.connect(mqtt_client_id)) {
+      // Attempt to connect; the broker publishes the last will if the connection drops
+      char willMessage[128];
+      buildStatusMessage("offline", willMessage, sizeof(willMessage));
+      if (mqtt.connect(mqtt_client_id, mqtt_status_topic, 1, false, willMessage)) {
         Serial.println("connected");
         
         // Publish a connection message
-        mqtt.publish(mqtt_status_topic, "{\"status\":\"connected\",\"device\":\"ESP32_AuraLink\"}");
+        char connectedMessage[128];
+        buildStatusMessage("connected", connectedMessage, sizeof(connectedMessage));
+        mqtt.publish(mqtt_status_topic, connectedMessage);
         
         // Subscribe to email topics
         mqtt.subscribe(TOPIC_EMAIL_NOTIFICATIONS);
@@ -689,11 +705,58 @@ void updateLCD() {
   }
 }
 
+#ifdef SENSOR_BINARY_FORMAT
+// Status codes of the binary frame: 0 none, 1 Excellent, 2 Good, 3 Moderate, 4 Poor, 5 Hazardous
+uint8_t airQualityStatusCode(const String& status) {
+  if (status == "Excellent") return 1;
+  if (status == "Good") return 2;
+  if (status == "Moderate") return 3;
+  if (status == "Poor") return 4;
+  if (status == "Hazardous") return 5;
+  return 0;
+}
+
+void writeU16(uint8_t* frame, int offset, int value) {
+  uint16_t v = (uint16_t) constrain(value, 0, 65535);
+  memcpy(frame + offset, &v, sizeof(v));
+}
+
+// Version 1 frame, little-endian (see SensorBinaryCodec in the backend)
+void publishSensorDataBinary() {
+  uint8_t frame[26 + 64];
+  uint8_t idLength = (uint8_t) min((int) strlen(mqtt_client_id), 64);
+  uint32_t timestamp = millis();
+
+  frame[0] = 1;
+  frame[1] = (currentReadings.isLight ? 1 : 0) | (currentReadings.motionDetected ? 2 : 0);
+  frame[2] = airQualityStatusCode(currentReadings.airQualityStatus);
+  frame[3] = idLength;
+  memcpy(frame + 4, &currentReadings.temperature, 4);
+  memcpy(frame + 8, &currentReadings.humidity, 4);
+  writeU16(frame, 12, currentReadings.mq135_raw);
+  writeU16(frame, 14, currentReadings.co2_ppm);
+  writeU16(frame, 16, currentReadings.nh3_ppm);
+  writeU16(frame, 18, currentReadings.ch4_ppm);
+  writeU16(frame, 20, currentReadings.co_ppm);
+  memcpy(frame + 22, &timestamp, 4);
+  memcpy(frame + 26, mqtt_client_id, idLength);
+
+  if (mqtt.publish(mqtt_binary_topic, frame, 26 + idLength)) {
+    Serial.println("Published to MQTT (binary)");
+  }
+}
+#endif
+
 void publishSensorData() {
   if (!mqtt.connected()) {
     return;
   }
 
+#ifdef SENSOR_BINARY_FORMAT
+  publishSensorDataBinary();
+  return;
+#endif
+
   JsonDocument doc;
   
   doc["temperature"] = currentReadings.temperature;
@@ -61,6 +61,9 @@ const rotate = {
   },
 };
 
+// Latest readings shown in the history charts
+const HISTORY_POINTS = 100;
+
 const Dashboard: React.FC = () => {
   const [loading, setLoading] = useState(true);
   const [sensorData, setSensorData] = useState<SensorData | null>(null);
@@ -82,7 +85,7 @@ const Dashboard: React.FC = () => {
             setSensorData(allSensors.find(sensor => sensor.deviceId === deviceIds[0]) || null);
             
             const history = await fetchSensorHistory(deviceIds[0]);
-            setHistoryData(history);
+            setHistoryData(history.slice(0, HISTORY_POINTS));
           }
         }
         setLoading(false);
@@ -102,28 +105,32 @@ const Dashboard: React.FC = () => {
     };
   }, []);
   
-  // Subscribe to real-time updates
+  // Subscribe to real-time updates of the selected device only
   useEffect(() => {
-    const unsubscribe = webSocketService.onSensorData((data) => {
-      if (data.deviceId === selectedDevice) {
-        setSensorData(data);
-        setHistoryData(prev => [data, ...prev.slice(0, 99)]);
-      }
-      
-      if (!devices.includes(data.deviceId)) {
-        setDevices(prev => [...prev, data.deviceId]);
-      }
+    if (!selectedDevice) {
+      return;
+    }
+    const unsubscribe = webSocketService.subscribeToDevice(selectedDevice, (data) => {
+      setSensorData(data);
+      setHistoryData(prev => [data, ...prev.slice(0, HISTORY_POINTS - 1)]);
     });
     
     return unsubscribe;
-  }, [selectedDevice, devices]);
+  }, [selectedDevice]);
+  
+  // Add devices that start reporting after the initial load
+  useEffect(() => {
+    return webSocketService.onDeviceDiscovered((deviceId) => {
+      setDevices(prev => prev.includes(deviceId) ? prev : [...prev, deviceId]);
+    });
+  }, []);
   
   // Handle device selection
   const handleDeviceChange = async (deviceId: string) => {
     setSelectedDevice(deviceId);
     try {
       const history = await fetchSensorHistory(deviceId);
-      setHistoryData(history);
+      setHistoryData(history.slice(0, HISTORY_POINTS));
     } catch (error) {
       console.error('Error loading device history:', error);
     }
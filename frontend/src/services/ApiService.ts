@@ -14,8 +14,18 @@ export const fetchSensorData = async (deviceId: string): Promise<SensorData> =>
   return response.data;
 };
 
-export const fetchSensorHistory = async (deviceId: string): Promise<SensorData[]> => {
-  const response = await axios.get<SensorData[]>(`${API_URL}/sensors/${deviceId}/history`);
+export interface HistoryQuery {
+  from?: string;    // ISO date-time, e.g. 2025-01-01T00:00:00
+  to?: string;
+  limit?: number;   // maximum number of points (LTTB downsampled)
+  step?: string;    // min/max bucket width, e.g. 1m
+  metric?: string;  // metric used for downsampling, defaults to temperature
+}
+
+export const fetchSensorHistory = async (deviceId: string, query?: HistoryQuery): Promise<SensorData[]> => {
+  const response = await axios.get<SensorData[]>(`${API_URL}/sensors/${deviceId}/history`, {
+    params: query,
+  });
   return response.data;
 };
 
@@ -6,12 +6,19 @@ import type { DeviceStatus } from '../types/SensorData';
 
 const SOCKET_URL = 'http://localhost:8080/ws';
 
+interface DeviceSubscription {
+  subscription: StompSubscription | null;
+  callbacks: ((data: SensorData) => void)[];
+}
+
 class WebSocketService {
   private client: Client | null = null;
   private sensorSubscription: StompSubscription | null = null;
   private statusSubscription: StompSubscription | null = null;
+  private deviceSubscriptions = new Map<string, DeviceSubscription>();
   private onSensorDataCallbacks: ((data: SensorData) => void)[] = [];
   private onStatusCallbacks: ((status: DeviceStatus) => void)[] = [];
+  private onDeviceDiscoveredCallbacks: ((deviceId: string) => void)[] = [];
   private connected = false;
 
   constructor() {
@@ -35,6 +42,10 @@ class WebSocketService {
       onDisconnect: () => {
         console.log('Disconnected from WebSocket');
         this.connected = false;
+        this.clearSubscriptions();
+      },
+      onWebSocketClose: () => {
+        this.clearSubscriptions();
       },
       onStompError: (frame: any) => {
         console.error('STOMP error', frame);
@@ -56,13 +67,17 @@ class WebSocketService {
 
   private subscribeToTopics() {
     if (this.client && this.client.connected) {
-      // Subscribe to sensor data
-      this.sensorSubscription = this.client.subscribe('/topic/sensors', (message: any) => {
+      // Subscribe to the devices on screen, and to the whole fleet only if someone listens to it
+      this.deviceSubscriptions.forEach((entry, deviceId) => this.subscribeDevice(deviceId, entry));
+      this.updateFleetSubscription();
+
+      // Subscribe to announcements of newly seen devices
+      this.client.subscribe('/topic/devices', (message: any) => {
         try {
-          const sensorData: SensorData = JSON.parse(message.body);
-          this.onSensorDataCallbacks.forEach(callback => callback(sensorData));
+          const { deviceId } = JSON.parse(message.body);
+          this.onDeviceDiscoveredCallbacks.forEach(callback => callback(deviceId));
         } catch (error) {
-          console.error('Error parsing sensor data', error);
+          console.error('Error parsing device announcement', error);
         }
       });
 
@@ -87,10 +102,88 @@ class WebSocketService {
     }
   }
 
+  private clearSubscriptions() {
+    this.sensorSubscription = null;
+    this.statusSubscription = null;
+    this.deviceSubscriptions.forEach(entry => {
+      entry.subscription = null;
+    });
+  }
+
+  private subscribeDevice(deviceId: string, entry: DeviceSubscription) {
+    if (!this.client || !this.client.connected || entry.subscription) {
+      return;
+    }
+    entry.subscription = this.client.subscribe(`/topic/sensors/${deviceId}`, (message: any) => {
+      try {
+        const sensorData: SensorData = JSON.parse(message.body);
+        entry.callbacks.forEach(callback => callback(sensorData));
+      } catch (error) {
+        console.error('Error parsing sensor data', error);
+      }
+    });
+  }
+
+  // The fleet-wide topic carries every device, so it is only subscribed while onSensorData has listeners
+  private updateFleetSubscription() {
+    if (!this.client || !this.client.connected) {
+      return;
+    }
+    if (this.onSensorDataCallbacks.length > 0 && !this.sensorSubscription) {
+      this.sensorSubscription = this.client.subscribe('/topic/sensors', (message: any) => {
+        try {
+          const sensorData: SensorData = JSON.parse(message.body);
+          this.onSensorDataCallbacks.forEach(callback => callback(sensorData));
+        } catch (error) {
+          console.error('Error parsing sensor data', error);
+        }
+      });
+    } else if (this.onSensorDataCallbacks.length === 0 && this.sensorSubscription) {
+      this.sensorSubscription.unsubscribe();
+      this.sensorSubscription = null;
+    }
+  }
+
+  /**
+   * Receive live readings of one device only; returns a function that unsubscribes
+   */
+  public subscribeToDevice(deviceId: string, callback: (data: SensorData) => void) {
+    let entry = this.deviceSubscriptions.get(deviceId);
+    if (!entry) {
+      entry = { subscription: null, callbacks: [] };
+      this.deviceSubscriptions.set(deviceId, entry);
+    }
+    entry.callbacks.push(callback);
+    this.subscribeDevice(deviceId, entry);
+
+    const current = entry;
+    return () => {
+      current.callbacks = current.callbacks.filter(cb => cb !== callback);
+      if (current.callbacks.length === 0) {
+        if (current.subscription && this.client && this.client.connected) {
+          current.subscription.unsubscribe();
+        }
+        this.deviceSubscriptions.delete(deviceId);
+      }
+    };
+  }
+
+  /**
+   * Receive live readings of every device (fleet-wide topic)
+   */
   public onSensorData(callback: (data: SensorData) => void) {
     this.onSensorDataCallbacks.push(callback);
+    this.updateFleetSubscription();
     return () => {
       this.onSensorDataCallbacks = this.onSensorDataCallbacks.filter(cb => cb !== callback);
+      this.updateFleetSubscription();
+    };
+  }
+
+  public onDeviceDiscovered(callback: (deviceId: string) => void) {
+    this.onDeviceDiscoveredCallbacks.push(callback);
+    return () => {
+      this.onDeviceDiscoveredCallbacks = this.onDeviceDiscoveredCallbacks.filter(cb => cb !== callback);
     };
   }
 
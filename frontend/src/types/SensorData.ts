@@ -17,6 +17,11 @@ export interface SensorData {
 export interface DeviceStatus {
   type: string;
   message: string;
-  clientId: string;
+  clientId?: string;
   timestamp: number;
+  // Set on device_online / device_offline transitions
+  deviceId?: string;
+  online?: boolean;
+  lastSeen?: string;
+  since?: string;
 }
\ No newline at end of file